@@ -0,0 +1,94 @@
+package com.example.kafka.consumer;
+
+import com.example.kafka.consumer.parallel.KeyOrderedExecutor;
+import com.example.kafka.inventory.SeatInventory;
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.projection.BookingProjection;
+import com.example.kafka.state.BookingState;
+import com.example.kafka.state.BookingStateMachine;
+import com.example.kafka.state.BookingStateStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookingConsumerSolved.processBookingEventWithValidation over a full
+ * five-event lifecycle (CREATED → ... → CONFIRMED); score is per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BookingValidationBenchmark {
+
+    private static final String[] LIFECYCLE = {
+            "CREATED", "SEAT_SELECTED", "PAYMENT_INITIATED", "PAYMENT_COMPLETED", "CONFIRMED"
+    };
+    private static final int BOOKINGS = 10_000;
+
+    private BookingStateStore store;
+    private KeyOrderedExecutor executor;
+    private SeatInventory seatInventory;
+    private BookingConsumerSolved consumer;
+    private BookingEvent[][] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        store = new BookingStateStore(BOOKINGS * 2, 300_000, 86_400_000, 16);
+        executor = new KeyOrderedExecutor(1, 1);
+        seatInventory = new SeatInventory(60, 6, 0);
+        consumer = BookingConsumerSolved.forValidation(store, BookingStateMachine.builder().build(),
+                seatInventory, new BookingProjection(BOOKINGS * 2), executor,
+                new BookingMetrics(new SimpleMeterRegistry()));
+
+        events = new BookingEvent[BOOKINGS][LIFECYCLE.length];
+        for (int b = 0; b < BOOKINGS; b++) {
+            for (int i = 0; i < LIFECYCLE.length; i++) {
+                events[b][i] = BookingEvent.builder()
+                        .bookingId("BK" + b)
+                        .customerId("CUST" + b)
+                        .flightNumber("UA" + b)
+                        .eventType(LIFECYCLE[i])
+                        .seatNumber("12A")
+                        .amount(299.99)
+                        .timestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53))
+                        .sequenceNumber(i + 1)
+                        .build();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void fullLifecycle(Blackhole blackhole) {
+        BookingEvent[] lifecycle = events[next++ % BOOKINGS];
+        String bookingId = lifecycle[0].getBookingId();
+        store.remove(bookingId);
+        seatInventory.release(bookingId);
+
+        BookingState current = null;
+        for (BookingEvent event : lifecycle) {
+            current = consumer.processBookingEventWithValidation(event, current);
+            blackhole.consume(current);
+        }
+    }
+}
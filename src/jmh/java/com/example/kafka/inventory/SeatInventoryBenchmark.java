@@ -0,0 +1,62 @@
+package com.example.kafka.inventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seat-map rush: 8 threads reserving and releasing seats of one popular
+ * flight at once; score is per reserve + release pair.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(8)
+public class SeatInventoryBenchmark {
+
+    private static final int ROWS = 60;
+    private static final int SEATS_PER_ROW = 6;
+
+    private SeatInventory inventory;
+    private String[] seatNumbers;
+
+    @Setup
+    public void setUp() {
+        inventory = new SeatInventory(ROWS, SEATS_PER_ROW, 0);
+        seatNumbers = new String[ROWS * SEATS_PER_ROW];
+        for (int seat = 0; seat < seatNumbers.length; seat++) {
+            seatNumbers[seat] = inventory.seatName(seat);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Booking {
+        private static int nextId;
+        final String bookingId;
+        int next;
+
+        public Booking() {
+            synchronized (Booking.class) {
+                bookingId = "BK" + nextId++;
+                next = nextId * 37;
+            }
+        }
+    }
+
+    @Benchmark
+    public SeatInventory.Outcome reserveAndRelease(Booking booking) {
+        SeatInventory.Outcome outcome = inventory.reserve("UA200",
+                seatNumbers[booking.next++ % seatNumbers.length], booking.bookingId);
+        inventory.release(booking.bookingId);
+        return outcome;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.kafka.journal;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event audit cost on the consumer thread.
+ *
+ * journalRecord  - EventJournal.record (ring claim + 64-byte record)
+ * formatEvent    - what every per-event INFO line paid before: BookingEvent.toString
+ *
+ * Records the ring cannot take are dropped, so journalRecord measures the
+ * caller's cost, not the writer thread's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(4)
+public class EventJournalBenchmark {
+
+    private Path directory;
+    private EventJournal journal;
+    private BookingEvent event;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-journal-bench");
+        journal = new EventJournal(true, directory.toString(), 65_536, 64, 2, 1.0, 1.0,
+                new BookingMetrics(new SimpleMeterRegistry()));
+        event = BookingEvent.builder()
+                .bookingId("BK002")
+                .customerId("CUST002")
+                .flightNumber("UA200")
+                .eventType("PAYMENT_INITIATED")
+                .amount(299.99)
+                .timestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53))
+                .sequenceNumber(3)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        journal.destroy();
+        for (Path segment : EventJournal.segments(directory)) {
+            Files.delete(segment);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void journalRecord() {
+        journal.record(EventJournal.Source.SOLVED_CONSUMER, EventJournal.Decision.OK, event, 1, 42L, 2);
+    }
+
+    @Benchmark
+    public String formatEvent() {
+        return event.toString();
+    }
+}
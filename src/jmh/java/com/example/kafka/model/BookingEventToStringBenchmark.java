@@ -0,0 +1,43 @@
+package com.example.kafka.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookingEvent.toString - built for every event logged with {}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BookingEventToStringBenchmark {
+
+    private BookingEvent event;
+
+    @Setup
+    public void setUp() {
+        event = BookingEvent.builder()
+                .bookingId("BK002")
+                .customerId("CUST002")
+                .flightNumber("UA200")
+                .eventType("PAYMENT_INITIATED")
+                .amount(299.99)
+                .timestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53))
+                .sequenceNumber(3)
+                .build();
+    }
+
+    @Benchmark
+    public String toStringFormatted() {
+        return event.toString();
+    }
+}
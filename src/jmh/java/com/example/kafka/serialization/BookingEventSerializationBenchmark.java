@@ -0,0 +1,82 @@
+package com.example.kafka.serialization;
+
+import com.example.kafka.model.BookingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookingEvent wire formats - the JSON path used today against the
+ * compact binary format, in both directions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class BookingEventSerializationBenchmark {
+
+    private static final String JSON_TOPIC = "airline-bookings-solved";
+    private static final String BINARY_TOPIC = "airline-bookings-solved-binary";
+
+    private BookingEventSerializer serializer;
+    private BookingEventDeserializer deserializer;
+    private BookingEvent event;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        serializer = new BookingEventSerializer();
+        serializer.configure(Map.of(BookingEventSerializer.BINARY_TOPICS_CONFIG, BINARY_TOPIC), false);
+        deserializer = new BookingEventDeserializer();
+
+        event = BookingEvent.builder()
+                .bookingId("BK002")
+                .customerId("CUST002")
+                .flightNumber("UA200")
+                .eventType("SEAT_SELECTED")
+                .seatNumber("12A")
+                .amount(299.99)
+                .timestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53))
+                .sequenceNumber(2)
+                .build();
+        json = serializer.serialize(JSON_TOPIC, event);
+        binary = serializer.serialize(BINARY_TOPIC, event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return serializer.serialize(JSON_TOPIC, event);
+    }
+
+    @Benchmark
+    public BookingEvent deserializeJson() {
+        return deserializer.deserialize(JSON_TOPIC, json);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return serializer.serialize(BINARY_TOPIC, event);
+    }
+
+    @Benchmark
+    public BookingEvent deserializeBinary() {
+        return deserializer.deserialize(BINARY_TOPIC, binary);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.kafka.state;
+
+import com.example.kafka.model.BookingEventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequence tracking per event: read last sequence + state, write the new ones.
+ *
+ * storeReadWrite    - BookingStateStore (one entry per booking, bounded)
+ * mapPairReadWrite  - the original pair of unbounded ConcurrentHashMaps
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(4)
+public class BookingStateStoreBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int bookings;
+
+    private String[] bookingIds;
+    private BookingStateStore store;
+    private Map<String, Integer> lastSequenceMap;
+    private Map<String, String> bookingStateMap;
+
+    @Setup
+    public void setUp() {
+        bookingIds = new String[bookings];
+        store = new BookingStateStore(bookings * 2, 300_000, 86_400_000, 16);
+        lastSequenceMap = new ConcurrentHashMap<>();
+        bookingStateMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < bookings; i++) {
+            bookingIds[i] = "BK" + i;
+            store.put(bookingIds[i], BookingEventType.CREATED, 1);
+            lastSequenceMap.put(bookingIds[i], 1);
+            bookingStateMap.put(bookingIds[i], "CREATED");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public BookingState storeReadWrite(Cursor cursor) {
+        String bookingId = bookingIds[cursor.next++ % bookingIds.length];
+        BookingState current = store.get(bookingId);
+        return store.put(bookingId, BookingEventType.SEAT_SELECTED, current.getLastSequence());
+    }
+
+    @Benchmark
+    public String mapPairReadWrite(Cursor cursor) {
+        String bookingId = bookingIds[cursor.next++ % bookingIds.length];
+        Integer lastSeq = lastSequenceMap.get(bookingId);
+        String state = bookingStateMap.get(bookingId);
+        lastSequenceMap.put(bookingId, lastSeq);
+        return bookingStateMap.put(bookingId, state);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.kafka.analytics;
+
+import com.example.kafka.model.BookingEventType;
+
+import java.util.Arrays;
+
+/**
+ * Ring of fixed-size time panes for one flight - per pane one counter per
+ * event type and the confirmed revenue in cents, stored as flat primitive
+ * arrays. Windows are sums over consecutive panes.
+ *
+ * A slot is reused once its pane falls out of the ring; an event for a pane
+ * older than the one in its slot is rejected.
+ */
+final class FlightPanes {
+
+    private static final int TYPES = BookingEventType.values().length;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] paneNumbers;
+    // [slot * TYPES + type ordinal]
+    private final long[] counts;
+    private final long[] revenueCents;
+    private long latestPane = EMPTY;
+
+    FlightPanes(int slots) {
+        this.paneNumbers = new long[slots];
+        this.counts = new long[slots * TYPES];
+        this.revenueCents = new long[slots];
+        Arrays.fill(paneNumbers, EMPTY);
+    }
+
+    /**
+     * @return false if the pane is no longer held by the ring
+     */
+    synchronized boolean add(long pane, BookingEventType type, long cents) {
+        int slot = slot(pane);
+        if (paneNumbers[slot] != pane) {
+            if (paneNumbers[slot] != EMPTY && paneNumbers[slot] > pane) {
+                return false;
+            }
+            paneNumbers[slot] = pane;
+            Arrays.fill(counts, slot * TYPES, (slot + 1) * TYPES, 0L);
+            revenueCents[slot] = 0L;
+        }
+        counts[slot * TYPES + type.ordinal()]++;
+        revenueCents[slot] += cents;
+        latestPane = Math.max(latestPane, pane);
+        return true;
+    }
+
+    /**
+     * Sums panes [fromPane, toPane) into totals (length TYPES + 1, revenue last).
+     *
+     * @return false if none of those panes had any events
+     */
+    synchronized boolean sum(long fromPane, long toPane, long[] totals) {
+        Arrays.fill(totals, 0L);
+        boolean any = false;
+        for (long pane = fromPane; pane < toPane; pane++) {
+            int slot = slot(pane);
+            if (paneNumbers[slot] != pane) {
+                continue;
+            }
+            any = true;
+            for (int type = 0; type < TYPES; type++) {
+                totals[type] += counts[slot * TYPES + type];
+            }
+            totals[TYPES] += revenueCents[slot];
+        }
+        return any;
+    }
+
+    synchronized long latestPane() {
+        return latestPane;
+    }
+
+    private int slot(long pane) {
+        return (int) Math.floorMod(pane, (long) paneNumbers.length);
+    }
+}
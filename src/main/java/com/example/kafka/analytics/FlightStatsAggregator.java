@@ -0,0 +1,294 @@
+package com.example.kafka.analytics;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.BookingView;
+import com.example.kafka.model.FlightWindowStats;
+import com.example.kafka.model.FlightWindowStats.WindowType;
+import com.example.kafka.projection.BookingProjection;
+import com.example.kafka.state.BookingTransitionHook;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STREAMING FLIGHT STATISTICS
+ *
+ * Per-flight funnel counts (CREATED → ... → CONFIRMED, CANCELLED) and
+ * confirmed revenue, aggregated incrementally from every transition the
+ * solved consumer accepts - duplicates and rejected events never count.
+ *
+ * Windows, aligned to the epoch by event time (the event's timestamp):
+ * - TUMBLING  tumbling-ms, back to back
+ * - HOPPING   hopping-size-ms, a new one every hopping-advance-ms
+ *
+ * Each flight keeps a ring of panes (the greatest common divisor of the
+ * window sizes and advance) just long enough to cover the largest window
+ * plus the grace period; windows are sums over panes, so an event is
+ * counted once no matter how many hopping windows contain it.
+ *
+ * Late events:
+ * - A window is final grace-ms after its end; it is then published to the
+ *   flight-stats topic (keyed by flight number) and never re-published
+ * - A late event still counts towards the windows that are open, and is
+ *   counted as late; one older than the ring is dropped
+ *
+ * Revenue is the amount of the CONFIRMED event, or else the booking's last
+ * known amount (the payment events carry it).
+ *
+ * Each instance aggregates the partitions it consumes - with several
+ * instances the topic carries one partial result per instance and window,
+ * all counts being additive.
+ */
+@Slf4j
+@Component
+public class FlightStatsAggregator implements BookingTransitionHook, DisposableBean {
+
+    private static final int TYPES = BookingEventType.values().length;
+
+    private final boolean enabled;
+    private final long paneMillis;
+    private final long tumblingMillis;
+    private final long hoppingSizeMillis;
+    private final long hoppingAdvanceMillis;
+    private final long graceMillis;
+    private final int slots;
+    private final String topic;
+    private final KafkaTemplate<String, FlightWindowStats> kafkaTemplate;
+    private final BookingProjection projection;
+    private final BookingMetrics metrics;
+
+    private final Map<String, FlightPanes> flights = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    // Every window ending at or before this pane has been published
+    private volatile long closedPane;
+
+    public FlightStatsAggregator(
+            @Value("${kafka.consumer.analytics.enabled:true}") boolean enabled,
+            @Value("${kafka.consumer.analytics.tumbling-ms:60000}") long tumblingMillis,
+            @Value("${kafka.consumer.analytics.hopping-size-ms:3600000}") long hoppingSizeMillis,
+            @Value("${kafka.consumer.analytics.hopping-advance-ms:300000}") long hoppingAdvanceMillis,
+            @Value("${kafka.consumer.analytics.grace-ms:30000}") long graceMillis,
+            @Value("${kafka.topic.booking.flight-stats}") String topic,
+            KafkaTemplate<String, FlightWindowStats> kafkaTemplate,
+            BookingProjection projection,
+            BookingMetrics metrics) {
+        if (tumblingMillis <= 0 || hoppingSizeMillis <= 0 || hoppingAdvanceMillis <= 0
+                || hoppingSizeMillis % hoppingAdvanceMillis != 0) {
+            throw new IllegalArgumentException("Window sizes must be positive and the hopping size a multiple of its advance");
+        }
+        this.enabled = enabled;
+        this.tumblingMillis = tumblingMillis;
+        this.hoppingSizeMillis = hoppingSizeMillis;
+        this.hoppingAdvanceMillis = hoppingAdvanceMillis;
+        this.graceMillis = graceMillis;
+        this.paneMillis = gcd(gcd(tumblingMillis, hoppingSizeMillis), hoppingAdvanceMillis);
+        this.slots = (int) ((Math.max(tumblingMillis, hoppingSizeMillis) + graceMillis) / paneMillis) + 2;
+        this.topic = topic;
+        this.kafkaTemplate = kafkaTemplate;
+        this.projection = projection;
+        this.metrics = metrics;
+        this.closedPane = Math.floorDiv(System.currentTimeMillis() - graceMillis, paneMillis);
+
+        if (enabled) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "flight-stats-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.min(paneMillis, 1000);
+            timer.scheduleWithFixedDelay(this::closeWindows, interval, interval, TimeUnit.MILLISECONDS);
+            log.info("📊 Flight stats: tumbling {} ms, hopping {} ms every {} ms, grace {} ms ({} panes of {} ms per flight)",
+                    tumblingMillis, hoppingSizeMillis, hoppingAdvanceMillis, graceMillis, slots, paneMillis);
+        } else {
+            this.timer = null;
+        }
+    }
+
+    @Override
+    public void onTransition(BookingEvent event, BookingEventType from, BookingEventType to) {
+        if (!enabled || event.getFlightNumber() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Clock skew: a timestamp in the future counts as now
+        long pane = Math.floorDiv(Math.min(eventTimeMillis(event, now), now), paneMillis);
+        if (pane <= Math.floorDiv(now, paneMillis) - slots) {
+            metrics.recordLateEvent("dropped");
+            return;
+        }
+        if (pane < closedPane) {
+            metrics.recordLateEvent("partial");
+        }
+
+        long cents = to == BookingEventType.CONFIRMED ? revenueCents(event) : 0L;
+        boolean[] added = new boolean[1];
+        // compute, so the idle sweep cannot drop the flight between lookup and add
+        flights.compute(event.getFlightNumber(), (flight, panes) -> {
+            FlightPanes target = panes != null ? panes : new FlightPanes(slots);
+            added[0] = target.add(pane, to, cents);
+            return target;
+        });
+        if (!added[0]) {
+            metrics.recordLateEvent("dropped");
+        }
+    }
+
+    /**
+     * @return the flight's windows still fully held in memory, newest first
+     *         (open ones included, marked closed=false)
+     */
+    public List<FlightWindowStats> windows(String flightNumber, WindowType type) {
+        List<FlightWindowStats> windows = new ArrayList<>();
+        FlightPanes panes = flights.get(flightNumber);
+        if (panes == null) {
+            return windows;
+        }
+        long step = step(type);
+        long size = size(type);
+        long nowPane = Math.floorDiv(System.currentTimeMillis(), paneMillis);
+        long oldestPane = nowPane - slots + 1;
+        long[] totals = new long[TYPES + 1];
+        for (long start = Math.floorDiv(nowPane * paneMillis, step) * step;
+             start >= oldestPane * paneMillis; start -= step) {
+            if (panes.sum(start / paneMillis, (start + size) / paneMillis, totals)) {
+                windows.add(toStats(flightNumber, type, start, size, totals));
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * @return every flight's figures for the current window - for HOPPING the
+     *         one that ends soonest, i.e. the trailing hopping-size-ms
+     */
+    public List<FlightWindowStats> current(WindowType type) {
+        long now = System.currentTimeMillis();
+        long step = step(type);
+        long size = size(type);
+        long start = (Math.floorDiv(now - size, step) + 1) * step;
+        long[] totals = new long[TYPES + 1];
+        List<FlightWindowStats> current = new ArrayList<>();
+        flights.forEach((flight, panes) -> {
+            if (panes.sum(start / paneMillis, (start + size) / paneMillis, totals)) {
+                current.add(toStats(flight, type, start, size, totals));
+            }
+        });
+        return current;
+    }
+
+    public int flightCount() {
+        return flights.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void closeWindows() {
+        try {
+            long boundary = Math.floorDiv(System.currentTimeMillis() - graceMillis, paneMillis);
+            for (long end = closedPane + 1; end <= boundary; end++) {
+                closedPane = end;
+                long endMillis = end * paneMillis;
+                if (endMillis % tumblingMillis == 0) {
+                    publish(WindowType.TUMBLING, endMillis - tumblingMillis);
+                }
+                if (endMillis % hoppingAdvanceMillis == 0) {
+                    publish(WindowType.HOPPING, endMillis - hoppingSizeMillis);
+                }
+            }
+            evictIdleFlights();
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to close flight stats windows", e);
+        }
+    }
+
+    private void publish(WindowType type, long start) {
+        long size = size(type);
+        long[] totals = new long[TYPES + 1];
+        flights.forEach((flight, panes) -> {
+            if (!panes.sum(start / paneMillis, (start + size) / paneMillis, totals)) {
+                return;
+            }
+            FlightWindowStats stats = toStats(flight, type, start, size, totals);
+            kafkaTemplate.send(topic, flight, stats).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.warn("⚠️  Failed to publish {} stats of flight {}: {}", type, flight, ex.getMessage());
+                }
+            });
+        });
+    }
+
+    private void evictIdleFlights() {
+        long cutoff = Math.floorDiv(System.currentTimeMillis(), paneMillis) - slots;
+        for (String flight : flights.keySet()) {
+            flights.computeIfPresent(flight, (key, panes) -> panes.latestPane() <= cutoff ? null : panes);
+        }
+    }
+
+    private FlightWindowStats toStats(String flight, WindowType type, long start, long size, long[] totals) {
+        long created = totals[BookingEventType.CREATED.ordinal()];
+        long confirmed = totals[BookingEventType.CONFIRMED.ordinal()];
+        long cancelled = totals[BookingEventType.CANCELLED.ordinal()];
+        return FlightWindowStats.builder()
+                .flightNumber(flight)
+                .windowType(type)
+                .windowStart(Instant.ofEpochMilli(start))
+                .windowEnd(Instant.ofEpochMilli(start + size))
+                .closed(start + size <= closedPane * paneMillis)
+                .created(created)
+                .seatSelected(totals[BookingEventType.SEAT_SELECTED.ordinal()])
+                .paymentInitiated(totals[BookingEventType.PAYMENT_INITIATED.ordinal()])
+                .paymentCompleted(totals[BookingEventType.PAYMENT_COMPLETED.ordinal()])
+                .confirmed(confirmed)
+                .cancelled(cancelled)
+                .confirmedRevenue(totals[TYPES] / 100.0)
+                .conversionRate(created > 0 ? (double) confirmed / created : null)
+                .cancellationRate(created > 0 ? (double) cancelled / created : null)
+                .build();
+    }
+
+    private long revenueCents(BookingEvent event) {
+        Double amount = event.getAmount();
+        if (amount == null) {
+            BookingView view = projection.get(event.getBookingId());
+            amount = view != null ? view.getAmount() : null;
+        }
+        return amount != null ? Math.round(amount * 100) : 0L;
+    }
+
+    private static long eventTimeMillis(BookingEvent event, long now) {
+        return event.getTimestamp() != null
+                ? event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : now;
+    }
+
+    private long step(WindowType type) {
+        return type == WindowType.TUMBLING ? tumblingMillis : hoppingAdvanceMillis;
+    }
+
+    private long size(WindowType type) {
+        return type == WindowType.TUMBLING ? tumblingMillis : hoppingSizeMillis;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.kafka.command;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.metrics.BookingMetricsProducerListener;
+import com.example.kafka.metrics.SendTimestampProducerInterceptor;
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.outbox.BookingOutbox;
+import com.example.kafka.routing.AirlineTopicRouter;
+import com.example.kafka.routing.BookingPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.requestreply.KafkaReplyTimeoutException;
+import org.springframework.kafka.requestreply.ReplyingKafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * BOOKING COMMANDS (request / reply)
+ *
+ * Sends a BookingEvent to the solved topic like {@link com.example.kafka.producer.BookingProducerSolved}
+ * (keyed by bookingId, on the carrier's shard topic if it has one), and
+ * completes once {@link com.example.kafka.consumer.BookingConsumerSolved}
+ * has answered with its verdict on the command reply topic:
+ *
+ *   ACCEPTED (new state) | REJECTED (reason) | DUPLICATE | TIMEOUT
+ *
+ * - A {@link ReplyingKafkaTemplate} adds the correlation id and reply topic
+ *   headers and matches replies to their pending futures
+ * - Nothing blocks while waiting: a pending command is one map entry and
+ *   one scheduled timeout, so tens of thousands can wait at once without a
+ *   thread each
+ * - Every instance reads all replies with its own consumer group and ignores
+ *   those of other instances' commands
+ * - A command is sent once the booking's events pending in the producer
+ *   outbox have reached Kafka, so it never overtakes them. Events appended
+ *   while the command itself is in flight can still reach Kafka before it.
+ */
+@Slf4j
+@Service
+public class BookingCommandGateway implements SmartLifecycle {
+
+    private final boolean enabled;
+    private final AirlineTopicRouter router;
+    private final BookingPartitioner partitioner;
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+    private final BookingMetrics metrics;
+    private final BookingOutbox outbox;
+    private final ReplyingKafkaTemplate<String, BookingEvent, BookingCommandResult> template;
+
+    public BookingCommandGateway(
+            ProducerFactory<String, BookingEvent> producerFactory,
+            @Qualifier("commandReplyConsumerFactory") ConsumerFactory<String, BookingCommandResult> replyConsumerFactory,
+            BookingMetrics metrics,
+            AirlineTopicRouter router,
+            BookingPartitioner partitioner,
+            BookingOutbox outbox,
+            @Value("${kafka.command.enabled:true}") boolean enabled,
+            @Value("${kafka.topic.booking.command-replies}") String replyTopic,
+            @Value("${kafka.command.timeout-ms:5000}") long timeoutMs,
+            @Value("${kafka.command.max-timeout-ms:20000}") long maxTimeoutMs) {
+        this.enabled = enabled;
+        this.router = router;
+        this.partitioner = partitioner;
+        this.defaultTimeout = Duration.ofMillis(timeoutMs);
+        this.maxTimeout = Duration.ofMillis(maxTimeoutMs);
+        this.metrics = metrics;
+        this.outbox = outbox;
+
+        ContainerProperties containerProperties = new ContainerProperties(replyTopic);
+        // Own group per instance - each instance sees every reply
+        // (also how BookingPartitioner counts running instances)
+        containerProperties.setGroupId(BookingPartitioner.PRODUCER_GROUP_PREFIX + UUID.randomUUID());
+        ConcurrentMessageListenerContainer<String, BookingCommandResult> replyContainer =
+                new ConcurrentMessageListenerContainer<>(replyConsumerFactory, containerProperties);
+        replyContainer.setBeanName("booking-command-reply-container");
+
+        this.template = new ReplyingKafkaTemplate<>(producerFactory, replyContainer);
+        template.setSharedReplyTopic(true);
+        template.setDefaultReplyTimeout(defaultTimeout);
+        template.setProducerInterceptor(new SendTimestampProducerInterceptor());
+        template.setProducerListener(new BookingMetricsProducerListener(metrics));
+    }
+
+    /**
+     * @param timeout how long to wait for the verdict, null for the default
+     *                (capped at kafka.command.max-timeout-ms)
+     * @return completes with the verdict, or with status TIMEOUT
+     */
+    public CompletableFuture<BookingCommandResult> send(BookingEvent event, Duration timeout) {
+        if (!enabled) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Booking commands are disabled"));
+        }
+        Duration replyTimeout = timeout == null ? defaultTimeout
+                : timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+        long started = System.nanoTime();
+
+        ProducerRecord<String, BookingEvent> record = partitioner.record(router.topicFor(event), event);
+        return outbox.whenSent(event.getBookingId())
+                .thenCompose(sent -> template.sendAndReceive(record, replyTimeout))
+                .thenApply(reply -> {
+                    if (reply.value() == null) {
+                        throw new IllegalStateException("Unreadable reply for booking " + event.getBookingId());
+                    }
+                    return reply.value();
+                })
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (!(cause instanceof KafkaReplyTimeoutException)) {
+                        throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                    }
+                    log.warn("⏱️  No verdict for booking {} seq {} within {} ms",
+                            event.getBookingId(), event.getSequenceNumber(), replyTimeout.toMillis());
+                    return BookingCommandResult.builder()
+                            .status(BookingCommandResult.Status.TIMEOUT)
+                            .bookingId(event.getBookingId())
+                            .eventType(event.getEventType())
+                            .sequenceNumber(event.getSequenceNumber())
+                            .build();
+                })
+                .thenApply(result -> {
+                    long elapsedNanos = System.nanoTime() - started;
+                    metrics.recordCommand(result.getStatus(), elapsedNanos);
+                    return result.toBuilder().latencyMs(elapsedNanos / 1_000_000).build();
+                });
+    }
+
+    /**
+     * Replies are read from the latest offset - commands sent before the reply
+     * partitions are assigned can miss their verdict.
+     *
+     * @return true once the reply container has its partitions
+     */
+    public boolean awaitReplyAssignment(Duration timeout) throws InterruptedException {
+        return template.waitForAssignment(timeout);
+    }
+
+    @Override
+    public void start() {
+        if (enabled) {
+            template.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        template.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return template.isRunning();
+    }
+}
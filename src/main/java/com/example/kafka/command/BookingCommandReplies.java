@@ -0,0 +1,91 @@
+package com.example.kafka.command;
+
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Consumer side of the booking command API: answers records sent by
+ * {@link BookingCommandGateway} (they carry a correlation id and a reply
+ * topic header) with the consumer's verdict. Records without those headers
+ * are ordinary events and get no reply.
+ */
+@Slf4j
+@Component
+public class BookingCommandReplies {
+
+    private final KafkaTemplate<String, BookingCommandResult> replyTemplate;
+
+    public BookingCommandReplies(
+            @Qualifier("commandReplyKafkaTemplate") KafkaTemplate<String, BookingCommandResult> replyTemplate) {
+        this.replyTemplate = replyTemplate;
+    }
+
+    public boolean isCommand(ConsumerRecord<?, ?> record) {
+        return record.headers().lastHeader(KafkaHeaders.CORRELATION_ID) != null
+                && record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC) != null;
+    }
+
+    public void accepted(ConsumerRecord<String, BookingEvent> record,
+                         BookingEventType previousState, BookingEventType newState) {
+        reply(record, result(record.value(), BookingCommandResult.Status.ACCEPTED, previousState)
+                .state(newState)
+                .build());
+    }
+
+    public void rejected(ConsumerRecord<String, BookingEvent> record, BookingEventType currentState, String reason) {
+        reply(record, result(record.value(), BookingCommandResult.Status.REJECTED, currentState)
+                .state(currentState)
+                .reason(reason)
+                .build());
+    }
+
+    public void duplicate(ConsumerRecord<String, BookingEvent> record, BookingEventType currentState) {
+        reply(record, result(record.value(), BookingCommandResult.Status.DUPLICATE, currentState)
+                .state(currentState)
+                .build());
+    }
+
+    private static BookingCommandResult.BookingCommandResultBuilder result(
+            BookingEvent event, BookingCommandResult.Status status, BookingEventType previousState) {
+        return BookingCommandResult.builder()
+                .status(status)
+                .bookingId(event.getBookingId())
+                .eventType(event.getEventType())
+                .sequenceNumber(event.getSequenceNumber())
+                .previousState(previousState);
+    }
+
+    private void reply(ConsumerRecord<String, BookingEvent> record, BookingCommandResult result) {
+        Header correlation = record.headers().lastHeader(KafkaHeaders.CORRELATION_ID);
+        Header replyTopic = record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC);
+        if (correlation == null || replyTopic == null) {
+            return;
+        }
+        Header replyPartition = record.headers().lastHeader(KafkaHeaders.REPLY_PARTITION);
+        ProducerRecord<String, BookingCommandResult> reply = new ProducerRecord<>(
+                new String(replyTopic.value(), StandardCharsets.UTF_8),
+                replyPartition != null ? ByteBuffer.wrap(replyPartition.value()).getInt() : null,
+                result.getBookingId(),
+                result);
+        reply.headers().add(KafkaHeaders.CORRELATION_ID, correlation.value());
+
+        replyTemplate.send(reply).whenComplete((sent, ex) -> {
+            if (ex != null) {
+                log.error("❌ Failed to reply to command for booking {} seq {}",
+                        result.getBookingId(), result.getSequenceNumber(), ex);
+            }
+        });
+    }
+}
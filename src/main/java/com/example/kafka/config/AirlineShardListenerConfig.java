@@ -0,0 +1,105 @@
+package com.example.kafka.config;
+
+import com.example.kafka.consumer.BookingConsumerSolved;
+import com.example.kafka.consumer.retry.BookingRetryCoordinator;
+import com.example.kafka.routing.AirlineTopicRouter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * One listener container per airline shard (see {@link AirlineTopicRouter}),
+ * running the same solved-consumer method as the default topic's listener
+ * with the shard's own concurrency. A carrier's backlog therefore only
+ * occupies its own consumer threads.
+ *
+ * Container ids: booking-solved-listener-{CARRIER} (record mode) or
+ * booking-solved-batch-listener-{CARRIER} (batch mode), in the solved
+ * consumer group. In record mode a shard's container also consumes the
+ * shard's retry topics (see {@link BookingRetryCoordinator}).
+ */
+@Configuration
+public class AirlineShardListenerConfig implements KafkaListenerConfigurer {
+
+    private final AirlineTopicRouter router;
+    private final BookingConsumerSolved consumer;
+    private final BookingRetryCoordinator retryCoordinator;
+    private final BeanFactory beanFactory;
+    private final boolean batchMode;
+    private final boolean autoStartup;
+
+    public AirlineShardListenerConfig(
+            AirlineTopicRouter router,
+            BookingConsumerSolved consumer,
+            BookingRetryCoordinator retryCoordinator,
+            BeanFactory beanFactory,
+            @Value("${kafka.consumer.listener-mode:record}") String listenerMode) {
+        this.router = router;
+        this.consumer = consumer;
+        this.retryCoordinator = retryCoordinator;
+        this.beanFactory = beanFactory;
+        this.batchMode = "batch".equals(listenerMode);
+        // Same rule as the default topic's listeners - listener-mode=none starts neither
+        this.autoStartup = batchMode || "record".equals(listenerMode);
+    }
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        if (router.shards().isEmpty()) {
+            return;
+        }
+        Method method = listenerMethod();
+        MessageHandlerMethodFactory handlerMethodFactory = handlerMethodFactory(registrar);
+        @SuppressWarnings("unchecked")
+        KafkaListenerContainerFactory<?> containerFactory = beanFactory.getBean(
+                batchMode ? "batchKafkaListenerContainerFactory" : "kafkaListenerContainerFactory",
+                KafkaListenerContainerFactory.class);
+
+        for (AirlineTopicRouter.Shard shard : router.shards()) {
+            MethodKafkaListenerEndpoint<String, Object> endpoint = new MethodKafkaListenerEndpoint<>();
+            endpoint.setId((batchMode ? "booking-solved-batch-listener-" : "booking-solved-listener-") + shard.carrier());
+            endpoint.setGroupId(BookingConsumerSolved.GROUP_ID);
+            endpoint.setTopics(retryCoordinator.listenerTopics(shard.topic()));
+            endpoint.setConcurrency(shard.concurrency());
+            endpoint.setAutoStartup(autoStartup);
+            endpoint.setBean(consumer);
+            endpoint.setMethod(method);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            endpoint.setBeanFactory(beanFactory);
+            registrar.registerEndpoint(endpoint, containerFactory);
+        }
+    }
+
+    private Method listenerMethod() {
+        try {
+            return batchMode
+                    ? BookingConsumerSolved.class.getMethod("consumeBookingEventBatch", List.class, Acknowledgment.class)
+                    : BookingConsumerSolved.class.getMethod("consumeBookingEvent", ConsumerRecord.class, Acknowledgment.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Solved consumer listener method not found", e);
+        }
+    }
+
+    private MessageHandlerMethodFactory handlerMethodFactory(KafkaListenerEndpointRegistrar registrar) {
+        if (registrar.getMessageHandlerMethodFactory() != null) {
+            return registrar.getMessageHandlerMethodFactory();
+        }
+        // Records and acknowledgments are passed to the method as provided
+        // arguments - the default factory is all that's needed
+        DefaultMessageHandlerMethodFactory factory = new DefaultMessageHandlerMethodFactory();
+        factory.setBeanFactory(beanFactory);
+        factory.afterPropertiesSet();
+        return factory;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.kafka.config;
+
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.state.BookingStateMachine;
+import com.example.kafka.state.BookingTransitionHook;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Booking flow shared by both consumers, plus any BookingTransitionHook beans
+ */
+@Slf4j
+@Configuration
+public class BookingStateMachineConfig {
+
+    @Value("${kafka.booking.flow.seat-selection-optional:false}")
+    private boolean seatSelectionOptional;
+
+    @Value("${kafka.booking.flow.cancellable-from:}")
+    private Set<BookingEventType> cancellableFrom;
+
+    @Bean
+    public BookingStateMachine bookingStateMachine(ObjectProvider<BookingTransitionHook> hooks) {
+        List<BookingTransitionHook> hookList = hooks.orderedStream().toList();
+        log.info("Booking flow: seat selection optional={}, cancellable from={}, {} transition hook(s)",
+                seatSelectionOptional, cancellableFrom.isEmpty() ? "any state" : cancellableFrom, hookList.size());
+        return BookingStateMachine.builder()
+                .seatSelectionOptional(seatSelectionOptional)
+                .cancellableFrom(cancellableFrom)
+                .hooks(hookList)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.kafka.config;
+
+import com.example.kafka.inventory.SeatInventory;
+import com.example.kafka.state.BookingStateChangelog;
+import com.example.kafka.state.BookingStateStore;
+import com.example.kafka.state.EvictedSequenceFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * One bounded state store per consumer, sharing the same eviction settings
+ */
+@Configuration
+public class BookingStateStoreConfig {
+
+    @Value("${kafka.consumer.state.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${kafka.consumer.state.terminal-grace-ms:300000}")
+    private long terminalGraceMs;
+
+    @Value("${kafka.consumer.state.idle-ttl-ms:86400000}")
+    private long idleTtlMs;
+
+    @Value("${kafka.consumer.state.segments:16}")
+    private int segments;
+
+    @Value("${kafka.consumer.state.persistence.directory:./data/booking-state}")
+    private String persistenceDirectory;
+
+    @Value("${kafka.consumer.state.persistence.changelog-size-mb:64}")
+    private int changelogSizeMb;
+
+    @Value("${kafka.consumer.state.persistence.snapshot-interval-ms:60000}")
+    private long snapshotIntervalMs;
+
+    @Value("${kafka.consumer.dedup.filter-capacity:1000000}")
+    private long dedupFilterCapacity;
+
+    @Value("${kafka.consumer.dedup.false-positive-rate:0.0001}")
+    private double dedupFalsePositiveRate;
+
+    /**
+     * Evicted entries go to the duplicate filter, so redeliveries are still
+     * recognised once the booking has left the store
+     */
+    @Bean
+    public BookingStateStore solvedBookingStateStore() {
+        BookingStateStore store = new BookingStateStore(maxEntries, terminalGraceMs, idleTtlMs, segments);
+        store.setEvictionListener(evictedSequenceFilter()::addEvicted);
+        return store;
+    }
+
+    @Bean
+    public EvictedSequenceFilter evictedSequenceFilter() {
+        return new EvictedSequenceFilter(dedupFilterCapacity, dedupFalsePositiveRate);
+    }
+
+    @Bean
+    public BookingStateStore problemBookingStateStore() {
+        return new BookingStateStore(maxEntries, terminalGraceMs, idleTtlMs, segments);
+    }
+
+    /**
+     * Local persistence for the solved consumer's state and seats - restored on
+     * startup. Evictions are logged as well, so restored state does not bring
+     * them back.
+     */
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @ConditionalOnProperty(name = "kafka.consumer.state.persistence.enabled", havingValue = "true")
+    public BookingStateChangelog solvedBookingStateChangelog(SeatInventory seatInventory) {
+        // Each changelog file is a single MappedByteBuffer - int-sized
+        long changelogSize = changelogSizeMb * 1024L * 1024L;
+        if (changelogSize <= 0 || changelogSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("kafka.consumer.state.persistence.changelog-size-mb must be between 1 and "
+                    + Integer.MAX_VALUE / (1024 * 1024) + ", was " + changelogSizeMb);
+        }
+        BookingStateStore store = solvedBookingStateStore();
+        BookingStateChangelog changelog = new BookingStateChangelog(store, seatInventory, Path.of(persistenceDirectory),
+                (int) changelogSize, snapshotIntervalMs);
+        EvictedSequenceFilter filter = evictedSequenceFilter();
+        store.setEvictionListener((bookingId, entry) -> {
+            filter.addEvicted(bookingId, entry);
+            changelog.evicted(bookingId, entry);
+        });
+        seatInventory.setReservationListener(new SeatInventory.ReservationListener() {
+            @Override
+            public void reserved(String bookingId, String flightNumber, String seatNumber) {
+                changelog.appendSeat(bookingId, flightNumber, seatNumber);
+            }
+
+            @Override
+            public void released(String bookingId) {
+                changelog.appendSeatRelease(bookingId);
+            }
+        });
+        return changelog;
+    }
+}
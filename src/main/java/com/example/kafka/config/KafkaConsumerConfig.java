@@ -1,6 +1,10 @@
 package com.example.kafka.config;
 
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.serialization.BookingEventDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -9,6 +13,7 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.MicrometerConsumerListener;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
@@ -22,17 +27,58 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${kafka.consumer.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    @Value("${kafka.consumer.batch.fetch-min-bytes:1}")
+    private int batchFetchMinBytes;
+
+    @Value("${kafka.consumer.batch.fetch-max-wait-ms:500}")
+    private int batchFetchMaxWaitMs;
+
+    @Value("${kafka.consumer.batch.max-partition-fetch-bytes:1048576}")
+    private int batchMaxPartitionFetchBytes;
+
+    // How soon consumers notice partitions added to their topics
+    @Value("${kafka.consumer.metadata-max-age-ms:300000}")
+    private int metadataMaxAgeMs;
+
+    private final MeterRegistry meterRegistry;
+
+    public KafkaConsumerConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
-        Map<String, Object> props = new HashMap<>();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        
-        return new DefaultKafkaConsumerFactory<>(props);
+        return withMetrics(new DefaultKafkaConsumerFactory<>(baseConsumerProps()));
+    }
+
+    /**
+     * Consumer factory for batch listeners - larger polls and fetches
+     */
+    @Bean
+    public ConsumerFactory<String, Object> batchConsumerFactory() {
+        Map<String, Object> props = baseConsumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchFetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchFetchMaxWaitMs);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, batchMaxPartitionFetchBytes);
+
+        return withMetrics(new DefaultKafkaConsumerFactory<>(props));
+    }
+
+    /**
+     * Booking command verdicts (JSON) - only replies sent after this instance started matter
+     */
+    @Bean
+    public ConsumerFactory<String, BookingCommandResult> commandReplyConsumerFactory() {
+        Map<String, Object> props = baseConsumerProps();
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        DefaultKafkaConsumerFactory<String, BookingCommandResult> factory = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new JsonDeserializer<>(BookingCommandResult.class, false));
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
@@ -43,4 +89,40 @@ public class KafkaConsumerConfig {
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return factory;
     }
+
+    /**
+     * Batch listener factory - one listener call and one ack per poll
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(batchConsumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Binds the Kafka client metrics (including records-lag per partition)
+     * to the MeterRegistry
+     */
+    private ConsumerFactory<String, Object> withMetrics(DefaultKafkaConsumerFactory<String, Object> factory) {
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
+
+    private Map<String, Object> baseConsumerProps() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        // Reads both JSON and compact binary BookingEvent records
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, BookingEventDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.METADATA_MAX_AGE_CONFIG, metadataMaxAgeMs);
+        // Partition N of a solved topic and of its retry topics go to the same consumer
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        return props;
+    }
 }
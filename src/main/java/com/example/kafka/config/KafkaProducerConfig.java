@@ -0,0 +1,111 @@
+package com.example.kafka.config;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.metrics.BookingMetricsProducerListener;
+import com.example.kafka.metrics.SendTimestampProducerInterceptor;
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.FlightWindowStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/**
+ * PRODUCER CONFIGURATION
+ *
+ * Builds on the spring.kafka.producer.* settings and adds:
+ *
+ * ORDER-SAFE MODE (kafka.producer.ordered=true, default):
+ * - enable.idempotence=true - the broker drops duplicates and rejects
+ *   out-of-sequence batches, so a retried batch can never land after a
+ *   later batch of the same partition
+ * - max.in.flight.requests.per.connection=5 - the highest value for which
+ *   idempotence still guarantees ordering, so batches are still pipelined
+ * - acks=all, retries unbounded (bounded in time by delivery.timeout.ms)
+ *
+ * TUNING PROFILE (kafka.producer.profile): see {@link ProducerTuningProfile}
+ *
+ * METRICS: Kafka client metrics are bound to the MeterRegistry, and every
+ * record is stamped with its send time for the send / pipeline latency
+ * timers in {@link BookingMetrics}
+ */
+@Slf4j
+@Configuration
+public class KafkaProducerConfig {
+
+    @Value("${kafka.producer.ordered:true}")
+    private boolean ordered;
+
+    @Value("${kafka.producer.profile:BALANCED}")
+    private ProducerTuningProfile profile;
+
+    @Bean
+    public ProducerFactory<String, BookingEvent> producerFactory(KafkaProperties kafkaProperties,
+                                                                 MeterRegistry meterRegistry) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+
+        if (ordered) {
+            props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            props.put(ProducerConfig.ACKS_CONFIG, "all");
+            props.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+            props.merge(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5,
+                    (configured, max) -> Math.min(Integer.parseInt(configured.toString()), 5));
+        }
+        profile.applyDefaults(props);
+
+        log.info("Producer profile {} (ordered={}): linger.ms={}, batch.size={}, compression={}",
+                profile, ordered, props.get(ProducerConfig.LINGER_MS_CONFIG),
+                props.get(ProducerConfig.BATCH_SIZE_CONFIG), props.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        DefaultKafkaProducerFactory<String, BookingEvent> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    @Bean
+    public KafkaTemplate<String, BookingEvent> kafkaTemplate(ProducerFactory<String, BookingEvent> producerFactory,
+                                                             BookingMetrics bookingMetrics) {
+        KafkaTemplate<String, BookingEvent> template = new KafkaTemplate<>(producerFactory);
+        template.setProducerInterceptor(new SendTimestampProducerInterceptor());
+        template.setProducerListener(new BookingMetricsProducerListener(bookingMetrics));
+        return template;
+    }
+
+    /**
+     * Booking command verdicts (JSON), sent by the solved consumer
+     */
+    @Bean
+    public KafkaTemplate<String, BookingCommandResult> commandReplyKafkaTemplate(KafkaProperties kafkaProperties,
+                                                                                MeterRegistry meterRegistry) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        props.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        DefaultKafkaProducerFactory<String, BookingCommandResult> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return new KafkaTemplate<>(factory);
+    }
+
+    /**
+     * Flight stats results (JSON) - same connection settings, own serializer
+     */
+    @Bean
+    public KafkaTemplate<String, FlightWindowStats> flightStatsKafkaTemplate(KafkaProperties kafkaProperties,
+                                                                             MeterRegistry meterRegistry) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        props.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        DefaultKafkaProducerFactory<String, FlightWindowStats> factory = new DefaultKafkaProducerFactory<>(props);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return new KafkaTemplate<>(factory);
+    }
+}
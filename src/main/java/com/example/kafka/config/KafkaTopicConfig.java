@@ -1,5 +1,7 @@
 package com.example.kafka.config;
 
+import com.example.kafka.consumer.retry.BookingRetryCoordinator;
+import com.example.kafka.routing.AirlineTopicRouter;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.springframework.beans.factory.annotation.Value;
@@ -7,7 +9,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.KafkaAdmin;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -22,6 +26,24 @@ public class KafkaTopicConfig {
     @Value("${kafka.topic.booking.solved}")
     private String solvedTopic;
 
+    @Value("${kafka.topic.booking.solved-partitions:3}")
+    private int solvedPartitions;
+
+    @Value("${kafka.topic.booking.problem-dlt}")
+    private String problemDeadLetterTopic;
+
+    @Value("${kafka.topic.booking.solved-dlt}")
+    private String solvedDeadLetterTopic;
+
+    @Value("${kafka.topic.booking.flight-stats}")
+    private String flightStatsTopic;
+
+    @Value("${kafka.topic.booking.command-replies}")
+    private String commandRepliesTopic;
+
+    @Value("${kafka.consumer.solved.retry.delays-ms:1000,10000,60000}")
+    private List<Long> solvedRetryDelays;
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
@@ -37,7 +59,53 @@ public class KafkaTopicConfig {
 
     @Bean
     public NewTopic bookingSolvedTopic() {
-        // Multiple partitions - ordering maintained per booking ID
-        return new NewTopic(solvedTopic, 3, (short) 1);
+        // Multiple partitions - ordering maintained per booking ID. Raising the
+        // count adds partitions on startup (see BookingPartitioner for keeping order)
+        return new NewTopic(solvedTopic, solvedPartitions, (short) 1);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics airlineShardTopics(AirlineTopicRouter router) {
+        // One solved topic per sharded carrier, each with its own partition count
+        return new KafkaAdmin.NewTopics(router.shards().stream()
+                .map(shard -> new NewTopic(shard.topic(), shard.partitions(), (short) 1))
+                .toArray(NewTopic[]::new));
+    }
+
+    @Bean
+    public NewTopic bookingProblemDeadLetterTopic() {
+        // Events whose sequence gap never filled in the reorder buffer
+        return new NewTopic(problemDeadLetterTopic, 1, (short) 1);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics bookingSolvedRetryTopics(AirlineTopicRouter router) {
+        // One topic per retry delay and solved topic, plus the DLT. Each retry
+        // topic has its solved topic's partition count: records keep their
+        // partition number, and the range assignor hands partition N of the
+        // topic and its retry topics to the same consumer. Expansions at
+        // runtime grow the retry topics too (see BookingPartitioner)
+        List<NewTopic> topics = new ArrayList<>();
+        for (long delay : solvedRetryDelays) {
+            topics.add(new NewTopic(BookingRetryCoordinator.retryTopicName(solvedTopic, delay), solvedPartitions, (short) 1));
+            for (AirlineTopicRouter.Shard shard : router.shards()) {
+                topics.add(new NewTopic(BookingRetryCoordinator.retryTopicName(shard.topic(), delay),
+                        shard.partitions(), (short) 1));
+            }
+        }
+        topics.add(new NewTopic(solvedDeadLetterTopic, 3, (short) 1));
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+
+    @Bean
+    public NewTopic commandRepliesTopic() {
+        // Verdicts for BookingCommandGateway - every instance reads all partitions
+        return new NewTopic(commandRepliesTopic, 3, (short) 1);
+    }
+
+    @Bean
+    public NewTopic flightStatsTopic() {
+        // Keyed by flight number - one flight's windows stay in order
+        return new NewTopic(flightStatsTopic, 3, (short) 1);
     }
 }
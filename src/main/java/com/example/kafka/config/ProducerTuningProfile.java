@@ -0,0 +1,40 @@
+package com.example.kafka.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+/**
+ * Producer batching presets.
+ *
+ * LATENCY    - send immediately, small batches, no compression
+ * BALANCED   - short linger, medium batches, cheap compression
+ * THROUGHPUT - longer linger, large batches, strong compression
+ *
+ * Values explicitly set under spring.kafka.producer.* always win.
+ */
+public enum ProducerTuningProfile {
+
+    LATENCY(0, 16 * 1024, "none", 32L * 1024 * 1024),
+    BALANCED(5, 64 * 1024, "lz4", 64L * 1024 * 1024),
+    THROUGHPUT(20, 256 * 1024, "zstd", 128L * 1024 * 1024);
+
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+    private final long bufferMemory;
+
+    ProducerTuningProfile(int lingerMs, int batchSize, String compressionType, long bufferMemory) {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+        this.bufferMemory = bufferMemory;
+    }
+
+    public void applyDefaults(Map<String, Object> props) {
+        props.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.putIfAbsent(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        props.putIfAbsent(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        props.putIfAbsent(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+    }
+}
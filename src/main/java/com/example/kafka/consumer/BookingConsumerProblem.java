@@ -1,14 +1,30 @@
 package com.example.kafka.consumer;
 
+import com.example.kafka.consumer.reorder.BookingReorderBuffer;
+import com.example.kafka.journal.EventJournal;
+import com.example.kafka.metrics.BookingMetrics;
 import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.state.BookingState;
+import com.example.kafka.state.BookingStateMachine;
+import com.example.kafka.state.BookingStateStore;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * PROBLEM CONSUMER
@@ -25,35 +41,99 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Producer doesn't use partition keys
  * - Events go to random partitions
  * - Different partitions are consumed at different rates
+ *
+ * REORDER MODE (kafka.consumer.problem.reorder.enabled=true):
+ * - Events ahead of the expected sequenceNumber are held in a bounded buffer
+ *   and released in order once the gap fills (see {@link BookingReorderBuffer})
+ * - Only released events are acknowledged
+ * - Record mode only: the batch listener acknowledges a whole poll at once
+ *   and does not go through the buffer
+ *
+ * Every event's ordering verdict goes to the {@link EventJournal}; the
+ * out-of-order and gap banners are still logged, routine lines only at DEBUG.
  */
 @Slf4j
 @Service
-public class BookingConsumerProblem {
+public class BookingConsumerProblem implements ConsumerSeekAware {
 
-    // Track last sequence number per booking to detect out-of-order messages
-    private final Map<String, Integer> lastSequenceMap = new ConcurrentHashMap<>();
-    private final Map<String, String> lastEventMap = new ConcurrentHashMap<>();
+    // Track highest sequence number and last event per booking to detect out-of-order messages
+    private final BookingStateStore stateStore;
+    private final BookingStateMachine stateMachine;
+
+    private final KafkaTemplate<String, BookingEvent> kafkaTemplate;
+    private final String deadLetterTopic;
+    private final BookingReorderBuffer reorderBuffer;
+
+    private final EventJournal journal;
+    private final BookingMetrics metrics;
+
+    public BookingConsumerProblem(
+            @Qualifier("problemBookingStateStore") BookingStateStore stateStore,
+            BookingStateMachine stateMachine,
+            KafkaTemplate<String, BookingEvent> kafkaTemplate,
+            EventJournal journal,
+            BookingMetrics metrics,
+            @Value("${kafka.topic.booking.problem-dlt}") String deadLetterTopic,
+            @Value("${kafka.consumer.problem.reorder.enabled:false}") boolean reorderEnabled,
+            @Value("${kafka.consumer.problem.reorder.max-per-booking:16}") int reorderMaxPerBooking,
+            @Value("${kafka.consumer.problem.reorder.max-total:10000}") int reorderMaxTotal,
+            @Value("${kafka.consumer.problem.reorder.timeout-ms:5000}") long reorderTimeoutMs,
+            @Value("${kafka.consumer.problem.reorder.timeout-action:FLUSH}") BookingReorderBuffer.TimeoutAction timeoutAction,
+            @Value("${kafka.consumer.listener-mode:record}") String listenerMode) {
+        this.stateStore = stateStore;
+        this.stateMachine = stateMachine;
+        this.kafkaTemplate = kafkaTemplate;
+        this.deadLetterTopic = deadLetterTopic;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.reorderBuffer = reorderEnabled
+                ? new BookingReorderBuffer(this::handleBookingEvent, this::sendToDeadLetterTopic,
+                        this::expectedSequence, reorderMaxPerBooking, reorderMaxTotal, reorderTimeoutMs, timeoutAction)
+                : null;
+        if (reorderEnabled && "batch".equals(listenerMode)) {
+            log.warn("⚠️  Reorder buffer is record-mode only - the batch listener will not resequence events");
+        }
+    }
 
     @KafkaListener(
+            id = "booking-problem-listener",
             topics = "${kafka.topic.booking.problem}",
             groupId = "booking-problem-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{'${kafka.consumer.listener-mode:record}' == 'record'}"
     )
     public void consumeBookingEvent(
             ConsumerRecord<String, BookingEvent> record,
             Acknowledgment acknowledgment) {
-        
+
+        metrics.recordConsumed(BookingMetrics.CONSUMER_PROBLEM, record);
+
+        if (reorderBuffer != null) {
+            // Released (and acknowledged) once its turn comes
+            reorderBuffer.offer(record, acknowledgment);
+            return;
+        }
+
+        handleBookingEvent(record);
+
+        // Manual acknowledgment
+        acknowledgment.acknowledge();
+    }
+
+    private void handleBookingEvent(ConsumerRecord<String, BookingEvent> record) {
         BookingEvent event = record.value();
         String bookingId = event.getBookingId();
         Integer currentSeq = event.getSequenceNumber();
         
-        log.info("PROBLEM CONSUMER - Received from partition {}: {}",
+        log.debug("PROBLEM CONSUMER - Received from partition {}: {}",
                 record.partition(), event);
 
         // Check for ordering issues
-        Integer lastSeq = lastSequenceMap.get(bookingId);
-        String lastEvent = lastEventMap.get(bookingId);
+        BookingState last = stateStore.get(bookingId);
+        Integer lastSeq = last != null ? last.getLastSequence() : null;
+        BookingEventType lastEvent = last != null ? last.getState() : null;
         
+        EventJournal.Decision decision = EventJournal.Decision.OK;
         if (lastSeq != null && currentSeq <= lastSeq) {
             log.error("❌ ❌ ❌ OUT OF ORDER DETECTED! ❌ ❌ ❌");
             log.error("   Booking: {} | Expected seq > {}, but got seq {}", 
@@ -61,47 +141,163 @@ public class BookingConsumerProblem {
             log.error("   Last event: {} | Current event: {}", 
                     lastEvent, event.getEventType());
             log.error("   This breaks business logic! Payment before booking creation?");
+            metrics.recordOutOfOrder(BookingMetrics.CONSUMER_PROBLEM);
+            decision = EventJournal.Decision.OUT_OF_ORDER;
         } else if (lastSeq != null && currentSeq != lastSeq + 1) {
             log.warn("⚠️  SEQUENCE GAP - Booking: {} | Last: {} | Current: {} | Gap: {}", 
                     bookingId, lastSeq, currentSeq, currentSeq - lastSeq - 1);
+            metrics.recordSequenceGap(BookingMetrics.CONSUMER_PROBLEM);
+            decision = EventJournal.Decision.SEQUENCE_GAP;
         } else {
-            log.info("✓ Sequence OK for booking {}: {} -> {}", 
+            log.debug("✓ Sequence OK for booking {}: {} -> {}",
                     bookingId, lastSeq, currentSeq);
         }
+        journal.record(EventJournal.Source.PROBLEM_CONSUMER, decision, event,
+                record.partition(), record.offset(), lastSeq);
         
         // Process the event (business logic would go here)
-        processBookingEvent(event);
-        
-        // Update tracking
-        lastSequenceMap.put(bookingId, currentSeq);
-        lastEventMap.put(bookingId, event.getEventType());
+        BookingEventType type = processBookingEvent(event, lastEvent);
         
-        // Manual acknowledgment
+        // Update tracking - keep the highest sequence seen
+        int highestSeq = lastSeq != null ? Math.max(lastSeq, currentSeq) : currentSeq;
+        stateStore.put(bookingId, type, highestSeq);
+    }
+
+    private int expectedSequence(String bookingId) {
+        BookingState last = stateStore.get(bookingId);
+        return last != null ? last.getLastSequence() + 1 : 1;
+    }
+
+    /**
+     * @return completes once the DLT has the event - the reorder buffer only
+     *         then lets its offset be committed
+     */
+    private CompletableFuture<SendResult<String, BookingEvent>> sendToDeadLetterTopic(
+            ConsumerRecord<String, BookingEvent> record) {
+        BookingEvent event = record.value();
+        log.error("☠️  Dead-lettering booking {} seq {} - gap never filled",
+                event.getBookingId(), event.getSequenceNumber());
+        return kafkaTemplate.send(deadLetterTopic, event.getBookingId(), event);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        if (reorderBuffer != null) {
+            // Held events were never acknowledged - the next owner gets them again
+            reorderBuffer.discard(partitions);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reorderBuffer != null) {
+            reorderBuffer.close();
+        }
+    }
+
+    /**
+     * BATCH MODE (kafka.consumer.listener-mode=batch)
+     *
+     * Same ordering checks as the record listener, but tracking maps are read
+     * and written once per booking per poll and the poll is acknowledged once.
+     * The reorder buffer is not applied here: events are checked in the order
+     * they were polled, whatever kafka.consumer.problem.reorder.enabled says.
+     */
+    @KafkaListener(
+            id = "booking-problem-batch-listener",
+            topics = "${kafka.topic.booking.problem}",
+            groupId = "booking-problem-group",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${kafka.consumer.listener-mode:record}' == 'batch'}"
+    )
+    public void consumeBookingEventBatch(
+            List<ConsumerRecord<String, BookingEvent>> records,
+            Acknowledgment acknowledgment) {
+
+        for (ConsumerRecord<String, BookingEvent> record : records) {
+            metrics.recordConsumed(BookingMetrics.CONSUMER_PROBLEM, record);
+        }
+
+        Map<String, List<ConsumerRecord<String, BookingEvent>>> eventsByBooking =
+                BookingConsumerSolved.groupByBooking(records);
+        int outOfOrder = 0;
+
+        for (Map.Entry<String, List<ConsumerRecord<String, BookingEvent>>> entry : eventsByBooking.entrySet()) {
+            String bookingId = entry.getKey();
+            BookingState last = stateStore.get(bookingId);
+            Integer lastSeq = last != null ? last.getLastSequence() : null;
+            BookingEventType lastEvent = last != null ? last.getState() : null;
+
+            for (ConsumerRecord<String, BookingEvent> record : entry.getValue()) {
+                BookingEvent event = record.value();
+                Integer currentSeq = event.getSequenceNumber();
+                EventJournal.Decision decision = EventJournal.Decision.OK;
+                if (lastSeq != null && currentSeq <= lastSeq) {
+                    log.error("❌ OUT OF ORDER DETECTED! Booking: {} | Expected seq > {}, but got seq {} | Last event: {} | Current event: {}",
+                            bookingId, lastSeq, currentSeq, lastEvent, event.getEventType());
+                    outOfOrder++;
+                    metrics.recordOutOfOrder(BookingMetrics.CONSUMER_PROBLEM);
+                    decision = EventJournal.Decision.OUT_OF_ORDER;
+                } else if (lastSeq != null && currentSeq != lastSeq + 1) {
+                    log.warn("⚠️  SEQUENCE GAP - Booking: {} | Last: {} | Current: {} | Gap: {}",
+                            bookingId, lastSeq, currentSeq, currentSeq - lastSeq - 1);
+                    metrics.recordSequenceGap(BookingMetrics.CONSUMER_PROBLEM);
+                    decision = EventJournal.Decision.SEQUENCE_GAP;
+                }
+                journal.record(EventJournal.Source.PROBLEM_CONSUMER, decision, event,
+                        record.partition(), record.offset(), lastSeq);
+
+                BookingEventType type = processBookingEvent(event, lastEvent);
+
+                lastSeq = lastSeq != null ? Math.max(lastSeq, currentSeq) : currentSeq;
+                lastEvent = type;
+            }
+
+            stateStore.put(bookingId, lastEvent, lastSeq);
+        }
+
         acknowledgment.acknowledge();
+
+        log.info("PROBLEM CONSUMER - Batch of {} events for {} bookings: {} out of order",
+                records.size(), eventsByBooking.size(), outOfOrder);
     }
 
-    private void processBookingEvent(BookingEvent event) {
-        switch (event.getEventType()) {
-            case "CREATED":
-                log.info("   → Processing: Booking created for flight {}", event.getFlightNumber());
+    /**
+     * No validation here - events are processed as they come, and the shared
+     * state machine only reports which ones break the booking flow.
+     *
+     * @return the event's type, or null if unknown
+     */
+    private BookingEventType processBookingEvent(BookingEvent event, BookingEventType lastEvent) {
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+        if (type == null) {
+            log.warn("   → Unknown event type: {}", event.getEventType());
+            return null;
+        }
+        if (!stateMachine.isAllowed(lastEvent, type)) {
+            log.warn("   ⚠️  Business rule violated after {}: {}", lastEvent, stateMachine.rejectionReason(lastEvent, type));
+        }
+
+        switch (type) {
+            case CREATED:
+                log.debug("   → Processing: Booking created for flight {}", event.getFlightNumber());
                 break;
-            case "SEAT_SELECTED":
-                log.info("   → Processing: Seat {} selected", event.getSeatNumber());
+            case SEAT_SELECTED:
+                log.debug("   → Processing: Seat {} selected", event.getSeatNumber());
                 break;
-            case "PAYMENT_INITIATED":
-                log.info("   → Processing: Payment initiated for ${}", event.getAmount());
+            case PAYMENT_INITIATED:
+                log.debug("   → Processing: Payment initiated for ${}", event.getAmount());
                 break;
-            case "PAYMENT_COMPLETED":
-                log.info("   → Processing: Payment completed");
+            case PAYMENT_COMPLETED:
+                log.debug("   → Processing: Payment completed");
                 break;
-            case "CONFIRMED":
-                log.info("   → Processing: Booking confirmed!");
+            case CONFIRMED:
+                log.debug("   → Processing: Booking confirmed!");
                 break;
-            case "CANCELLED":
-                log.info("   → Processing: Booking cancelled");
+            case CANCELLED:
+                log.debug("   → Processing: Booking cancelled");
                 break;
-            default:
-                log.warn("   → Unknown event type: {}", event.getEventType());
         }
+        return type;
     }
 }
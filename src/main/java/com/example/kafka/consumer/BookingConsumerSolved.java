@@ -1,14 +1,43 @@
 package com.example.kafka.consumer;
 
+import com.example.kafka.command.BookingCommandReplies;
+import com.example.kafka.consumer.parallel.KeyOrderedExecutor;
+import com.example.kafka.consumer.retry.BookingRetryCoordinator;
+import com.example.kafka.expiry.BookingExpiryScheduler;
+import com.example.kafka.inventory.SeatInventory;
+import com.example.kafka.journal.EventJournal;
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.projection.BookingProjection;
+import com.example.kafka.projection.BookingQueryRouter;
+import com.example.kafka.replay.BookingReplayer;
+import com.example.kafka.routing.BookingPartitioner;
 import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.state.BookingState;
+import com.example.kafka.state.BookingStateChangelog;
+import com.example.kafka.state.BookingStateMachine;
+import com.example.kafka.state.BookingStateStore;
+import com.example.kafka.state.EvictedSequenceFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * SOLUTION CONSUMER
@@ -26,121 +55,811 @@ import java.util.concurrent.ConcurrentHashMap;
  * - All events for same booking go to same partition
  * - Kafka guarantees ordering within a partition
  * - Consumer processes events in correct order
+ *
+ * PARALLEL MODE (kafka.consumer.solved.parallel.enabled=true):
+ * - Different bookings from the same partition run concurrently on a worker pool
+ * - Events of one booking still run strictly one after another
+ * - Only the highest contiguous completed offset is acknowledged
+ *
+ * BATCH MODE (kafka.consumer.listener-mode=batch):
+ * - One listener call per poll, state updated once per booking, one ack per poll
+ * - Malformed records (no value, bookingId or sequenceNumber) are skipped and
+ *   journaled as validation failures, in both modes, instead of failing the poll
+ *
+ * SEAT INVENTORY:
+ * - SEAT_SELECTED is rejected if another booking already holds the seat
+ *   on the same flight; CANCELLED frees the seat (see {@link SeatInventory})
+ * - Seats are persisted with the booking state; double bookings are only
+ *   caught among the bookings this instance consumes
+ *
+ * RETRY TOPICS (kafka.consumer.solved.retry.enabled=true, record mode):
+ * - Events failing validation go to delayed retry topics and finally the DLT
+ *   instead of being dropped; their booking is paused until they are resolved
+ * - Each solved topic's listener also consumes the topic's retry topics, so
+ *   a booking's retries are handled where its partition is
+ * - In batch mode they go straight to the DLT, without pausing the booking
+ *
+ * DUPLICATE SUPPRESSION:
+ * - Redelivered events (same bookingId and sequenceNumber) are skipped: the
+ *   booking's high-water mark and seen-window answer while it is in the
+ *   state store, the {@link EvictedSequenceFilter} once it has been evicted
+ * - Counted as duplicates; only a first-time event below the high-water
+ *   mark is reported as out of order
+ *
+ * EVENT JOURNAL:
+ * - Every decision (ok, gap, out of order, duplicate, deferred, validation
+ *   failure) goes to the binary {@link EventJournal}; per-event log lines
+ *   are DEBUG, only anomalies are still logged at WARN / ERROR
+ *
+ * BOOKING EXPIRY:
+ * - Bookings abandoned in SEAT_SELECTED / PAYMENT_INITIATED are cancelled
+ *   by {@link BookingExpiryScheduler}; its timers follow partition ownership
+ *
+ * BOOKING COMMANDS (POST /api/bookings/commands):
+ * - Events sent through the command gateway carry a reply topic and get the
+ *   verdict back via {@link BookingCommandReplies}: accepted (new state),
+ *   duplicate, or rejected with the reason
+ * - A rejected command is answered, not retried - the caller decides what
+ *   to do - and a command for a booking waiting on retries is rejected
+ *   instead of deferred
+ *
+ * REPLAY (POST /api/replay):
+ * - {@link BookingReplayer} rewinds partitions to an offset or timestamp and
+ *   feeds the range through {@link #replay} while the live listener is
+ *   paused: state, seats and projection only, no per-event side effects
+ *
+ * QUERY PROJECTION:
+ * - Every accepted event updates the read-side {@link BookingProjection}
+ *   behind GET /api/bookings/{id} and GET /api/flights/{flightNumber}/bookings
+ *
+ * PARTITION EXPANSION:
+ * - Records sent while partitions are being added carry their layout; a
+ *   booking whose events do not continue in sequence across the switchover
+ *   is counted in booking.switchover.breaks
+ *
+ * PERSISTENT STATE (kafka.consumer.state.persistence.enabled=true):
+ * - State changes go to a local changelog and are restored on restart
+ * - On assignment the consumer seeks to where the restored state ends
  */
 @Slf4j
 @Service
-public class BookingConsumerSolved {
+public class BookingConsumerSolved implements ConsumerSeekAware {
 
-    // Track sequence numbers to verify ordering
-    private final Map<String, Integer> lastSequenceMap = new ConcurrentHashMap<>();
-    private final Map<String, String> bookingStateMap = new ConcurrentHashMap<>();
+    public static final String GROUP_ID = "booking-solved-group";
+
+    private static final String PARKED_REASON = "Booking has earlier events awaiting retry";
+
+    // Last sequence number and state per booking (bounded, evicts finished bookings)
+    private final BookingStateStore stateStore;
+    private final BookingStateChangelog changelog;
+    private final EvictedSequenceFilter duplicateFilter;
+    private final BookingStateMachine stateMachine;
+    private final SeatInventory seatInventory;
+    private final BookingProjection projection;
+    private final BookingQueryRouter queryRouter;
+    private final BookingRetryCoordinator retryCoordinator;
+    private final BookingExpiryScheduler expiryScheduler;
+    private final BookingCommandReplies commandReplies;
+
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final boolean parallelEnabled;
+    private final Duration revokeDrainTimeout;
+    // Per consumer thread: seeks from the listener, for retry partitions held until due
+    private final ThreadLocal<ConsumerSeekCallback> seekCallbacks = new ThreadLocal<>();
+    // Revoked from this thread's consumer, waiting for its next assignment
+    private final ThreadLocal<Set<TopicPartition>> revokedPartitions = ThreadLocal.withInitial(HashSet::new);
+
+    private final EventJournal journal;
+    private final BookingMetrics metrics;
+
+    public BookingConsumerSolved(
+            @Qualifier("solvedBookingStateStore") BookingStateStore stateStore,
+            Optional<BookingStateChangelog> changelog,
+            EvictedSequenceFilter duplicateFilter,
+            BookingStateMachine stateMachine,
+            SeatInventory seatInventory,
+            BookingProjection projection,
+            BookingQueryRouter queryRouter,
+            BookingRetryCoordinator retryCoordinator,
+            BookingExpiryScheduler expiryScheduler,
+            BookingCommandReplies commandReplies,
+            KeyOrderedExecutor keyOrderedExecutor,
+            EventJournal journal,
+            BookingMetrics metrics,
+            @Value("${kafka.consumer.solved.parallel.enabled:false}") boolean parallelEnabled,
+            @Value("${kafka.consumer.solved.parallel.revoke-drain-timeout-ms:10000}") long revokeDrainTimeoutMs) {
+        this.stateStore = stateStore;
+        this.changelog = changelog.orElse(null);
+        this.duplicateFilter = duplicateFilter;
+        this.stateMachine = stateMachine;
+        this.seatInventory = seatInventory;
+        this.projection = projection;
+        this.queryRouter = queryRouter;
+        this.retryCoordinator = retryCoordinator;
+        this.expiryScheduler = expiryScheduler;
+        this.commandReplies = commandReplies;
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.parallelEnabled = parallelEnabled;
+        this.revokeDrainTimeout = Duration.ofMillis(revokeDrainTimeoutMs);
+    }
+
+    /**
+     * A consumer wired for {@link #processBookingEventWithValidation} only:
+     * collaborators the validation path never touches (changelog, duplicate
+     * filter, query router, retries, expiry, command replies, journal) are
+     * left out. Kept next to the constructor so the main build catches
+     * signature changes; used by the JMH benchmarks (src/jmh/java).
+     */
+    static BookingConsumerSolved forValidation(BookingStateStore stateStore, BookingStateMachine stateMachine,
+                                               SeatInventory seatInventory, BookingProjection projection,
+                                               KeyOrderedExecutor keyOrderedExecutor, BookingMetrics metrics) {
+        return new BookingConsumerSolved(stateStore, Optional.empty(), null, stateMachine, seatInventory,
+                projection, null, null, null, null, keyOrderedExecutor, null, metrics, false, 0);
+    }
 
     @KafkaListener(
-            topics = "${kafka.topic.booking.solved}",
-            groupId = "booking-solved-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            id = "booking-solved-listener",
+            topics = "#{@bookingRetryCoordinator.listenerTopics('${kafka.topic.booking.solved}')}",
+            groupId = GROUP_ID,
+            containerFactory = "kafkaListenerContainerFactory",
+            autoStartup = "#{'${kafka.consumer.listener-mode:record}' == 'record'}"
     )
     public void consumeBookingEvent(
             ConsumerRecord<String, BookingEvent> record,
             Acknowledgment acknowledgment) {
-        
+
+        if (retryCoordinator.holdIfNotDue(record, seekCallbacks.get())) {
+            // Retry record not due yet - its partition is paused and redelivers it
+            return;
+        }
+        metrics.recordConsumed(BookingMetrics.CONSUMER_SOLVED, record);
+
+        if (parallelEnabled) {
+            // Same bookingId → same chain, so per-booking order is kept
+            keyOrderedExecutor.submit(record, orderingKey(record), acknowledgment,
+                    () -> handleBookingEvent(record));
+            return;
+        }
+
+        handleBookingEvent(record);
+
+        // Manual acknowledgment
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * BATCH MODE (kafka.consumer.listener-mode=batch)
+     *
+     * Receives a whole poll at once, groups it by booking (keeping offset order
+     * within each booking), reads and writes each booking's state once per poll
+     * and acknowledges once for the whole batch.
+     */
+    @KafkaListener(
+            id = "booking-solved-batch-listener",
+            topics = "${kafka.topic.booking.solved}",
+            groupId = GROUP_ID,
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${kafka.consumer.listener-mode:record}' == 'batch'}"
+    )
+    public void consumeBookingEventBatch(
+            List<ConsumerRecord<String, BookingEvent>> records,
+            Acknowledgment acknowledgment) {
+
+        List<ConsumerRecord<String, BookingEvent>> wellFormed = new ArrayList<>(records.size());
+        int failed = 0;
+        for (ConsumerRecord<String, BookingEvent> record : records) {
+            metrics.recordConsumed(BookingMetrics.CONSUMER_SOLVED, record);
+            if (isMalformed(record.value())) {
+                // Skipped rather than failing the poll - one bad record must not cost the whole batch
+                skipMalformed(record);
+                failed++;
+            } else {
+                wellFormed.add(record);
+            }
+        }
+
+        Map<String, List<ConsumerRecord<String, BookingEvent>>> eventsByBooking = groupByBooking(wellFormed);
+        int succeeded = 0;
+        int duplicates = 0;
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, List<ConsumerRecord<String, BookingEvent>>> entry : eventsByBooking.entrySet()) {
+            String bookingId = entry.getKey();
+            BookingState stored = stateStore.get(bookingId);
+            BookingState working = stored;
+
+            for (ConsumerRecord<String, BookingEvent> record : entry.getValue()) {
+                BookingEvent event = record.value();
+                Integer lastSeq = working != null ? working.getLastSequence() : null;
+                boolean command = commandReplies.isCommand(record);
+                if (command && retryCoordinator.isParked(bookingId)) {
+                    journal(EventJournal.Decision.VALIDATION_FAILED, record, lastSeq);
+                    commandReplies.rejected(record, working != null ? working.getState() : null, PARKED_REASON);
+                    failed++;
+                    continue;
+                }
+                if (retryCoordinator.deferIfParked(record)) {
+                    // An earlier event of this booking is being retried
+                    journal(EventJournal.Decision.DEFERRED, record, lastSeq);
+                    continue;
+                }
+
+                int currentSeq = event.getSequenceNumber();
+                if (isDuplicate(bookingId, currentSeq, working)) {
+                    journal(EventJournal.Decision.DUPLICATE, record, lastSeq);
+                    if (command) {
+                        commandReplies.duplicate(record, working != null ? working.getState() : null);
+                    }
+                    duplicates++;
+                    continue;
+                }
+                checkSwitchoverContinuity(record, lastSeq);
+                EventJournal.Decision decision = EventJournal.Decision.OK;
+                if (lastSeq != null && currentSeq < lastSeq) {
+                    log.error("❌ UNEXPECTED! Out of order with partition key! Booking: {} | {} -> {}",
+                            bookingId, lastSeq, currentSeq);
+                    metrics.recordOutOfOrder(BookingMetrics.CONSUMER_SOLVED);
+                    decision = EventJournal.Decision.OUT_OF_ORDER;
+                } else if (lastSeq != null && currentSeq > lastSeq + 1) {
+                    metrics.recordSequenceGap(BookingMetrics.CONSUMER_SOLVED);
+                    decision = EventJournal.Decision.SEQUENCE_GAP;
+                }
+
+                BookingEventType state = working != null ? working.getState() : null;
+                BookingEventType nextState = validateTransition(state, event);
+                metrics.recordValidation(event.getEventType(), state, nextState != null);
+                if (nextState != null) {
+                    projection.apply(event, nextState, new TopicPartition(record.topic(), record.partition()));
+                    working = working != null
+                            ? working.advance(nextState, currentSeq, now)
+                            : BookingState.first(nextState, currentSeq, now);
+                    if (command) {
+                        commandReplies.accepted(record, state, nextState);
+                    }
+                    succeeded++;
+                } else {
+                    log.error("   ✗ Business logic validation failed! {}", event);
+                    failed++;
+                    decision = EventJournal.Decision.VALIDATION_FAILED;
+                    if (command) {
+                        commandReplies.rejected(record, state, rejectionReason(state, event));
+                    } else {
+                        retryCoordinator.deadLetter(record);
+                    }
+                }
+                journal(decision, record, lastSeq);
+            }
+
+            // One write per booking instead of one per event
+            if (working != stored) {
+                stateStore.put(bookingId, working);
+                if (changelog != null) {
+                    changelog.appendPendingState(bookingId, working);
+                }
+            }
+        }
+
+        if (changelog != null) {
+            // Commits the batch's state changes in the local changelog
+            appendBatchOffsets(records);
+        }
+
+        // One commit for the whole poll
+        acknowledgment.acknowledge();
+
+        log.info("SOLUTION CONSUMER - Batch of {} events for {} bookings: {} succeeded, {} failed, {} duplicates",
+                records.size(), eventsByBooking.size(), succeeded, failed, duplicates);
+    }
+
+    static Map<String, List<ConsumerRecord<String, BookingEvent>>> groupByBooking(
+            List<ConsumerRecord<String, BookingEvent>> records) {
+        Map<String, List<ConsumerRecord<String, BookingEvent>>> eventsByBooking = new LinkedHashMap<>();
+        for (ConsumerRecord<String, BookingEvent> record : records) {
+            eventsByBooking.computeIfAbsent(record.value().getBookingId(), id -> new ArrayList<>(4)).add(record);
+        }
+        return eventsByBooking;
+    }
+
+    /**
+     * Tallies of one {@link #replay} call
+     */
+    public record ReplayResult(int applied, int rejected, int duplicates) {
+    }
+
+    /**
+     * REPLAY - applies records of a rewound range of the solved topic, in
+     * offset order per partition. State store, seats and projection are
+     * updated as in batch mode; journal, command replies, retry topics,
+     * transition hooks, validation metrics and per-event logging are skipped,
+     * since those side effects already happened when the records were first
+     * consumed. Replayed state carries the events' own timestamps.
+     *
+     * Safe to call from several threads for different partitions.
+     *
+     * @param rebuild discard the stored state of a booking when its first event
+     *                (sequence 1) is replayed, and rebuild it from the replay
+     * @param rebuilt bookings already reset during this replay (concurrent set)
+     */
+    public ReplayResult replay(List<ConsumerRecord<String, BookingEvent>> records, boolean rebuild, Set<String> rebuilt) {
+        int applied = 0;
+        int rejected = 0;
+        int duplicates = 0;
+
+        List<ConsumerRecord<String, BookingEvent>> wellFormed = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, BookingEvent> record : records) {
+            if (isMalformed(record.value())) {
+                rejected++;
+            } else {
+                wellFormed.add(record);
+            }
+        }
+
+        for (Map.Entry<String, List<ConsumerRecord<String, BookingEvent>>> entry : groupByBooking(wellFormed).entrySet()) {
+            String bookingId = entry.getKey();
+            BookingState stored = stateStore.get(bookingId);
+            BookingState working = stored;
+
+            for (ConsumerRecord<String, BookingEvent> record : entry.getValue()) {
+                BookingEvent event = record.value();
+                int sequence = event.getSequenceNumber();
+                if (rebuild && sequence == 1 && rebuilt.add(bookingId)) {
+                    // Start over from the booking's first event
+                    seatInventory.release(bookingId);
+                    working = null;
+                }
+                boolean seen = working != null
+                        ? working.hasSeen(sequence)
+                        : !rebuilt.contains(bookingId) && duplicateFilter.mightContain(bookingId, sequence);
+                if (seen) {
+                    duplicates++;
+                    continue;
+                }
+
+                BookingEventType nextState = replayTransition(working != null ? working.getState() : null, event);
+                if (nextState == null) {
+                    rejected++;
+                    continue;
+                }
+                projection.apply(event, nextState, new TopicPartition(record.topic(), record.partition()));
+                // Wall-clock time like live processing - the store keeps entries in update order
+                long now = System.currentTimeMillis();
+                working = working != null
+                        ? working.advance(nextState, sequence, now)
+                        : BookingState.first(nextState, sequence, now);
+                applied++;
+            }
+
+            if (working == null) {
+                if (stored != null) {
+                    stateStore.remove(bookingId);
+                    if (changelog != null) {
+                        changelog.appendRemoval(bookingId);
+                    }
+                }
+            } else if (working != stored) {
+                stateStore.put(bookingId, working);
+                if (changelog != null) {
+                    // Committed by replayCompleted
+                    changelog.appendPendingState(bookingId, working);
+                }
+            }
+        }
+        return new ReplayResult(applied, rejected, duplicates);
+    }
+
+    /**
+     * Before a replay, with the listener paused: waits for the records already
+     * handed to the parallel workers, which a paused listener still applies.
+     *
+     * @return per partition, the offset acknowledged by the last of them
+     *         (empty unless in parallel mode)
+     * @throws IllegalStateException if they do not finish within the revoke drain timeout
+     */
+    public Map<TopicPartition, Long> awaitInFlight(Collection<TopicPartition> partitions) throws InterruptedException {
+        if (!parallelEnabled) {
+            return Map.of();
+        }
+        return keyOrderedExecutor.awaitCompleted(partitions, revokeDrainTimeout);
+    }
+
+    /**
+     * Ends a replay: commits the replayed state in the local changelog and
+     * re-arms booking expiry from it (the hooks were skipped during the replay).
+     *
+     * @param endOffsets per partition, the offset live processing resumes from
+     */
+    public void replayCompleted(Map<TopicPartition, Long> endOffsets) {
+        if (changelog != null) {
+            endOffsets.forEach((partition, end) -> {
+                if (end > 0) {
+                    changelog.appendOffset(partition, end - 1);
+                }
+            });
+        }
+        expiryScheduler.partitionsAssigned(endOffsets.keySet());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        queryRouter.partitionsAssigned(assignments.keySet());
+        dropLostPartitions(assignments.keySet());
+        expiryScheduler.partitionsAssigned(assignments.keySet());
+        Map<TopicPartition, Long> positions = new HashMap<>(assignments);
+        // Parallel mode completes offsets out of order - rely on committed offsets
+        if (changelog != null && !parallelEnabled) {
+            // Resume exactly where the restored local state ends
+            for (TopicPartition partition : assignments.keySet()) {
+                Long applied = changelog.appliedOffset(partition);
+                if (applied != null && applied + 1 != assignments.get(partition)) {
+                    log.info("💾 Seeking {} to {} to match restored state (committed: {})",
+                            partition, applied + 1, assignments.get(partition));
+                    callback.seek(partition.topic(), partition.partition(), applied + 1);
+                    positions.put(partition, applied + 1);
+                }
+            }
+        }
+        // Before any record of the new partitions is processed
+        retryCoordinator.partitionsAssigned(positions);
+    }
+
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        seekCallbacks.set(callback);
+    }
+
+    @Override
+    public void unregisterSeekCallback() {
+        seekCallbacks.remove();
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        queryRouter.partitionsRevoked(partitions);
+        expiryScheduler.partitionsRevoked(partitions);
+        if (parallelEnabled) {
+            // Finish in-flight work so its offsets are committed before handing over
+            keyOrderedExecutor.drain(partitions, revokeDrainTimeout);
+        }
+        retryCoordinator.partitionsRevoked(partitions);
+        // Projected bookings are dropped on the next assignment unless they come straight back
+        revokedPartitions.get().addAll(partitions);
+    }
+
+    /**
+     * Eager rebalances revoke everything and assign most of it back - only
+     * partitions that really moved lose their projected bookings. Revoke and
+     * assign run on the same consumer thread, so each container's revoked
+     * partitions are tracked per thread.
+     */
+    private void dropLostPartitions(Collection<TopicPartition> assigned) {
+        Set<TopicPartition> revoked = revokedPartitions.get();
+        revoked.removeAll(assigned);
+        projection.dropPartitions(revoked);
+        revoked.clear();
+    }
+
+    private void handleBookingEvent(ConsumerRecord<String, BookingEvent> record) {
         BookingEvent event = record.value();
+        if (isMalformed(event)) {
+            skipMalformed(record);
+            if (changelog != null) {
+                changelog.appendOffset(new TopicPartition(record.topic(), record.partition()), record.offset());
+            }
+            return;
+        }
         String bookingId = event.getBookingId();
         Integer currentSeq = event.getSequenceNumber();
         
-        log.info("SOLUTION CONSUMER - Received from partition {} (Key={}): {}",
+        log.debug("SOLUTION CONSUMER - Received from partition {} (Key={}): {}",
                 record.partition(), record.key(), event);
 
+        int tier = retryCoordinator.tierOf(record.topic());
+        boolean command = tier == BookingRetryCoordinator.MAIN && commandReplies.isCommand(record);
+        if (command && retryCoordinator.isParked(bookingId)) {
+            // Answer now rather than leave the caller waiting behind the retries
+            BookingState current = stateStore.get(bookingId);
+            journal(EventJournal.Decision.VALIDATION_FAILED, record, current != null ? current.getLastSequence() : null);
+            commandReplies.rejected(record, current != null ? current.getState() : null, PARKED_REASON);
+            if (changelog != null) {
+                changelog.appendOffset(new TopicPartition(record.topic(), record.partition()), record.offset());
+            }
+            return;
+        }
+        boolean deferred = tier == BookingRetryCoordinator.MAIN
+                ? retryCoordinator.deferIfParked(record)
+                : retryCoordinator.forwardIfBehind(record, tier);
+        if (deferred) {
+            // Waits behind an earlier event of this booking in the retry topics
+            journal(EventJournal.Decision.DEFERRED, record, null);
+            if (changelog != null) {
+                changelog.appendOffset(new TopicPartition(record.topic(), record.partition()), record.offset());
+            }
+            return;
+        }
+
+        BookingState current = stateStore.get(bookingId);
+        Integer lastSeq = current != null ? current.getLastSequence() : null;
+        if (isDuplicate(bookingId, currentSeq, current)) {
+            // Redelivery - already applied, nothing to do
+            journal(EventJournal.Decision.DUPLICATE, record, lastSeq);
+            if (command) {
+                commandReplies.duplicate(record, current != null ? current.getState() : null);
+            }
+            if (tier != BookingRetryCoordinator.MAIN) {
+                retryCoordinator.completed(bookingId, tier);
+            }
+            if (changelog != null) {
+                changelog.appendOffset(new TopicPartition(record.topic(), record.partition()), record.offset());
+            }
+            return;
+        }
+
+        checkSwitchoverContinuity(record, lastSeq);
+
         // Verify ordering
-        Integer lastSeq = lastSequenceMap.get(bookingId);
-        
+        EventJournal.Decision decision = EventJournal.Decision.OK;
         if (lastSeq == null) {
-            log.info("✅ First event for booking {}: seq {}", bookingId, currentSeq);
+            log.debug("✅ First event for booking {}: seq {}", bookingId, currentSeq);
         } else if (currentSeq == lastSeq + 1) {
-            log.info("✅ ✅ ✅ PERFECT ORDER! ✅ ✅ ✅");
-            log.info("   Booking: {} | Sequence: {} → {} (consecutive)", 
+            log.debug("✅ PERFECT ORDER - Booking: {} | Sequence: {} → {} (consecutive)",
                     bookingId, lastSeq, currentSeq);
         } else if (currentSeq > lastSeq) {
-            log.warn("⚠️  Sequence jump - Booking: {} | {} → {}", 
+            log.warn("⚠️  Sequence jump - Booking: {} | {} → {}",
                     bookingId, lastSeq, currentSeq);
+            metrics.recordSequenceGap(BookingMetrics.CONSUMER_SOLVED);
+            decision = EventJournal.Decision.SEQUENCE_GAP;
         } else {
             // This should NEVER happen with proper partition keys
             log.error("❌ UNEXPECTED! Out of order with partition key! {} -> {}", 
                     lastSeq, currentSeq);
+            metrics.recordOutOfOrder(BookingMetrics.CONSUMER_SOLVED);
+            decision = EventJournal.Decision.OUT_OF_ORDER;
         }
         
         // Process with business logic validation
-        boolean success = processBookingEventWithValidation(event);
+        BookingState updated = processBookingEventWithValidation(event, current);
         
-        if (success) {
-            lastSequenceMap.put(bookingId, currentSeq);
-            log.info("   ✓ Business logic executed successfully");
+        if (updated != null) {
+            // Retry topics are not the booking's home partition - keep the one it has
+            projection.apply(event, updated.getState(), tier == BookingRetryCoordinator.MAIN
+                    ? new TopicPartition(record.topic(), record.partition()) : null);
+            log.debug("   ✓ Business logic executed successfully");
+            if (command) {
+                commandReplies.accepted(record, current != null ? current.getState() : null, updated.getState());
+            }
+            if (tier != BookingRetryCoordinator.MAIN) {
+                retryCoordinator.completed(bookingId, tier);
+            }
         } else {
             log.error("   ✗ Business logic validation failed!");
+            decision = EventJournal.Decision.VALIDATION_FAILED;
+            if (command) {
+                BookingEventType currentState = current != null ? current.getState() : null;
+                commandReplies.rejected(record, currentState, rejectionReason(currentState, event));
+            } else {
+                retryCoordinator.retry(record, tier, BookingRetryCoordinator.attempt(record.headers()));
+            }
+        }
+        journal(decision, record, lastSeq);
+
+        if (changelog != null) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (updated != null) {
+                changelog.appendState(bookingId, updated, partition, record.offset());
+            } else {
+                changelog.appendOffset(partition, record.offset());
+            }
         }
-        
-        // Manual acknowledgment
-        acknowledgment.acknowledge();
     }
 
-    private boolean processBookingEventWithValidation(BookingEvent event) {
-        String bookingId = event.getBookingId();
-        String currentState = bookingStateMap.get(bookingId);
-        
-        switch (event.getEventType()) {
-            case "CREATED":
-                if (currentState != null) {
-                    log.error("   Validation Error: Booking already exists!");
-                    return false;
-                }
-                log.info("   → Creating booking for flight {}", event.getFlightNumber());
-                bookingStateMap.put(bookingId, "CREATED");
-                return true;
-                
-            case "SEAT_SELECTED":
-                if (!"CREATED".equals(currentState)) {
-                    log.error("   Validation Error: Cannot select seat before creating booking!");
-                    return false;
-                }
-                log.info("   → Selecting seat {} for booking", event.getSeatNumber());
-                bookingStateMap.put(bookingId, "SEAT_SELECTED");
-                return true;
-                
-            case "PAYMENT_INITIATED":
-                if (!"SEAT_SELECTED".equals(currentState)) {
-                    log.error("   Validation Error: Cannot initiate payment before seat selection!");
-                    return false;
-                }
-                log.info("   → Initiating payment of ${}", event.getAmount());
-                bookingStateMap.put(bookingId, "PAYMENT_INITIATED");
-                return true;
-                
-            case "PAYMENT_COMPLETED":
-                if (!"PAYMENT_INITIATED".equals(currentState)) {
-                    log.error("   Validation Error: Cannot complete payment before initiating!");
-                    return false;
-                }
-                log.info("   → Payment completed successfully");
-                bookingStateMap.put(bookingId, "PAYMENT_COMPLETED");
-                return true;
-                
-            case "CONFIRMED":
-                if (!"PAYMENT_COMPLETED".equals(currentState)) {
-                    log.error("   Validation Error: Cannot confirm before payment!");
-                    return false;
-                }
-                log.info("   → Booking CONFIRMED! ✈️");
-                bookingStateMap.put(bookingId, "CONFIRMED");
-                return true;
-                
-            case "CANCELLED":
-                log.info("   → Booking cancelled");
-                bookingStateMap.put(bookingId, "CANCELLED");
-                return true;
-                
-            default:
-                log.warn("   → Unknown event type: {}", event.getEventType());
+    /**
+     * While partitions are being added (records carry the layout header, see
+     * {@link BookingPartitioner}) a booking must continue on the partition
+     * its earlier events came from. An event whose predecessor was not
+     * consumed here first means the booking moved too early.
+     */
+    private void checkSwitchoverContinuity(ConsumerRecord<String, BookingEvent> record, Integer lastSeq) {
+        int layout = BookingPartitioner.layoutOf(record.headers());
+        if (layout == 0) {
+            return;
+        }
+        int sequence = record.value().getSequenceNumber();
+        int expected = lastSeq != null ? lastSeq + 1 : 1;
+        if (sequence != expected) {
+            metrics.recordSwitchoverBreak(record.topic());
+            log.warn("🔀 Switchover continuity break - Booking: {} | seq {} on {}-{} (layout of {} partitions), expected {}",
+                    record.value().getBookingId(), sequence, record.topic(), record.partition(), layout, expected);
+        }
+    }
+
+    /**
+     * @return true if the record cannot be processed at all: no value (tombstone),
+     *         no bookingId, or a missing or non-positive sequenceNumber
+     */
+    static boolean isMalformed(BookingEvent event) {
+        return event == null || event.getBookingId() == null
+                || event.getSequenceNumber() == null || event.getSequenceNumber() < 1;
+    }
+
+    private void skipMalformed(ConsumerRecord<String, BookingEvent> record) {
+        log.error("❌ Malformed event skipped at {}-{}@{}: {}",
+                record.topic(), record.partition(), record.offset(), record.value());
+        if (record.value() != null) {
+            journal(EventJournal.Decision.VALIDATION_FAILED, record, null);
+        }
+    }
+
+    /**
+     * The parallel executor's chain key - the bookingId, or the record key
+     * for a malformed event without one (it is skipped on the worker).
+     */
+    private static String orderingKey(ConsumerRecord<String, BookingEvent> record) {
+        BookingEvent event = record.value();
+        return event != null && event.getBookingId() != null ? event.getBookingId() : String.valueOf(record.key());
+    }
+
+    private void journal(EventJournal.Decision decision, ConsumerRecord<String, BookingEvent> record, Integer lastSeq) {
+        journal.record(EventJournal.Source.SOLVED_CONSUMER, decision, record.value(),
+                record.partition(), record.offset(), lastSeq);
+    }
+
+    /**
+     * @param current the booking's state entry, or null if not in the store
+     * @return true if this sequence of the booking was already processed
+     */
+    private boolean isDuplicate(String bookingId, int sequence, BookingState current) {
+        boolean duplicate = current != null
+                ? current.hasSeen(sequence)
+                : duplicateFilter.mightContain(bookingId, sequence);
+        if (duplicate) {
+            log.debug("🔁 Duplicate skipped - Booking: {} | Sequence: {}", bookingId, sequence);
+            metrics.recordDuplicate(BookingMetrics.CONSUMER_SOLVED, current != null
+                    ? BookingMetrics.DETECTED_BY_HIGH_WATER_MARK
+                    : BookingMetrics.DETECTED_BY_FILTER);
+        }
+        return duplicate;
+    }
+
+    /**
+     * Package-private for the JMH benchmarks (src/jmh/java).
+     *
+     * @return the booking's new state entry, or null if validation failed
+     */
+    BookingState processBookingEventWithValidation(BookingEvent event, BookingState current) {
+        BookingEventType currentState = current != null ? current.getState() : null;
+        BookingEventType nextState = validateTransition(currentState, event);
+        metrics.recordValidation(event.getEventType(), currentState, nextState != null);
+        if (nextState == null) {
+            return null;
+        }
+        return stateStore.put(event.getBookingId(), nextState, event.getSequenceNumber());
+    }
+
+    private void appendBatchOffsets(List<ConsumerRecord<String, BookingEvent>> records) {
+        Map<TopicPartition, Long> lastOffsets = new HashMap<>();
+        for (ConsumerRecord<String, BookingEvent> record : records) {
+            lastOffsets.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::max);
+        }
+        lastOffsets.forEach(changelog::appendOffset);
+    }
+
+    /**
+     * Validates the event against the booking's current state.
+     *
+     * @return the booking's next state, or null if the transition is not allowed
+     */
+    private BookingEventType validateTransition(BookingEventType currentState, BookingEvent event) {
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+        if (type == null) {
+            log.warn("   → Unknown event type: {}", event.getEventType());
+            return null;
+        }
+
+        if (type == BookingEventType.SEAT_SELECTED && stateMachine.isAllowed(currentState, type)
+                && !reserveSeat(event)) {
+            return null;
+        }
+
+        BookingEventType nextState = stateMachine.transition(currentState, type, event);
+        if (nextState == null) {
+            log.error("   Validation Error: {}", stateMachine.rejectionReason(currentState, type));
+            return null;
+        }
+        if (nextState == BookingEventType.CANCELLED) {
+            String released = seatInventory.release(event.getBookingId());
+            if (released != null) {
+                log.debug("   → Seat {} on flight {} released", released, event.getFlightNumber());
+            }
+        }
+
+        switch (nextState) {
+            case CREATED:
+                log.debug("   → Creating booking for flight {}", event.getFlightNumber());
+                break;
+            case SEAT_SELECTED:
+                log.debug("   → Selecting seat {} for booking", event.getSeatNumber());
+                break;
+            case PAYMENT_INITIATED:
+                log.debug("   → Initiating payment of ${}", event.getAmount());
+                break;
+            case PAYMENT_COMPLETED:
+                log.debug("   → Payment completed successfully");
+                break;
+            case CONFIRMED:
+                log.debug("   → Booking CONFIRMED! ✈️");
+                break;
+            case CANCELLED:
+                log.debug("   → Booking cancelled");
+                break;
+        }
+        return nextState;
+    }
+
+    /**
+     * Why {@link #validateTransition} turned the event down, for command replies.
+     */
+    private String rejectionReason(BookingEventType currentState, BookingEvent event) {
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+        if (type == null) {
+            return "Unknown event type: " + event.getEventType();
+        }
+        if (!stateMachine.isAllowed(currentState, type)) {
+            return stateMachine.rejectionReason(currentState, type);
+        }
+        if (type == BookingEventType.SEAT_SELECTED) {
+            Boolean available = seatInventory.isAvailable(event.getFlightNumber(), event.getSeatNumber());
+            if (available == null) {
+                return "Invalid seat " + event.getSeatNumber() + " on flight " + event.getFlightNumber();
+            }
+            if (!available) {
+                return "Seat " + event.getSeatNumber() + " on flight " + event.getFlightNumber() + " is already taken";
+            }
+        }
+        return "Rejected by a booking rule";
+    }
+
+    /**
+     * {@link #validateTransition} for replayed events - table lookup and seat
+     * inventory only, without hooks or logging.
+     */
+    private BookingEventType replayTransition(BookingEventType currentState, BookingEvent event) {
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+        BookingEventType nextState = stateMachine.nextState(currentState, type);
+        if (nextState == null) {
+            return null;
+        }
+        if (type == BookingEventType.SEAT_SELECTED) {
+            SeatInventory.Outcome outcome = seatInventory.reserve(
+                    event.getFlightNumber(), event.getSeatNumber(), event.getBookingId());
+            if (outcome == SeatInventory.Outcome.TAKEN || outcome == SeatInventory.Outcome.INVALID_SEAT) {
+                return null;
+            }
+        }
+        if (nextState == BookingEventType.CANCELLED) {
+            seatInventory.release(event.getBookingId());
+        }
+        return nextState;
+    }
+
+    /**
+     * @return false if the seat is invalid or already held by another booking
+     */
+    private boolean reserveSeat(BookingEvent event) {
+        SeatInventory.Outcome outcome = seatInventory.reserve(
+                event.getFlightNumber(), event.getSeatNumber(), event.getBookingId());
+        switch (outcome) {
+            case TAKEN:
+                log.error("   Validation Error: Seat {} on flight {} is already taken!",
+                        event.getSeatNumber(), event.getFlightNumber());
+                return false;
+            case INVALID_SEAT:
+                log.error("   Validation Error: Invalid seat {} on flight {}!",
+                        event.getSeatNumber(), event.getFlightNumber());
                 return false;
+            default:
+                return true;
         }
     }
 }
@@ -0,0 +1,182 @@
+package com.example.kafka.consumer.parallel;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * KEY-ORDERED PARALLEL EXECUTOR
+ *
+ * Runs records from the same partition concurrently while keeping strict
+ * ordering per key (bookingId).
+ *
+ * How it works:
+ * - Each key has a "tail" future; a new record for that key is chained after it
+ * - Different keys have independent chains and run on the worker pool in parallel
+ * - A key's chain is dropped as soon as its last record finishes
+ * - Offsets are acknowledged through {@link PartitionOffsetTracker}, so only the
+ *   highest contiguous completed offset is ever committed
+ * - A semaphore bounds the records in flight; when full the consumer thread
+ *   waits, which naturally slows down polling (backpressure)
+ *
+ * RESULT: Throughput scales with worker threads instead of partition count,
+ *         and BK001's events still run one after another.
+ *
+ * The worker pool is started by the first submit, so the default record
+ * mode (parallel disabled) keeps no idle worker threads.
+ */
+@Slf4j
+@Component
+public class KeyOrderedExecutor {
+
+    private final int workerCount;
+    private final Semaphore inFlightPermits;
+    private final Map<String, CompletableFuture<Void>> keyTails = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+    private volatile ExecutorService workers;
+
+    public KeyOrderedExecutor(
+            @Value("${kafka.consumer.solved.parallel.workers:8}") int workerCount,
+            @Value("${kafka.consumer.solved.parallel.max-in-flight:1000}") int maxInFlight) {
+        this.workerCount = workerCount;
+        this.inFlightPermits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Schedules the task after every earlier task with the same key.
+     * Must be called from the consumer thread, in offset order.
+     */
+    public void submit(ConsumerRecord<String, ?> record, String key,
+                       Acknowledgment acknowledgment, Runnable task) {
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free worker slot", e);
+        }
+
+        PartitionOffsetTracker tracker = trackers.computeIfAbsent(
+                new TopicPartition(record.topic(), record.partition()),
+                tp -> new PartitionOffsetTracker());
+        PartitionOffsetTracker.PendingOffset pending = tracker.register(record.offset(), acknowledgment);
+
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("❌ Worker failed for key {} at offset {}", key, pending.offset(), e);
+            } finally {
+                tracker.complete(pending);
+                inFlightPermits.release();
+            }
+        };
+
+        ExecutorService workers = workers();
+        CompletableFuture<Void> next = keyTails.compute(key, (k, tail) -> tail == null
+                ? CompletableFuture.runAsync(guarded, workers)
+                : tail.thenRunAsync(guarded, workers));
+        next.whenComplete((ignored, ex) -> keyTails.remove(key, next));
+    }
+
+    /**
+     * Waits for in-flight records of revoked partitions so their offsets are
+     * acknowledged before the partitions move to another consumer.
+     */
+    public void drain(Collection<TopicPartition> partitions, Duration timeout) {
+        for (TopicPartition partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.remove(partition);
+            if (tracker == null) {
+                continue;
+            }
+            try {
+                if (!tracker.awaitDrained(timeout)) {
+                    log.warn("⚠️  {} records still in flight on {} after {}; they will be redelivered",
+                            tracker.inFlight(), partition, timeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits for in-flight records of partitions this consumer keeps (unlike
+     * {@link #drain}), e.g. while the listener is paused for a replay.
+     *
+     * @return per partition, the next offset after the last acknowledged record
+     * @throws IllegalStateException if records are still in flight after the timeout
+     */
+    public Map<TopicPartition, Long> awaitCompleted(Collection<TopicPartition> partitions, Duration timeout)
+            throws InterruptedException {
+        Map<TopicPartition, Long> acknowledged = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            if (tracker == null) {
+                continue;
+            }
+            if (!tracker.awaitDrained(timeout)) {
+                throw new IllegalStateException(tracker.inFlight() + " records still in flight on " + partition
+                        + " after " + timeout);
+            }
+            if (tracker.highestContiguousOffset() >= 0) {
+                acknowledged.put(partition, tracker.highestContiguousOffset() + 1);
+            }
+        }
+        return acknowledged;
+    }
+
+    public int inFlight() {
+        return trackers.values().stream().mapToInt(PartitionOffsetTracker::inFlight).sum();
+    }
+
+    public int activeKeys() {
+        return keyTails.size();
+    }
+
+    private ExecutorService workers() {
+        ExecutorService pool = workers;
+        if (pool == null) {
+            synchronized (this) {
+                pool = workers;
+                if (pool == null) {
+                    AtomicInteger threadIndex = new AtomicInteger();
+                    pool = Executors.newFixedThreadPool(workerCount, runnable -> {
+                        Thread thread = new Thread(runnable, "booking-worker-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    workers = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.kafka.consumer.parallel;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * OFFSET TRACKER (one per partition)
+ *
+ * Records are registered in offset order by the consumer thread but may
+ * complete in any order on worker threads. An offset is acknowledged only
+ * when it and every offset before it have completed, so the committed
+ * position never moves past a record that is still being processed.
+ *
+ * Example: offsets 10, 11, 12 in flight, 12 and 10 complete first
+ * - 10 done      → ack 10 (contiguous)
+ * - 12 done      → nothing, 11 still running
+ * - 11 done      → ack 12 (10..12 now contiguous)
+ */
+public class PartitionOffsetTracker {
+
+    private final Deque<PendingOffset> pending = new ArrayDeque<>();
+    private long highestContiguousOffset = -1L;
+
+    public synchronized PendingOffset register(long offset, Acknowledgment acknowledgment) {
+        PendingOffset pendingOffset = new PendingOffset(offset, acknowledgment);
+        pending.addLast(pendingOffset);
+        return pendingOffset;
+    }
+
+    /**
+     * Marks the offset as completed and acknowledges the highest contiguous
+     * completed offset, if it advanced.
+     */
+    public synchronized void complete(PendingOffset pendingOffset) {
+        pendingOffset.done = true;
+
+        PendingOffset highest = null;
+        while (!pending.isEmpty() && pending.peekFirst().done) {
+            highest = pending.pollFirst();
+        }
+
+        if (highest != null) {
+            highestContiguousOffset = highest.offset;
+            // Spring keeps the max acked offset per partition, so acking only
+            // the head of the contiguous run commits everything before it
+            highest.acknowledgment.acknowledge();
+        }
+
+        if (pending.isEmpty()) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until every registered offset has completed or the timeout passes.
+     *
+     * @return true if the partition drained in time
+     */
+    public synchronized boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!pending.isEmpty()) {
+            long remainingMillis = Duration.ofNanos(deadline - System.nanoTime()).toMillis();
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            wait(remainingMillis);
+        }
+        return true;
+    }
+
+    public synchronized int inFlight() {
+        return pending.size();
+    }
+
+    public synchronized long highestContiguousOffset() {
+        return highestContiguousOffset;
+    }
+
+    public static final class PendingOffset {
+
+        private final long offset;
+        private final Acknowledgment acknowledgment;
+        private boolean done;
+
+        private PendingOffset(long offset, Acknowledgment acknowledgment) {
+            this.offset = offset;
+            this.acknowledgment = acknowledgment;
+        }
+
+        public long offset() {
+            return offset;
+        }
+    }
+}
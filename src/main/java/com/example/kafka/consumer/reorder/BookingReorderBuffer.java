@@ -0,0 +1,247 @@
+package com.example.kafka.consumer.reorder;
+
+import com.example.kafka.consumer.parallel.PartitionOffsetTracker;
+import com.example.kafka.model.BookingEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * RESEQUENCING BUFFER
+ *
+ * Restores per-booking order for events that arrive out of sequence
+ * (e.g. sent without a partition key).
+ *
+ * How it works:
+ * - An event with the expected sequenceNumber is released immediately,
+ *   followed by any buffered events that are now consecutive
+ * - An event ahead of the expected sequenceNumber is held back
+ * - Late or duplicate events (below expected) are released as-is,
+ *   so the consumer's own checks still report them
+ *
+ * Limits:
+ * - At most maxPerBooking events held per booking, maxTotal in total
+ * - A booking whose gap is not filled within the timeout is expired -
+ *   its held events are either flushed in order despite the gap, or
+ *   handed to the dead-letter handler
+ * - Exceeding a limit expires the booking early
+ *
+ * Offsets are tracked per partition and acknowledged only up to the highest
+ * contiguous released (or dead-lettered) record, so held events are never
+ * committed and will be redelivered after a crash. A dead-lettered record
+ * counts once the dead-letter send has succeeded; if it fails the offset
+ * stays pending, so the record is redelivered rather than lost.
+ */
+@Slf4j
+public class BookingReorderBuffer implements AutoCloseable {
+
+    public enum TimeoutAction {
+        FLUSH,
+        DEAD_LETTER
+    }
+
+    private final Consumer<ConsumerRecord<String, BookingEvent>> releaseHandler;
+    private final Function<ConsumerRecord<String, BookingEvent>, CompletableFuture<?>> deadLetterHandler;
+    private final ToIntFunction<String> expectedSequence;
+    private final int maxPerBooking;
+    private final int maxTotal;
+    private final long timeoutMillis;
+    private final TimeoutAction timeoutAction;
+
+    // Insertion order = order in which bookings started waiting, i.e. deadline order
+    private final Map<String, HeldBooking> heldBookings = new LinkedHashMap<>();
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new HashMap<>();
+    private final ScheduledExecutorService timer;
+    private int totalHeld;
+
+    public BookingReorderBuffer(Consumer<ConsumerRecord<String, BookingEvent>> releaseHandler,
+                                Function<ConsumerRecord<String, BookingEvent>, CompletableFuture<?>> deadLetterHandler,
+                                ToIntFunction<String> expectedSequence,
+                                int maxPerBooking, int maxTotal, long timeoutMillis,
+                                TimeoutAction timeoutAction) {
+        this.releaseHandler = releaseHandler;
+        this.deadLetterHandler = deadLetterHandler;
+        this.expectedSequence = expectedSequence;
+        this.maxPerBooking = maxPerBooking;
+        this.maxTotal = maxTotal;
+        this.timeoutMillis = timeoutMillis;
+        this.timeoutAction = timeoutAction;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-reorder-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(10, timeoutMillis / 4);
+        timer.scheduleWithFixedDelay(this::expireOverdue, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void offer(ConsumerRecord<String, BookingEvent> record, Acknowledgment acknowledgment) {
+        PartitionOffsetTracker tracker = trackers.computeIfAbsent(
+                new TopicPartition(record.topic(), record.partition()), tp -> new PartitionOffsetTracker());
+        Held held = new Held(record, tracker, tracker.register(record.offset(), acknowledgment));
+
+        BookingEvent event = record.value();
+        String bookingId = event.getBookingId();
+        int sequence = event.getSequenceNumber();
+        int expected = expectedSequence.applyAsInt(bookingId);
+
+        HeldBooking booking = heldBookings.get(bookingId);
+        if (sequence <= expected || (booking != null && booking.events.containsKey(sequence))) {
+            // In order, late or duplicate - nothing to wait for
+            release(held);
+            if (booking != null) {
+                releaseConsecutive(bookingId, booking);
+            }
+            return;
+        }
+
+        if (booking == null) {
+            booking = new HeldBooking(System.currentTimeMillis());
+            heldBookings.put(bookingId, booking);
+        }
+        booking.events.put(sequence, held);
+        totalHeld++;
+        log.warn("⏸️  Holding booking {} seq {} (expected {}), {} held for this booking",
+                bookingId, sequence, expected, booking.events.size());
+
+        if (booking.events.size() > maxPerBooking) {
+            log.warn("⚠️  Reorder limit per booking reached for {}", bookingId);
+            expire(bookingId);
+        }
+        while (totalHeld > maxTotal && !heldBookings.isEmpty()) {
+            String oldest = heldBookings.keySet().iterator().next();
+            log.warn("⚠️  Reorder buffer full ({} events), expiring oldest booking {}", totalHeld, oldest);
+            expire(oldest);
+        }
+    }
+
+    /**
+     * Drops held events of revoked partitions - they were never acknowledged,
+     * so the new owner will receive them again.
+     */
+    public synchronized void discard(Collection<TopicPartition> partitions) {
+        Iterator<HeldBooking> bookings = heldBookings.values().iterator();
+        while (bookings.hasNext()) {
+            HeldBooking booking = bookings.next();
+            int before = booking.events.size();
+            booking.events.values().removeIf(held -> partitions.contains(
+                    new TopicPartition(held.record.topic(), held.record.partition())));
+            totalHeld -= before - booking.events.size();
+            if (booking.events.isEmpty()) {
+                bookings.remove();
+            }
+        }
+        partitions.forEach(trackers::remove);
+    }
+
+    public synchronized int heldEvents() {
+        return totalHeld;
+    }
+
+    public synchronized int heldBookings() {
+        return heldBookings.size();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private synchronized void expireOverdue() {
+        long deadline = System.currentTimeMillis() - timeoutMillis;
+        try {
+            while (!heldBookings.isEmpty()) {
+                Map.Entry<String, HeldBooking> oldest = heldBookings.entrySet().iterator().next();
+                if (oldest.getValue().heldSinceMillis > deadline) {
+                    break;
+                }
+                log.warn("⏱️  Gap for booking {} not filled within {} ms", oldest.getKey(), timeoutMillis);
+                expire(oldest.getKey());
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to expire held booking events", e);
+        }
+    }
+
+    private void expire(String bookingId) {
+        HeldBooking booking = heldBookings.remove(bookingId);
+        if (booking == null) {
+            return;
+        }
+        totalHeld -= booking.events.size();
+        for (Held held : booking.events.values()) {
+            if (timeoutAction == TimeoutAction.FLUSH) {
+                release(held);
+            } else {
+                deadLetter(held);
+            }
+        }
+    }
+
+    private void releaseConsecutive(String bookingId, HeldBooking booking) {
+        int expected = expectedSequence.applyAsInt(bookingId);
+        while (!booking.events.isEmpty() && booking.events.firstKey() <= expected) {
+            release(booking.events.pollFirstEntry().getValue());
+            totalHeld--;
+            expected = expectedSequence.applyAsInt(bookingId);
+        }
+        if (booking.events.isEmpty()) {
+            heldBookings.remove(bookingId);
+        }
+    }
+
+    private void deadLetter(Held held) {
+        CompletableFuture<?> sent;
+        try {
+            sent = deadLetterHandler.apply(held.record);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((result, ex) -> {
+            if (ex == null) {
+                held.tracker.complete(held.offset);
+            } else {
+                log.error("❌ Dead-lettering {}-{}@{} failed - offset left uncommitted for redelivery: {}",
+                        held.record.topic(), held.record.partition(), held.record.offset(), ex.getMessage());
+            }
+        });
+    }
+
+    private void release(Held held) {
+        try {
+            releaseHandler.accept(held.record);
+        } finally {
+            held.tracker.complete(held.offset);
+        }
+    }
+
+    private static final class HeldBooking {
+
+        private final long heldSinceMillis;
+        private final TreeMap<Integer, Held> events = new TreeMap<>();
+
+        private HeldBooking(long heldSinceMillis) {
+            this.heldSinceMillis = heldSinceMillis;
+        }
+    }
+
+    private record Held(ConsumerRecord<String, BookingEvent> record,
+                        PartitionOffsetTracker tracker,
+                        PartitionOffsetTracker.PendingOffset offset) {
+    }
+}
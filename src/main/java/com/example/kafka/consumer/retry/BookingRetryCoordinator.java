@@ -0,0 +1,597 @@
+package com.example.kafka.consumer.retry;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.routing.AirlineTopicRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * NON-BLOCKING RETRIES WITH PER-BOOKING PAUSE
+ *
+ * An event that fails validation is not retried in place (that would stall
+ * its whole partition). Instead it is moved to a chain of retry topics with
+ * increasing delays (kafka.consumer.solved.retry.delays-ms), and finally to
+ * the dead-letter topic:
+ *
+ *   main → retry-1000 → retry-10000 → retry-60000 → DLT
+ *
+ * While a booking has events in the chain it is PARKED: its later events
+ * are not processed from the main topic but queued into the chain behind
+ * the failed one, so they can never jump ahead of it. Other bookings on
+ * the same partition keep flowing at full speed.
+ *
+ * Ordering rules (per booking, "lower tier" = shorter delay):
+ * - A failed event moves to the next tier (or the DLT after the last) and
+ *   becomes the booking's head
+ * - A new main-topic event of a parked booking joins the lowest tier that
+ *   still holds events of that booking, i.e. behind all of them
+ * - An event reached in a tier while older events of its booking are in
+ *   higher tiers steps up one tier at a time (never past them)
+ * - When the head succeeds or is dead-lettered the events behind it are
+ *   processed normally as they come up; the booking is unparked once
+ *   nothing of it is left in the chain
+ *
+ * OWNERSHIP:
+ * - Every solved topic (the default one and each airline shard) has its own
+ *   chain "{topic}-retry-{delay}" with the topic's partition count, and
+ *   records keep their partition number along it
+ * - The topic's listener subscribes to its retry topics in the same group;
+ *   the range assignor gives partition N of all of them to one consumer, so
+ *   the consumer that parks a booking is the one that sees its retries
+ * - On assignment the parked bookings are rebuilt by reading the assigned
+ *   retry partitions from the consumer's position to their end; they are
+ *   dropped again when the partitions are revoked
+ *
+ * DELAYS:
+ * - Records carry their due time in the {@value #DUE_HEADER} header
+ * - A record that is not due yet holds its retry partition: the consumer
+ *   seeks back to it and pauses that partition until then. The main topic
+ *   and the other tiers keep flowing
+ *
+ * Records are forwarded synchronously before the source offset is
+ * acknowledged, so nothing is lost.
+ *
+ * Record listener mode only - the batch listener acknowledges a whole poll
+ * and cannot hold a partition back. In batch mode events failing validation
+ * go straight to the DLT ({@link #deadLetter}) and their booking is not
+ * paused.
+ */
+@Slf4j
+@Component
+public class BookingRetryCoordinator implements DisposableBean {
+
+    public static final String DUE_HEADER = "booking-retry-due";
+    public static final String ATTEMPT_HEADER = "booking-retry-attempt";
+
+    /** Tier index of the main topic */
+    public static final int MAIN = -1;
+
+    private static final int NONE = Integer.MIN_VALUE;
+    private static final int LOCK_STRIPES = 64;
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    private final boolean enabled;
+    // Batch mode with retries enabled - failures go straight to the DLT
+    private final boolean deadLetterOnly;
+    private final KafkaTemplate<String, BookingEvent> kafkaTemplate;
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaProperties kafkaProperties;
+    private final long[] tierDelays;
+    private final String deadLetterTopic;
+    private final long rebuildTimeoutMs;
+    // Retry topic → tier, and → the solved topic whose chain it belongs to
+    private final Map<String, Integer> tierByTopic = new HashMap<>();
+    private final Map<String, String> sourceByTopic = new HashMap<>();
+    private final Map<String, ParkedBooking> parked = new ConcurrentHashMap<>();
+    // Retry partitions waiting for a record to become due
+    private final Map<TopicPartition, HeldPartition> held = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final ScheduledExecutorService resumer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-retry-resume");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BookingRetryCoordinator(
+            KafkaTemplate<String, BookingEvent> kafkaTemplate,
+            KafkaListenerEndpointRegistry registry,
+            KafkaProperties kafkaProperties,
+            AirlineTopicRouter router,
+            @Value("${kafka.consumer.solved.retry.enabled:true}") boolean enabled,
+            @Value("${kafka.consumer.listener-mode:record}") String listenerMode,
+            @Value("${kafka.consumer.solved.retry.delays-ms:1000,10000,60000}") List<Long> delays,
+            @Value("${kafka.consumer.solved.retry.rebuild-timeout-ms:30000}") long rebuildTimeoutMs,
+            @Value("${kafka.topic.booking.solved-dlt}") String deadLetterTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.registry = registry;
+        this.kafkaProperties = kafkaProperties;
+        this.enabled = enabled && "record".equals(listenerMode);
+        this.deadLetterOnly = enabled && "batch".equals(listenerMode);
+        this.deadLetterTopic = deadLetterTopic;
+        this.rebuildTimeoutMs = rebuildTimeoutMs;
+        this.tierDelays = new long[delays.size()];
+        for (int tier = 0; tier < delays.size(); tier++) {
+            tierDelays[tier] = delays.get(tier);
+            for (String topic : router.topics()) {
+                String retryTopic = retryTopicName(topic, delays.get(tier));
+                tierByTopic.put(retryTopic, tier);
+                sourceByTopic.put(retryTopic, topic);
+            }
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        if (deadLetterOnly) {
+            log.warn("⚠️  Retry topics are record-mode only - the batch listener sends events failing validation "
+                    + "straight to {}", deadLetterTopic);
+        }
+    }
+
+    public static String retryTopicName(String topic, long delayMillis) {
+        return topic + "-retry-" + delayMillis;
+    }
+
+    /**
+     * Topics the listener of a solved topic subscribes to: the topic and,
+     * with retries enabled, its retry topics
+     */
+    public String[] listenerTopics(String topic) {
+        if (!enabled) {
+            return new String[] {topic};
+        }
+        String[] topics = new String[tierDelays.length + 1];
+        topics[0] = topic;
+        for (int tier = 0; tier < tierDelays.length; tier++) {
+            topics[tier + 1] = retryTopicName(topic, tierDelays[tier]);
+        }
+        return topics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the booking has events in the retry chain
+     */
+    public boolean isParked(String bookingId) {
+        return enabled && parked.containsKey(bookingId);
+    }
+
+    /**
+     * @return the tier of a retry topic, or MAIN for any other topic
+     */
+    public int tierOf(String topic) {
+        Integer tier = tierByTopic.get(topic);
+        return tier != null ? tier : MAIN;
+    }
+
+    /**
+     * Retry-topic path, before a record is processed. A record that is not
+     * due yet holds its partition: the consumer is sought back to it and the
+     * partition paused until it is due. Later records of a held partition
+     * (from the same poll) are skipped and sought back the same way.
+     *
+     * Called on the consumer thread.
+     *
+     * @return true if the record must be neither processed nor acknowledged now
+     */
+    public boolean holdIfNotDue(ConsumerRecord<String, BookingEvent> record, ConsumerSeekCallback seekCallback) {
+        if (!enabled || tierOf(record.topic()) == MAIN) {
+            return false;
+        }
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        HeldPartition hold = held.get(partition);
+        if (hold != null && record.offset() != hold.offset) {
+            // An earlier record of this partition is not due yet
+            seekCallback.seek(partition.topic(), partition.partition(), hold.offset);
+            return true;
+        }
+        long waitMillis = dueAt(record.headers()) - System.currentTimeMillis();
+        if (waitMillis <= 0) {
+            if (hold != null) {
+                held.remove(partition);
+            }
+            return false;
+        }
+        if (hold == null) {
+            hold = new HeldPartition(record.offset(), containerOf(partition));
+            held.put(partition, hold);
+        }
+        hold.pauseFor(partition, waitMillis);
+        seekCallback.seek(partition.topic(), partition.partition(), record.offset());
+        return true;
+    }
+
+    /**
+     * Main-topic path: queues the event behind its booking's pending events.
+     *
+     * @return true if the booking is parked and the event was forwarded
+     */
+    public boolean deferIfParked(ConsumerRecord<String, BookingEvent> record) {
+        BookingEvent event = record.value();
+        String bookingId = event.getBookingId();
+        if (!enabled || !parked.containsKey(bookingId)) {
+            return false;
+        }
+        synchronized (lockFor(bookingId)) {
+            ParkedBooking booking = parked.get(bookingId);
+            if (booking == null) {
+                return false;
+            }
+            int target = booking.lowestPendingTier();
+            if (target == NONE) {
+                return false;
+            }
+            String topic = tierTopic(record.topic(), target);
+            log.warn("⏸️  Booking {} is parked - seq {} queued behind it in {}",
+                    bookingId, event.getSequenceNumber(), topic);
+            forward(event, topic, record.partition(), 0, 0);
+            booking.pending[target]++;
+            return true;
+        }
+    }
+
+    /**
+     * Retry-topic path, for a due record in the given tier.
+     *
+     * @return true if older events of the booking (the head, or events queued
+     *         behind it) are further up the chain and the event was moved one
+     *         tier closer to them - do not process it
+     */
+    public boolean forwardIfBehind(ConsumerRecord<String, BookingEvent> record, int tier) {
+        BookingEvent event = record.value();
+        String bookingId = event.getBookingId();
+        synchronized (lockFor(bookingId)) {
+            ParkedBooking booking = parked.get(bookingId);
+            if (booking == null || !(booking.headTier > tier || booking.hasPendingAbove(tier))) {
+                return false;
+            }
+            forward(event, tierTopic(record.topic(), tier + 1), record.partition(), 0, 0);
+            booking.pending[tier]--;
+            booking.pending[tier + 1]++;
+            return true;
+        }
+    }
+
+    /**
+     * Validation failed - sends the event to the next tier, or to the
+     * dead-letter topic after the last one, and parks its booking.
+     *
+     * @param fromTier the tier the event was consumed from (MAIN for the main topic)
+     * @param attempt  retries already made for this event
+     * @return false if retries are disabled (the event is dropped as before)
+     */
+    public boolean retry(ConsumerRecord<String, BookingEvent> record, int fromTier, int attempt) {
+        if (!enabled) {
+            return false;
+        }
+        BookingEvent event = record.value();
+        String bookingId = event.getBookingId();
+        synchronized (lockFor(bookingId)) {
+            ParkedBooking booking = parked.computeIfAbsent(bookingId,
+                    id -> new ParkedBooking(tierDelays.length, sourcePartition(record.topic(), record.partition())));
+            if (fromTier != MAIN) {
+                booking.pending[fromTier]--;
+            }
+
+            int target = fromTier + 1;
+            if (target >= tierDelays.length) {
+                log.error("☠️  Dead-lettering booking {} seq {} after {} retries",
+                        bookingId, event.getSequenceNumber(), attempt);
+                forward(event, deadLetterTopic, null, attempt, 0);
+                // Give up on this event - what is queued behind it proceeds
+                booking.headTier = NONE;
+                unparkIfDrained(bookingId, booking);
+                return true;
+            }
+
+            log.warn("↪️  Retrying booking {} seq {} in {} ms (attempt {})",
+                    bookingId, event.getSequenceNumber(), tierDelays[target], attempt + 1);
+            forward(event, tierTopic(record.topic(), target), record.partition(), attempt + 1,
+                    System.currentTimeMillis() + tierDelays[target]);
+            booking.pending[target]++;
+            booking.headTier = target;
+            return true;
+        }
+    }
+
+    /**
+     * Batch-mode path for an event failing validation: no delayed retries,
+     * the event goes to the DLT before the poll is acknowledged.
+     *
+     * @return false if retries are disabled (the event is dropped as before)
+     */
+    public boolean deadLetter(ConsumerRecord<String, BookingEvent> record) {
+        if (!deadLetterOnly) {
+            return false;
+        }
+        BookingEvent event = record.value();
+        log.error("☠️  Dead-lettering booking {} seq {} (batch mode, no retries)",
+                event.getBookingId(), event.getSequenceNumber());
+        forward(event, deadLetterTopic, null, 0, 0);
+        return true;
+    }
+
+    /**
+     * An event from the given tier was processed successfully.
+     */
+    public void completed(String bookingId, int tier) {
+        synchronized (lockFor(bookingId)) {
+            ParkedBooking booking = parked.get(bookingId);
+            if (booking == null) {
+                return;
+            }
+            booking.pending[tier]--;
+            if (booking.headTier == tier) {
+                booking.headTier = NONE;
+            }
+            unparkIfDrained(bookingId, booking);
+        }
+    }
+
+    /**
+     * Rebuilds the parked bookings of newly assigned retry partitions from
+     * the records between the consumer's position and the end of each one.
+     * Called on the consumer thread, before any of their records is processed.
+     *
+     * @param positions per assigned partition, where the consumer starts reading
+     */
+    public void partitionsAssigned(Map<TopicPartition, Long> positions) {
+        if (!enabled) {
+            return;
+        }
+        Map<TopicPartition, Long> retryPositions = new HashMap<>();
+        positions.forEach((partition, position) -> {
+            if (tierOf(partition.topic()) != MAIN) {
+                retryPositions.put(partition, position);
+            }
+        });
+        if (retryPositions.isEmpty()) {
+            return;
+        }
+        dropParked(retryPositions.keySet());
+
+        int records = 0;
+        try (KafkaConsumer<String, byte[]> consumer = newRebuildConsumer()) {
+            consumer.assign(retryPositions.keySet());
+            retryPositions.forEach(consumer::seek);
+            Map<TopicPartition, Long> ends = new HashMap<>(consumer.endOffsets(retryPositions.keySet()));
+            ends.entrySet().removeIf(end -> end.getValue() <= retryPositions.get(end.getKey()));
+
+            long deadline = System.currentTimeMillis() + rebuildTimeoutMs;
+            while (!ends.isEmpty() && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    Long end = ends.get(partition);
+                    if (end == null || record.offset() >= end || record.key() == null) {
+                        continue;
+                    }
+                    rebuild(record.key(), tierOf(record.topic()), sourcePartition(record.topic(), record.partition()),
+                            attempt(record.headers()));
+                    records++;
+                }
+                ends.keySet().removeIf(partition -> consumer.position(partition) >= ends.get(partition));
+            }
+            if (!ends.isEmpty()) {
+                log.warn("⚠️  Parked bookings of {} only partly rebuilt after {} ms", ends.keySet(), rebuildTimeoutMs);
+            }
+        }
+        if (records > 0) {
+            log.info("⏸️  Rebuilt parked bookings from {} retry records of {}", records, retryPositions.keySet());
+        }
+    }
+
+    /**
+     * Forgets the parked bookings and held partitions of revoked partitions -
+     * their new owner rebuilds them.
+     */
+    public void partitionsRevoked(Collection<TopicPartition> partitions) {
+        if (!enabled) {
+            return;
+        }
+        for (TopicPartition partition : partitions) {
+            HeldPartition hold = held.remove(partition);
+            if (hold != null) {
+                hold.release(partition);
+            }
+        }
+        dropParked(partitions);
+    }
+
+    public int parkedBookings() {
+        return parked.size();
+    }
+
+    /**
+     * @return when the record may be processed, or 0 if immediately
+     */
+    public static long dueAt(Headers headers) {
+        Header header = headers.lastHeader(DUE_HEADER);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : 0L;
+    }
+
+    public static int attempt(Headers headers) {
+        Header header = headers.lastHeader(ATTEMPT_HEADER);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : 0;
+    }
+
+    @Override
+    public void destroy() {
+        resumer.shutdownNow();
+    }
+
+    private void rebuild(String bookingId, int tier, TopicPartition source, int attempt) {
+        synchronized (lockFor(bookingId)) {
+            ParkedBooking booking = parked.computeIfAbsent(bookingId, id -> new ParkedBooking(tierDelays.length, source));
+            booking.pending[tier]++;
+            if (attempt > 0 && tier > booking.headTier) {
+                // Retried (not just queued) - the furthest one is the head
+                booking.headTier = tier;
+            }
+        }
+    }
+
+    private void dropParked(Collection<TopicPartition> partitions) {
+        Set<TopicPartition> sources = new HashSet<>();
+        for (TopicPartition partition : partitions) {
+            sources.add(sourcePartition(partition.topic(), partition.partition()));
+        }
+        parked.values().removeIf(booking -> sources.contains(booking.source));
+    }
+
+    private void unparkIfDrained(String bookingId, ParkedBooking booking) {
+        if (booking.headTier == NONE && booking.lowestPendingTier() == NONE) {
+            parked.remove(bookingId);
+            log.info("▶️  Booking {} unparked", bookingId);
+        }
+    }
+
+    private String tierTopic(String recordTopic, int tier) {
+        return retryTopicName(sourceByTopic.getOrDefault(recordTopic, recordTopic), tierDelays[tier]);
+    }
+
+    private TopicPartition sourcePartition(String topic, int partition) {
+        return new TopicPartition(sourceByTopic.getOrDefault(topic, topic), partition);
+    }
+
+    private MessageListenerContainer containerOf(TopicPartition partition) {
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            Collection<TopicPartition> assigned = container.getAssignedPartitions();
+            if (assigned != null && assigned.contains(partition)) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    private KafkaConsumer<String, byte[]> newRebuildConsumer() {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        // Reads assigned partitions only - no group, no commits
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, "booking-retry-rebuild-" + Thread.currentThread().getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new KafkaConsumer<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+    }
+
+    private void forward(BookingEvent event, String topic, Integer partition, int attempt, long dueAtMillis) {
+        ProducerRecord<String, BookingEvent> record = new ProducerRecord<>(topic, partition, event.getBookingId(), event);
+        record.headers().add(ATTEMPT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(attempt).array());
+        record.headers().add(DUE_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAtMillis).array());
+        try {
+            // Must be durable before the source offset is acknowledged
+            kafkaTemplate.send(record).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while forwarding booking event to " + topic, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not forward booking event to " + topic, e);
+        }
+    }
+
+    private Object lockFor(String bookingId) {
+        return locks[Math.floorMod(bookingId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static final class ParkedBooking {
+
+        // Solved-topic partition the booking's events come from
+        private final TopicPartition source;
+        // Events of this booking waiting in each tier
+        private final int[] pending;
+        // Tier of the failed event everything else waits for
+        private int headTier = NONE;
+
+        private ParkedBooking(int tiers, TopicPartition source) {
+            this.pending = new int[tiers];
+            this.source = source;
+        }
+
+        private int lowestPendingTier() {
+            for (int tier = 0; tier < pending.length; tier++) {
+                if (pending[tier] > 0) {
+                    return tier;
+                }
+            }
+            return NONE;
+        }
+
+        private boolean hasPendingAbove(int tier) {
+            for (int above = tier + 1; above < pending.length; above++) {
+                if (pending[above] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A retry partition paused until the record at offset is due. Only the
+     * consumer thread ends the hold (when the record comes back due); the
+     * timer just resumes the partition.
+     */
+    private final class HeldPartition {
+
+        private final long offset;
+        private final MessageListenerContainer container;
+        private ScheduledFuture<?> resume;
+
+        private HeldPartition(long offset, MessageListenerContainer container) {
+            this.offset = offset;
+            this.container = container;
+        }
+
+        private synchronized void pauseFor(TopicPartition partition, long waitMillis) {
+            if (resume != null) {
+                resume.cancel(false);
+            }
+            if (container != null) {
+                container.pausePartition(partition);
+                resume = resumer.schedule(() -> container.resumePartition(partition), waitMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void release(TopicPartition partition) {
+            if (resume != null) {
+                resume.cancel(false);
+            }
+            if (container != null) {
+                container.resumePartition(partition);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.command.BookingCommandGateway;
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * POST /api/bookings/commands[?timeoutMs=] - sends one booking event and
+ * answers with the solved consumer's verdict (see {@link BookingCommandGateway}):
+ *
+ *   200 ACCEPTED / DUPLICATE, 409 REJECTED, 504 TIMEOUT
+ *
+ * The request thread is released while the verdict is pending.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/bookings/commands")
+@RequiredArgsConstructor
+public class BookingCommandController {
+
+    private final BookingCommandGateway gateway;
+
+    @PostMapping
+    public CompletableFuture<ResponseEntity<BookingCommandResult>> submit(
+            @RequestBody BookingEvent event,
+            @RequestParam(required = false) Long timeoutMs) {
+        if (event.getBookingId() == null || event.getEventType() == null || event.getSequenceNumber() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(LocalDateTime.now());
+        }
+
+        return gateway.send(event, timeoutMs != null ? Duration.ofMillis(timeoutMs) : null)
+                .thenApply(result -> ResponseEntity.status(statusOf(result.getStatus())).body(result))
+                .exceptionally(ex -> {
+                    log.error("❌ Booking command for {} failed", event.getBookingId(), ex);
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                });
+    }
+
+    private static HttpStatus statusOf(BookingCommandResult.Status status) {
+        switch (status) {
+            case REJECTED:
+                return HttpStatus.CONFLICT;
+            case TIMEOUT:
+                return HttpStatus.GATEWAY_TIMEOUT;
+            default:
+                return HttpStatus.OK;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.model.BulkIngestionSummary;
+import com.example.kafka.producer.BulkBookingIngestor;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/bookings")
+@RequiredArgsConstructor
+public class BookingIngestionController {
+
+    private final BulkBookingIngestor ingestor;
+
+    /**
+     * Bulk ingestion - body is NDJSON (one event per line) or a JSON array.
+     * The body is streamed, so it can be much larger than the heap.
+     *
+     * curl -X POST -H "Content-Type: application/x-ndjson" --data-binary @events.ndjson \
+     *      http://localhost:8081/api/bookings/bulk
+     */
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkIngestionSummary> ingest(HttpServletRequest request) throws IOException {
+        BulkIngestionSummary summary = ingestor.ingest(request.getInputStream());
+        HttpStatus status = summary.getError() == null && summary.getFailed() == 0
+                ? HttpStatus.OK
+                : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(summary);
+    }
+}
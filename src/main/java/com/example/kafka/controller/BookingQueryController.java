@@ -0,0 +1,85 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.model.BookingView;
+import com.example.kafka.projection.BookingProjection;
+import com.example.kafka.projection.BookingQueryRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read side of the solved consumer - booking lookups from {@link BookingProjection}.
+ * local=true answers from this instance only (used for instance-to-instance routing).
+ *
+ * A booking is answered by the instance owning its partition, even if this
+ * one still has a view of it. Merged listings hold each booking once - the
+ * view with the highest sequence wins (two instances may both have it for a
+ * moment during a rebalance).
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class BookingQueryController {
+
+    private final BookingProjection projection;
+    private final BookingQueryRouter router;
+
+    @GetMapping("/bookings/{bookingId}")
+    public ResponseEntity<BookingView> booking(@PathVariable String bookingId,
+                                               @RequestParam(defaultValue = "false") boolean local) {
+        BookingView view;
+        if (local) {
+            view = projection.get(bookingId);
+        } else {
+            BookingQueryRouter.RoutedResult<BookingView> routed = router.fetchBooking(bookingId);
+            view = routed.remote() ? routed.value() : projection.get(bookingId);
+        }
+        return view != null ? ResponseEntity.ok(view) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/flights/{flightNumber}/bookings")
+    public ResponseEntity<List<BookingView>> flightBookings(@PathVariable String flightNumber,
+                                                            @RequestParam(defaultValue = "false") boolean local) {
+        List<BookingView> views = projection.byFlight(flightNumber);
+        if (!local) {
+            views = merge(views, router.fetchFromPeers("/api/flights/" + flightNumber + "/bookings"));
+        }
+        return ResponseEntity.ok(views);
+    }
+
+    @GetMapping("/customers/{customerId}/bookings")
+    public ResponseEntity<List<BookingView>> customerBookings(@PathVariable String customerId,
+                                                              @RequestParam(defaultValue = "false") boolean local) {
+        List<BookingView> views = projection.byCustomer(customerId);
+        if (!local) {
+            views = merge(views, router.fetchFromPeers("/api/customers/" + customerId + "/bookings"));
+        }
+        return ResponseEntity.ok(views);
+    }
+
+    private static List<BookingView> merge(List<BookingView> localViews, List<BookingView> remoteViews) {
+        if (remoteViews.isEmpty()) {
+            return localViews;
+        }
+        Map<String, BookingView> latest = new HashMap<>();
+        for (List<BookingView> views : List.of(localViews, remoteViews)) {
+            for (BookingView view : views) {
+                latest.merge(view.getBookingId(), view,
+                        (kept, other) -> other.getLastSequence() > kept.getLastSequence() ? other : kept);
+            }
+        }
+        List<BookingView> merged = new ArrayList<>(latest.values());
+        merged.sort(Comparator.comparing(BookingView::getBookingId));
+        return merged;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.state.BookingStateStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/state-stores")
+public class BookingStateStoreController {
+
+    private final BookingStateStore solvedStateStore;
+    private final BookingStateStore problemStateStore;
+
+    public BookingStateStoreController(
+            @Qualifier("solvedBookingStateStore") BookingStateStore solvedStateStore,
+            @Qualifier("problemBookingStateStore") BookingStateStore problemStateStore) {
+        this.solvedStateStore = solvedStateStore;
+        this.problemStateStore = problemStateStore;
+    }
+
+    /**
+     * Size and eviction counts of both consumers' state stores
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Map<String, Number>>> stats() {
+        Map<String, Map<String, Number>> stats = new LinkedHashMap<>();
+        stats.put("solved", statsOf(solvedStateStore));
+        stats.put("problem", statsOf(problemStateStore));
+        return ResponseEntity.ok(stats);
+    }
+
+    private Map<String, Number> statsOf(BookingStateStore store) {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("size", store.size());
+        stats.put("terminalEvictions", store.terminalEvictions());
+        stats.put("idleEvictions", store.idleEvictions());
+        stats.put("capacityEvictions", store.capacityEvictions());
+        return stats;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.analytics.FlightStatsAggregator;
+import com.example.kafka.model.FlightWindowStats;
+import com.example.kafka.model.FlightWindowStats.WindowType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/flights")
+@RequiredArgsConstructor
+public class FlightStatsController {
+
+    private final FlightStatsAggregator aggregator;
+
+    /**
+     * Recent windows of one flight, newest first - the open ones still change
+     */
+    @GetMapping("/{flightNumber}/stats")
+    public ResponseEntity<List<FlightWindowStats>> flightStats(
+            @PathVariable String flightNumber,
+            @RequestParam(defaultValue = "TUMBLING") WindowType window) {
+        return ResponseEntity.ok(aggregator.windows(flightNumber, window));
+    }
+
+    /**
+     * Current window of every flight with activity in it
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<FlightWindowStats>> currentStats(
+            @RequestParam(defaultValue = "HOPPING") WindowType window) {
+        return ResponseEntity.ok(aggregator.current(window));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.loadgen.LoadGenerator;
+import com.example.kafka.model.LoadProfile;
+import com.example.kafka.model.LoadReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/loadgen")
+@RequiredArgsConstructor
+public class LoadGeneratorController {
+
+    private final LoadGenerator loadGenerator;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Starts a load run in the background. The body only needs the fields that
+     * differ from the kafka.loadgen.* defaults, e.g.
+     *
+     * curl -X POST -H "Content-Type: application/json" \
+     *      -d '{"eventsPerSecond": 5000, "zipfExponent": 1.2}' http://localhost:8081/api/loadgen
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<LoadReport> start(@RequestBody(required = false) String body) throws IOException {
+        LoadProfile profile = loadGenerator.defaults();
+        if (body != null && !body.isBlank()) {
+            profile = objectMapper.readerForUpdating(profile).readValue(body);
+        }
+        LoadReport report;
+        try {
+            report = loadGenerator.start(profile);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(loadGenerator.status());
+        }
+        return ResponseEntity.accepted().body(report);
+    }
+
+    /**
+     * Progress of the running load run, or the result of the last one
+     */
+    @GetMapping
+    public ResponseEntity<LoadReport> status() {
+        LoadReport report = loadGenerator.status();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Stops the running load run early
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> stop() {
+        return loadGenerator.stop() ? ResponseEntity.accepted().build() : ResponseEntity.notFound().build();
+    }
+}
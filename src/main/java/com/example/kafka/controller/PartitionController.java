@@ -0,0 +1,65 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.model.PartitionLayout;
+import com.example.kafka.routing.AirlineTopicRouter;
+import com.example.kafka.routing.BookingPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Partition layouts of the solved topics, and ordering-safe scale-out
+ * (see {@link BookingPartitioner})
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/partitions")
+public class PartitionController {
+
+    private final BookingPartitioner partitioner;
+    private final AirlineTopicRouter router;
+
+    public PartitionController(BookingPartitioner partitioner, AirlineTopicRouter router) {
+        this.partitioner = partitioner;
+        this.router = router;
+    }
+
+    @GetMapping
+    public List<PartitionLayout> layouts() {
+        return partitioner.layouts();
+    }
+
+    /**
+     * Adds partitions under load, e.g.
+     *
+     * curl -X POST "http://localhost:8081/api/partitions?partitions=6"
+     *
+     * topic defaults to the solved topic (an airline shard topic also works).
+     * 409 while an earlier expansion of the topic is still migrating,
+     * 400 if the topic already has that many partitions
+     */
+    @PostMapping
+    public ResponseEntity<PartitionLayout> expand(@RequestParam int partitions,
+                                                  @RequestParam(required = false) String topic) {
+        String target = topic != null ? topic : router.defaultTopic();
+        if (!router.isSolvedTopic(target)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.accepted().body(partitioner.expand(target, partitions));
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️  Expansion of {} refused: {}", target, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("⚠️  Expansion of {} refused: {}", target, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(partitioner.layoutOf(target));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.model.ReplayReport;
+import com.example.kafka.model.ReplayRequest;
+import com.example.kafka.replay.BookingReplayer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/replay")
+@RequiredArgsConstructor
+public class ReplayController {
+
+    private final BookingReplayer replayer;
+
+    /**
+     * Starts a replay of the solved topic in the background, e.g.
+     *
+     * curl -X POST -H "Content-Type: application/json" \
+     *      -d '{"partitions": [0, 2], "fromTimestamp": "2024-03-01T00:00:00", "rebuild": true}' \
+     *      http://localhost:8081/api/replay
+     */
+    @PostMapping
+    public ResponseEntity<ReplayReport> start(@RequestBody(required = false) ReplayRequest request) {
+        ReplayReport report;
+        try {
+            report = replayer.start(request != null ? request : new ReplayRequest());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(replayer.status());
+        }
+        return ResponseEntity.accepted().body(report);
+    }
+
+    /**
+     * Progress and ETA of the running replay, or the result of the last one
+     */
+    @GetMapping
+    public ResponseEntity<ReplayReport> status() {
+        ReplayReport report = replayer.status();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Stops the running replay - live processing resumes with what was replayed so far
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> stop() {
+        return replayer.stop() ? ResponseEntity.accepted().build() : ResponseEntity.notFound().build();
+    }
+}
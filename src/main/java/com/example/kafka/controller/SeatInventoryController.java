@@ -0,0 +1,46 @@
+package com.example.kafka.controller;
+
+import com.example.kafka.inventory.SeatInventory;
+import com.example.kafka.model.SeatAvailability;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/flights")
+@RequiredArgsConstructor
+public class SeatInventoryController {
+
+    private final SeatInventory seatInventory;
+
+    /**
+     * Free and reserved seats of a flight
+     */
+    @GetMapping("/{flightNumber}/seats")
+    public ResponseEntity<SeatAvailability> seats(@PathVariable String flightNumber) {
+        return ResponseEntity.ok(seatInventory.availability(flightNumber));
+    }
+
+    /**
+     * Whether a single seat is still free
+     */
+    @GetMapping("/{flightNumber}/seats/{seatNumber}")
+    public ResponseEntity<Map<String, Object>> seat(@PathVariable String flightNumber,
+                                                    @PathVariable String seatNumber) {
+        Boolean available = seatInventory.isAvailable(flightNumber, seatNumber);
+        if (available == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("flightNumber", flightNumber);
+        body.put("seatNumber", seatNumber);
+        body.put("available", available);
+        return ResponseEntity.ok(body);
+    }
+}
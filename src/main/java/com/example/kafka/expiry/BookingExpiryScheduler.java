@@ -0,0 +1,293 @@
+package com.example.kafka.expiry;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.BookingView;
+import com.example.kafka.producer.BookingProducerSolved;
+import com.example.kafka.projection.BookingProjection;
+import com.example.kafka.routing.AirlineTopicRouter;
+import com.example.kafka.routing.BookingPartitioner;
+import com.example.kafka.state.BookingState;
+import com.example.kafka.state.BookingStateStore;
+import com.example.kafka.state.BookingTransitionHook;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BOOKING EXPIRY (abandoned payments)
+ *
+ * A booking that stops in one of the pending states (SEAT_SELECTED,
+ * PAYMENT_INITIATED by default) for timeout-ms is cancelled: a CANCELLED
+ * event with the next sequence number is produced through
+ * {@link BookingProducerSolved}, and the solved consumer releases the seat
+ * when it processes it, like any other cancellation.
+ *
+ * - One {@link TimingWheel} entry per pending booking - armed by the
+ *   transition into a pending state, re-armed or cancelled by the booking's
+ *   next transition, O(1) either way. A single timer thread advances the
+ *   wheel; there are no per-booking tasks and no periodic scans.
+ * - The deadline runs from the event's timestamp, so a replayed event arms
+ *   its original deadline.
+ * - On expiry the booking must still be in the state and at the sequence
+ *   that armed the timer, otherwise the timer is stale and ignored.
+ * - If the customer's own next event races the CANCELLED for the same
+ *   sequence number, whichever the consumer sees first wins - the other is
+ *   dropped as a duplicate.
+ *
+ * Rebalancing (default solved topic and airline shards alike - a booking's
+ * topic follows its flight number in the projection): timers of revoked
+ * solved partitions are dropped; on
+ * assignment, pending bookings of the new partitions found in the state
+ * store (e.g. restored from the local changelog) are re-armed from their
+ * last update time. This single pass per assignment is the only scan.
+ */
+@Slf4j
+@Component
+public class BookingExpiryScheduler implements BookingTransitionHook, DisposableBean {
+
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final Set<BookingEventType> pendingStates;
+    private final AirlineTopicRouter router;
+    private final BookingPartitioner partitioner;
+    private final BookingStateStore stateStore;
+    private final BookingProjection projection;
+    private final BookingProducerSolved producer;
+    private final BookingMetrics metrics;
+
+    // Both guarded by the wheel
+    private final TimingWheel<PendingExpiry> wheel;
+    private final Map<String, TimingWheel.Entry<PendingExpiry>> timers = new HashMap<>();
+
+    private final ScheduledExecutorService timer;
+
+    public BookingExpiryScheduler(
+            @Value("${kafka.consumer.expiry.enabled:true}") boolean enabled,
+            @Value("${kafka.consumer.expiry.timeout-ms:900000}") long timeoutMillis,
+            @Value("${kafka.consumer.expiry.tick-ms:100}") long tickMillis,
+            @Value("${kafka.consumer.expiry.states:SEAT_SELECTED,PAYMENT_INITIATED}") Set<BookingEventType> pendingStates,
+            AirlineTopicRouter router,
+            BookingPartitioner partitioner,
+            @Qualifier("solvedBookingStateStore") BookingStateStore stateStore,
+            BookingProjection projection,
+            BookingProducerSolved producer,
+            BookingMetrics metrics) {
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+        this.pendingStates = pendingStates.isEmpty()
+                ? EnumSet.noneOf(BookingEventType.class)
+                : EnumSet.copyOf(pendingStates);
+        this.router = router;
+        this.partitioner = partitioner;
+        this.stateStore = stateStore;
+        this.projection = projection;
+        this.producer = producer;
+        this.metrics = metrics;
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+
+        if (enabled) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-expiry-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+            log.info("⏰ Booking expiry: {} bookings cancelled after {} ms", this.pendingStates, timeoutMillis);
+        } else {
+            this.timer = null;
+        }
+    }
+
+    @Override
+    public void onTransition(BookingEvent event, BookingEventType from, BookingEventType to) {
+        if (!enabled) {
+            return;
+        }
+        if (pendingStates.contains(to) && event.getSequenceNumber() != null) {
+            arm(event.getBookingId(), to, event.getSequenceNumber(), eventTimeMillis(event) + timeoutMillis);
+        } else {
+            disarm(event.getBookingId());
+        }
+    }
+
+    public void partitionsAssigned(Collection<TopicPartition> partitions) {
+        Set<String> topics = solvedTopics(partitions);
+        if (!enabled || topics.isEmpty()) {
+            return;
+        }
+        Set<TopicPartition> assigned = new HashSet<>(partitions);
+        List<PendingExpiry> restored = new ArrayList<>();
+        stateStore.forEach((bookingId, entry) -> {
+            if (pendingStates.contains(entry.getState())
+                    && assigned.contains(partitionFor(bookingId, topics))) {
+                restored.add(new PendingExpiry(bookingId, entry.getState(), entry.getLastSequence(),
+                        entry.getUpdatedAtMillis() + timeoutMillis));
+            }
+        });
+        synchronized (wheel) {
+            for (PendingExpiry pending : restored) {
+                if (!timers.containsKey(pending.bookingId())) {
+                    timers.put(pending.bookingId(), wheel.schedule(pending, pending.deadlineMillis()));
+                }
+            }
+        }
+        if (!restored.isEmpty()) {
+            log.info("⏰ Re-armed {} booking expiry timers for partitions {}", restored.size(), assigned);
+        }
+    }
+
+    public void partitionsRevoked(Collection<TopicPartition> partitions) {
+        Set<String> topics = solvedTopics(partitions);
+        if (!enabled || topics.isEmpty()) {
+            return;
+        }
+        Set<TopicPartition> revoked = new HashSet<>(partitions);
+        int dropped = 0;
+        synchronized (wheel) {
+            Iterator<Map.Entry<String, TimingWheel.Entry<PendingExpiry>>> iterator = timers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, TimingWheel.Entry<PendingExpiry>> timerEntry = iterator.next();
+                if (revoked.contains(partitionFor(timerEntry.getKey(), topics))) {
+                    wheel.cancel(timerEntry.getValue());
+                    iterator.remove();
+                    dropped++;
+                }
+            }
+        }
+        if (dropped > 0) {
+            log.info("⏰ Dropped {} booking expiry timers of revoked partitions {}", dropped, revoked);
+        }
+    }
+
+    public int pendingTimers() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void arm(String bookingId, BookingEventType state, int sequence, long deadlineMillis) {
+        PendingExpiry pending = new PendingExpiry(bookingId, state, sequence, deadlineMillis);
+        synchronized (wheel) {
+            TimingWheel.Entry<PendingExpiry> previous = timers.put(bookingId, wheel.schedule(pending, deadlineMillis));
+            if (previous != null) {
+                wheel.cancel(previous);
+            }
+        }
+    }
+
+    private void disarm(String bookingId) {
+        synchronized (wheel) {
+            TimingWheel.Entry<PendingExpiry> previous = timers.remove(bookingId);
+            if (previous != null) {
+                wheel.cancel(previous);
+            }
+        }
+    }
+
+    private void expireDue() {
+        List<PendingExpiry> expired = new ArrayList<>();
+        try {
+            synchronized (wheel) {
+                wheel.advance(System.currentTimeMillis(), pending -> {
+                    expired.add(pending);
+                    timers.remove(pending.bookingId());
+                });
+            }
+            // Sent outside the lock - the consumer threads keep arming timers meanwhile
+            for (PendingExpiry pending : expired) {
+                cancel(pending);
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to expire pending bookings", e);
+        }
+    }
+
+    private void cancel(PendingExpiry pending) {
+        BookingState current = stateStore.get(pending.bookingId());
+        if (current != null && (current.getState() != pending.state()
+                || current.getLastSequence() != pending.sequence())) {
+            // Moved on since the timer was armed
+            return;
+        }
+        BookingView view = projection.get(pending.bookingId());
+        BookingEvent cancelled = BookingEvent.builder()
+                .bookingId(pending.bookingId())
+                .customerId(view != null ? view.getCustomerId() : null)
+                .flightNumber(view != null ? view.getFlightNumber() : null)
+                .eventType(BookingEventType.CANCELLED.name())
+                .timestamp(LocalDateTime.now())
+                .sequenceNumber(pending.sequence() + 1)
+                .build();
+        log.warn("⏰ Booking {} abandoned in {} - cancelling (seq {})",
+                pending.bookingId(), pending.state(), cancelled.getSequenceNumber());
+        metrics.recordExpired(pending.state());
+        producer.sendBookingEventAsync(cancelled).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.error("❌ Failed to send expiry cancellation for booking {}", pending.bookingId(), ex);
+            }
+        });
+    }
+
+    /**
+     * @return the solved topics (default or airline shard) among the partitions
+     */
+    private Set<String> solvedTopics(Collection<TopicPartition> partitions) {
+        Set<String> topics = new HashSet<>();
+        for (TopicPartition partition : partitions) {
+            if (router.isSolvedTopic(partition.topic())) {
+                topics.add(partition.topic());
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * @return the booking's partition, or null if its topic is not among topics
+     */
+    private TopicPartition partitionFor(String bookingId, Set<String> topics) {
+        // The carrier comes from the projection - bookings evicted from it count as the default topic's
+        BookingView view = projection.get(bookingId);
+        String topic = router.topicOf(bookingId, view != null ? view.getFlightNumber() : null);
+        if (!topics.contains(topic)) {
+            return null;
+        }
+        // Where the solved producer sends the booking's next event
+        return new TopicPartition(topic, partitioner.partitionOf(topic, bookingId));
+    }
+
+    private static long eventTimeMillis(BookingEvent event) {
+        return event.getTimestamp() != null
+                ? event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+    }
+
+    private record PendingExpiry(String bookingId, BookingEventType state, int sequence, long deadlineMillis) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.kafka.expiry;
+
+import java.util.function.Consumer;
+
+/**
+ * HIERARCHICAL TIMING WHEEL
+ *
+ * Deadlines are rounded up to ticks of tickMillis and kept in LEVELS wheels
+ * of 64 slots each: level 0 covers the next 64 ticks one slot per tick,
+ * level 1 the next 64² ticks 64 ticks per slot, and so on.
+ *
+ * - schedule: pick the level from the distance to the deadline, append to
+ *   the slot's doubly-linked list - O(1)
+ * - cancel: unlink the entry - O(1)
+ * - advance: per tick, expire one level-0 slot; every 64^L ticks, move the
+ *   current level-L slot's entries down a level ("cascade"). Entries are
+ *   only ever touched when they expire or cascade, never scanned.
+ *
+ * Not thread-safe - the caller serialises access.
+ */
+final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // 64^6 ticks - at 100 ms per tick, more than 200 years
+    private static final int LEVELS = 6;
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    // [level][slot] - sentinel heads of circular lists
+    private final Entry<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.slots = new Entry[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Entry<T> head = new Entry<>(null);
+                head.prev = head;
+                head.next = head;
+                slots[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Deadlines already passed expire on the next tick, ones beyond the
+     * wheel's range at the end of it.
+     */
+    Entry<T> schedule(T value, long deadlineMillis) {
+        Entry<T> entry = new Entry<>(value);
+        long tick = Math.floorDiv(deadlineMillis, tickMillis) + (Math.floorMod(deadlineMillis, tickMillis) > 0 ? 1 : 0);
+        entry.tick = Math.min(Math.max(tick, currentTick + 1), currentTick + RANGE - 1);
+        place(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * @return false if the entry already expired or was cancelled
+     */
+    boolean cancel(Entry<T> entry) {
+        if (entry.next == null) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel up to nowMillis, handing every expired value to the callback.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Higher levels first, so entries cascading to the current tick expire now
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+            Entry<T> head = slots[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Entry<T> entry = head.next;
+                unlink(entry);
+                size--;
+                expired.accept(entry.value);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Entry<T> head = slots[level][slot];
+        while (head.next != head) {
+            Entry<T> entry = head.next;
+            unlink(entry);
+            place(entry);
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Entry<T> head = slots[level][(int) ((entry.tick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private static <T> void unlink(Entry<T> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    static final class Entry<T> {
+
+        private final T value;
+        private long tick;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T value) {
+            this.value = value;
+        }
+
+        T value() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.kafka.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat map of one flight - one bit per seat, 64 seats per word.
+ *
+ * Reserve and release are compare-and-set loops on the seat's word, so
+ * concurrent bookings never block each other; a CAS only retries when
+ * another seat in the same word changed at the same moment. There is no
+ * shared "reserved" counter (it would be the hottest spot during a rush) -
+ * counts are computed from the words on demand.
+ *
+ * The last-used time only moves forward in steps of a second, so a rush on
+ * one flight does not turn it into a contended write either.
+ */
+final class FlightSeatMap {
+
+    private static final long TOUCH_RESOLUTION_MILLIS = 1000;
+
+    private final AtomicLongArray words;
+    private final int capacity;
+    private volatile long lastUsedMillis;
+
+    FlightSeatMap(int capacity, long nowMillis) {
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+        this.lastUsedMillis = nowMillis;
+    }
+
+    void touch(long nowMillis) {
+        if (nowMillis - lastUsedMillis >= TOUCH_RESOLUTION_MILLIS) {
+            lastUsedMillis = nowMillis;
+        }
+    }
+
+    long lastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    /**
+     * @return true if the seat was free and is now reserved
+     */
+    boolean tryReserve(int seat) {
+        int index = seat >>> 6;
+        long bit = 1L << seat;
+        while (true) {
+            long word = words.get(index);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the seat was reserved and is now free
+     */
+    boolean release(int seat) {
+        int index = seat >>> 6;
+        long bit = 1L << seat;
+        while (true) {
+            long word = words.get(index);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word & ~bit)) {
+                return true;
+            }
+        }
+    }
+
+    boolean isReserved(int seat) {
+        return (words.get(seat >>> 6) & (1L << seat)) != 0;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int reservedCount() {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.kafka.inventory;
+
+import com.example.kafka.model.SeatAvailability;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IN-MEMORY SEAT INVENTORY
+ *
+ * Prevents two bookings from holding the same seat on the same flight.
+ *
+ * - One {@link FlightSeatMap} bitset per flight, created on first use
+ * - Seats are named row + letter ("12A"): rows 1..rows, letters A..
+ *   (seatsPerRow letters); anything else is rejected as invalid
+ * - SEAT_SELECTED reserves with a lock-free CAS; a redelivered event for
+ *   the booking that already holds the seat is accepted again
+ * - CANCELLED releases the booking's seat
+ *
+ * No global lock: flights are looked up in a ConcurrentHashMap and each
+ * seat is claimed with a CAS on its own 64-seat word.
+ *
+ * IDLE FLIGHTS (kafka.consumer.seats.flight-idle-ttl-ms):
+ * - A flight with no reservation or release for the TTL (typically departed)
+ *   is dropped together with its bookings' reservations
+ *
+ * PERSISTENCE:
+ * - Reservations and releases are reported to a {@link ReservationListener};
+ *   the consumer's state changelog logs and snapshots them and restores them
+ *   on startup, so seats survive a restart like the bookings holding them
+ *
+ * OWNERSHIP:
+ * - The inventory only sees the bookings consumed by this instance. Bookings
+ *   are partitioned by bookingId, so with several consumer instances one
+ *   flight's bookings are spread over all of them and a double booking across
+ *   instances is NOT detected. Seat checks are authoritative only while one
+ *   instance owns every partition of the solved topic (or of a carrier's shard
+ *   topic, see AirlineTopicRouter, which gives each sharded carrier its own
+ *   listener).
+ */
+@Slf4j
+@Component
+public class SeatInventory {
+
+    public enum Outcome {
+        RESERVED,
+        ALREADY_HELD,
+        TAKEN,
+        INVALID_SEAT
+    }
+
+    /**
+     * Told about every reservation change made by events (not by {@link #restore}).
+     * Called on the thread making the change; must not call back into the inventory.
+     */
+    public interface ReservationListener {
+
+        void reserved(String bookingId, String flightNumber, String seatNumber);
+
+        void released(String bookingId);
+    }
+
+    /**
+     * Visitor for {@link #forEachReservation}
+     */
+    public interface ReservationVisitor {
+
+        void visit(String bookingId, String flightNumber, String seatNumber);
+    }
+
+    private final int rows;
+    private final int seatsPerRow;
+    private final long flightIdleTtlMillis;
+    private final Map<String, FlightSeatMap> flights = new ConcurrentHashMap<>();
+    // Seat held by each booking, needed to release it on CANCELLED
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    private volatile ReservationListener listener;
+    private volatile long nextIdleSweepMillis;
+
+    public SeatInventory(
+            @Value("${kafka.consumer.seats.rows:60}") int rows,
+            @Value("${kafka.consumer.seats.seats-per-row:6}") int seatsPerRow,
+            @Value("${kafka.consumer.seats.flight-idle-ttl-ms:604800000}") long flightIdleTtlMillis) {
+        if (rows < 1 || seatsPerRow < 1 || seatsPerRow > 26) {
+            throw new IllegalArgumentException("Seat layout needs at least 1 row and 1 to 26 seats per row");
+        }
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.flightIdleTtlMillis = flightIdleTtlMillis;
+        this.nextIdleSweepMillis = System.currentTimeMillis() + sweepInterval();
+    }
+
+    public void setReservationListener(ReservationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reserves the seat for the booking. If the booking already held a
+     * different seat, that seat is released once the new one is secured.
+     */
+    public Outcome reserve(String flightNumber, String seatNumber, String bookingId) {
+        int seat = seatIndex(seatNumber);
+        if (flightNumber == null || seat < 0) {
+            return Outcome.INVALID_SEAT;
+        }
+
+        Reservation previous = reservations.get(bookingId);
+        if (previous != null && previous.seat == seat && previous.flightNumber.equals(flightNumber)) {
+            return Outcome.ALREADY_HELD;
+        }
+        long now = System.currentTimeMillis();
+        if (!seatMap(flightNumber, now).tryReserve(seat)) {
+            return Outcome.TAKEN;
+        }
+
+        reservations.put(bookingId, new Reservation(flightNumber, seat));
+        if (previous != null) {
+            releaseSeat(previous);
+        }
+        ReservationListener current = listener;
+        if (current != null) {
+            current.reserved(bookingId, flightNumber, seatName(seat));
+        }
+        if (now >= nextIdleSweepMillis) {
+            evictIdleFlights(now);
+        }
+        return Outcome.RESERVED;
+    }
+
+    /**
+     * Puts back a persisted reservation, without telling the listener.
+     *
+     * @return false if the seat is invalid or held by another booking
+     */
+    public boolean restore(String bookingId, String flightNumber, String seatNumber) {
+        int seat = seatIndex(seatNumber);
+        if (flightNumber == null || seat < 0) {
+            return false;
+        }
+        Reservation previous = reservations.get(bookingId);
+        if (previous != null && previous.seat == seat && previous.flightNumber.equals(flightNumber)) {
+            return true;
+        }
+        if (!seatMap(flightNumber, System.currentTimeMillis()).tryReserve(seat)) {
+            log.warn("⚠️  Restored seat {} on flight {} for booking {} is already held by another booking",
+                    seatNumber, flightNumber, bookingId);
+            return false;
+        }
+        reservations.put(bookingId, new Reservation(flightNumber, seat));
+        if (previous != null) {
+            releaseSeat(previous);
+        }
+        return true;
+    }
+
+    /**
+     * Drops a persisted reservation, without telling the listener.
+     */
+    public void restoreRelease(String bookingId) {
+        Reservation reservation = reservations.remove(bookingId);
+        if (reservation != null) {
+            releaseSeat(reservation);
+        }
+    }
+
+    /**
+     * Visits every booking's reservation (e.g. for a snapshot).
+     */
+    public void forEachReservation(ReservationVisitor visitor) {
+        reservations.forEach((bookingId, reservation) ->
+                visitor.visit(bookingId, reservation.flightNumber, seatName(reservation.seat)));
+    }
+
+    /**
+     * Drops flights with no reservation or release for the idle TTL, and the
+     * reservations on them. Runs from {@link #reserve} at most every tenth of
+     * the TTL; call it directly to reclaim memory while traffic is idle.
+     */
+    public void evictIdleFlights(long nowMillis) {
+        nextIdleSweepMillis = nowMillis + sweepInterval();
+        if (flightIdleTtlMillis <= 0) {
+            return;
+        }
+        Set<String> idle = new HashSet<>();
+        flights.entrySet().removeIf(flight -> {
+            if (flight.getValue().lastUsedMillis() + flightIdleTtlMillis > nowMillis) {
+                return false;
+            }
+            idle.add(flight.getKey());
+            return true;
+        });
+        if (idle.isEmpty()) {
+            return;
+        }
+        ReservationListener current = listener;
+        reservations.entrySet().removeIf(entry -> {
+            if (!idle.contains(entry.getValue().flightNumber)) {
+                return false;
+            }
+            if (current != null) {
+                current.released(entry.getKey());
+            }
+            return true;
+        });
+        log.info("✈️  Dropped {} idle flights from the seat inventory", idle.size());
+    }
+
+    /**
+     * Frees the booking's seat, if it holds one.
+     *
+     * @return the released seat, or null
+     */
+    public String release(String bookingId) {
+        Reservation reservation = reservations.remove(bookingId);
+        if (reservation == null) {
+            return null;
+        }
+        releaseSeat(reservation);
+        ReservationListener current = listener;
+        if (current != null) {
+            current.released(bookingId);
+        }
+        return seatName(reservation.seat);
+    }
+
+    private void releaseSeat(Reservation reservation) {
+        FlightSeatMap seatMap = flights.get(reservation.flightNumber);
+        // Null if the flight was dropped as idle meanwhile
+        if (seatMap != null) {
+            seatMap.release(reservation.seat);
+            seatMap.touch(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return whether the seat is free, or null if the seat number is invalid
+     */
+    public Boolean isAvailable(String flightNumber, String seatNumber) {
+        int seat = seatIndex(seatNumber);
+        if (seat < 0) {
+            return null;
+        }
+        FlightSeatMap seatMap = flights.get(flightNumber);
+        return seatMap == null || !seatMap.isReserved(seat);
+    }
+
+    public SeatAvailability availability(String flightNumber) {
+        FlightSeatMap seatMap = flights.get(flightNumber);
+        int capacity = rows * seatsPerRow;
+        List<String> availableSeats = new ArrayList<>();
+        for (int seat = 0; seat < capacity; seat++) {
+            if (seatMap == null || !seatMap.isReserved(seat)) {
+                availableSeats.add(seatName(seat));
+            }
+        }
+        return SeatAvailability.builder()
+                .flightNumber(flightNumber)
+                .capacity(capacity)
+                .reserved(capacity - availableSeats.size())
+                .available(availableSeats.size())
+                .availableSeats(availableSeats)
+                .build();
+    }
+
+    public int flightCount() {
+        return flights.size();
+    }
+
+    public int reservationCount() {
+        return reservations.size();
+    }
+
+    private FlightSeatMap seatMap(String flightNumber, long nowMillis) {
+        FlightSeatMap seatMap = flights.get(flightNumber);
+        if (seatMap == null) {
+            seatMap = flights.computeIfAbsent(flightNumber, f -> new FlightSeatMap(rows * seatsPerRow, nowMillis));
+        }
+        seatMap.touch(nowMillis);
+        return seatMap;
+    }
+
+    private long sweepInterval() {
+        return flightIdleTtlMillis > 0 ? Math.max(flightIdleTtlMillis / 10, 1000) : Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * "12A" → (12 - 1) * seatsPerRow + 0; -1 if malformed or outside the layout
+     */
+    int seatIndex(String seatNumber) {
+        if (seatNumber == null || seatNumber.length() < 2) {
+            return -1;
+        }
+        int last = seatNumber.length() - 1;
+        int letter = Character.toUpperCase(seatNumber.charAt(last)) - 'A';
+        if (letter < 0 || letter >= seatsPerRow) {
+            return -1;
+        }
+        int row = 0;
+        for (int i = 0; i < last; i++) {
+            char c = seatNumber.charAt(i);
+            if (c < '0' || c > '9' || row > rows) {
+                return -1;
+            }
+            row = row * 10 + (c - '0');
+        }
+        if (row < 1 || row > rows) {
+            return -1;
+        }
+        return (row - 1) * seatsPerRow + letter;
+    }
+
+    String seatName(int seat) {
+        return Integer.toString(seat / seatsPerRow + 1) + (char) ('A' + seat % seatsPerRow);
+    }
+
+    private record Reservation(String flightNumber, int seat) {
+    }
+}
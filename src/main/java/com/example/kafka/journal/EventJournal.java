@@ -0,0 +1,351 @@
+package com.example.kafka.journal;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BINARY EVENT JOURNAL
+ *
+ * Audit trail of every producer and consumer decision (accepted, gap, out of
+ * order, duplicate, validation failure, ...) at a fraction of the cost of
+ * per-event log lines - no formatting, no strings, no allocation.
+ *
+ * - RING: a preallocated buffer of fixed-size records. Any thread claims a
+ *   slot with one CAS, writes the record in place and publishes it. When the
+ *   ring is full the record is dropped and counted - callers never block.
+ * - WRITER: one background thread copies published records, in claim order,
+ *   into memory-mapped segment files. Segments roll at segment-size-mb and
+ *   only the newest max-segments are kept.
+ * - SAMPLING: routine decisions (OK, DEFERRED, SENT) are kept with
+ *   sample-rate, anomalies with anomaly-sample-rate (all of them by default).
+ *
+ * Records reach the page cache as soon as the writer copies them, so they
+ * survive a crash of the process (not of the machine).
+ * Decode with {@link JournalReader}.
+ *
+ * Segment file: [64 byte header: magic, version, record size][records...]
+ * Record (64 bytes):
+ *   0 long timestamp millis (0 = end of data)   8 long offset (-1 = unknown)
+ *  16 int partition (-1 = unknown)              20 int sequence
+ *  24 int last sequence (-1 = none)             28 byte source  29 byte decision
+ *  30 byte event type (-1 = unknown)            31 byte booking id length
+ *  32 booking id, ASCII, at most 32 bytes
+ *
+ * Source, decision and event type are stored by ordinal - only ever append
+ * new constants to those enums.
+ */
+@Slf4j
+@Component
+public class EventJournal implements DisposableBean {
+
+    public enum Source {
+        SOLVED_CONSUMER,
+        PROBLEM_CONSUMER,
+        SOLVED_PRODUCER,
+        PROBLEM_PRODUCER
+    }
+
+    public enum Decision {
+        OK(false),
+        SEQUENCE_GAP(true),
+        OUT_OF_ORDER(true),
+        DUPLICATE(true),
+        DEFERRED(false),
+        VALIDATION_FAILED(true),
+        SENT(false),
+        SEND_FAILED(true);
+
+        private final boolean anomaly;
+
+        Decision(boolean anomaly) {
+            this.anomaly = anomaly;
+        }
+
+        public boolean isAnomaly() {
+            return anomaly;
+        }
+    }
+
+    static final int MAGIC = 0x424B4A52; // "BKJR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+    static final int MAX_ID_LENGTH = 32;
+
+    static final int TIMESTAMP = 0;
+    static final int OFFSET = 8;
+    static final int PARTITION = 16;
+    static final int SEQUENCE = 20;
+    static final int LAST_SEQUENCE = 24;
+    static final int SOURCE = 28;
+    static final int DECISION = 29;
+    static final int EVENT_TYPE = 30;
+    static final int ID_LENGTH = 31;
+    static final int ID = 32;
+
+    static final String SEGMENT_PREFIX = "events-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final double anomalySampleRate;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final BookingMetrics metrics;
+
+    // Ring - claim c writes slot c & mask and publishes it as c + 1
+    private final int mask;
+    private final ByteBuffer ring;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long drained;
+
+    // Writer thread only
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private Thread writer;
+    private volatile boolean running;
+
+    public EventJournal(
+            @Value("${kafka.journal.enabled:true}") boolean enabled,
+            @Value("${kafka.journal.directory:./data/journal}") String directory,
+            @Value("${kafka.journal.ring-size:65536}") int ringSize,
+            @Value("${kafka.journal.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${kafka.journal.max-segments:16}") int maxSegments,
+            @Value("${kafka.journal.sample-rate:1.0}") double sampleRate,
+            @Value("${kafka.journal.anomaly-sample-rate:1.0}") double anomalySampleRate,
+            BookingMetrics metrics) {
+        int capacity = Integer.highestOneBit(Math.max(ringSize, 2) * 2 - 1);
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.anomalySampleRate = anomalySampleRate;
+        this.directory = Paths.get(directory);
+        this.segmentSize = HEADER_SIZE + (int) ((segmentSizeMb * 1024L * 1024L - HEADER_SIZE) / RECORD_SIZE) * RECORD_SIZE;
+        this.maxSegments = Math.max(maxSegments, 1);
+        this.metrics = metrics;
+        this.mask = capacity - 1;
+        this.ring = enabled ? ByteBuffer.allocate(capacity * RECORD_SIZE) : null;
+        this.published = new AtomicLongArray(enabled ? capacity : 0);
+
+        if (enabled) {
+            openNextSegment();
+            running = true;
+            writer = new Thread(this::writeLoop, "event-journal-writer");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("📓 Event journal: {} ({} record ring, sample rate {} / anomalies {})",
+                    this.directory.toAbsolutePath(), capacity, sampleRate, anomalySampleRate);
+        }
+    }
+
+    /**
+     * Journals a consumer decision about a record.
+     *
+     * @param lastSequence the booking's last sequence before this event, or null if none
+     */
+    public void record(Source source, Decision decision, BookingEvent event,
+                       int partition, long offset, Integer lastSequence) {
+        if (!enabled || !sampled(decision)) {
+            return;
+        }
+        long claim = claim();
+        if (claim < 0) {
+            metrics.recordJournalDropped();
+            return;
+        }
+        int base = (int) (claim & mask) * RECORD_SIZE;
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+
+        ring.putLong(base + TIMESTAMP, System.currentTimeMillis());
+        ring.putLong(base + OFFSET, offset);
+        ring.putInt(base + PARTITION, partition);
+        ring.putInt(base + SEQUENCE, event.getSequenceNumber() != null ? event.getSequenceNumber() : -1);
+        ring.putInt(base + LAST_SEQUENCE, lastSequence != null ? lastSequence : -1);
+        ring.put(base + SOURCE, (byte) source.ordinal());
+        ring.put(base + DECISION, (byte) decision.ordinal());
+        ring.put(base + EVENT_TYPE, type != null ? (byte) type.ordinal() : -1);
+        putBookingId(base, event.getBookingId());
+
+        // Release - the writer sees the whole record once it sees this
+        published.set((int) (claim & mask), claim + 1);
+    }
+
+    /**
+     * Journals a producer outcome.
+     */
+    public void recordSend(Source source, BookingEvent event, int partition, long offset, boolean success) {
+        record(source, success ? Decision.SENT : Decision.SEND_FAILED, event, partition, offset, null);
+    }
+
+    /**
+     * @return records claimed but not yet written to the segment files
+     */
+    public long backlog() {
+        return enabled ? claimed.get() - drained : 0;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private boolean sampled(Decision decision) {
+        double rate = decision.isAnomaly() ? anomalySampleRate : sampleRate;
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * @return the claimed record number, or -1 if the ring is full
+     */
+    private long claim() {
+        while (true) {
+            long next = claimed.get();
+            if (next - drained > mask) {
+                return -1;
+            }
+            if (claimed.compareAndSet(next, next + 1)) {
+                return next;
+            }
+        }
+    }
+
+    private void putBookingId(int base, String bookingId) {
+        int length = bookingId != null ? Math.min(bookingId.length(), MAX_ID_LENGTH) : 0;
+        for (int i = 0; i < length; i++) {
+            char c = bookingId.charAt(i);
+            ring.put(base + ID + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+        ring.put(base + ID_LENGTH, (byte) length);
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                if (drain() > 0) {
+                    continue;
+                }
+                if (claimed.get() == drained) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else {
+                    // Next record claimed but still being written
+                    Thread.onSpinWait();
+                }
+            }
+            drain();
+            segment.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            log.error("❌ Event journal writer stopped", e);
+        }
+    }
+
+    private int drain() {
+        long start = drained;
+        long end = start;
+        while (published.get((int) (end & mask)) == end + 1) {
+            end++;
+        }
+        // Published records are contiguous in the ring - copy them in runs
+        long next = start;
+        while (next < end) {
+            if (segment.remaining() < RECORD_SIZE) {
+                openNextSegment();
+            }
+            int slot = (int) (next & mask);
+            long run = Math.min(end - next, Math.min(mask + 1 - slot, segment.remaining() / RECORD_SIZE));
+            int bytes = (int) run * RECORD_SIZE;
+            segment.put(segment.position(), ring, slot * RECORD_SIZE, bytes);
+            segment.position(segment.position() + bytes);
+            next += run;
+        }
+        if (end > start) {
+            // Frees the slots for the next claims
+            drained = end;
+        }
+        return (int) (end - start);
+    }
+
+    private void openNextSegment() {
+        try {
+            if (channel != null) {
+                segment.force();
+                channel.close();
+            }
+            Files.createDirectories(directory);
+            List<Path> existing = segments(directory);
+            if (segmentNumber == 0 && !existing.isEmpty()) {
+                segmentNumber = segmentNumber(existing.get(existing.size() - 1));
+            }
+            segmentNumber++;
+            Path file = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.putInt(MAGIC);
+            segment.putInt(VERSION);
+            segment.putInt(RECORD_SIZE);
+            segment.position(HEADER_SIZE);
+
+            existing.add(file);
+            for (int i = 0; i < existing.size() - maxSegments; i++) {
+                Files.deleteIfExists(existing.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event journal segment in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the directory's segment files, oldest first
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(EventJournal::segmentNumber))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.kafka.journal;
+
+import com.example.kafka.model.BookingEventType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * EVENT JOURNAL READER
+ *
+ * Decodes {@link EventJournal} segments into one line per record, oldest first.
+ * Needs only the compiled classes - no Spring context, no broker:
+ *
+ * java -cp target/classes com.example.kafka.journal.JournalReader ./data/journal \
+ *     [--booking BK001] [--decision OUT_OF_ORDER,SEQUENCE_GAP] [--source SOLVED_CONSUMER]
+ *     [--anomalies] [--limit 100]
+ *
+ * The path is a journal directory (all segments) or a single segment file.
+ * The segment being written can be read while the application runs.
+ */
+public final class JournalReader {
+
+    private static final EventJournal.Source[] SOURCES = EventJournal.Source.values();
+    private static final EventJournal.Decision[] DECISIONS = EventJournal.Decision.values();
+    private static final BookingEventType[] EVENT_TYPES = BookingEventType.values();
+
+    private String bookingId;
+    private Set<EventJournal.Decision> decisions = EnumSet.allOf(EventJournal.Decision.class);
+    private Set<EventJournal.Source> sources = EnumSet.allOf(EventJournal.Source.class);
+    private long limit = Long.MAX_VALUE;
+    private long printed;
+
+    private JournalReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JournalReader <journal directory | segment file> [--booking ID] "
+                    + "[--decision D1,D2] [--source S1,S2] [--anomalies] [--limit N]");
+            System.exit(2);
+        }
+        JournalReader reader = new JournalReader();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--booking":
+                    reader.bookingId = args[++i];
+                    break;
+                case "--decision":
+                    reader.decisions = parse(args[++i], EventJournal.Decision.class);
+                    break;
+                case "--source":
+                    reader.sources = parse(args[++i], EventJournal.Source.class);
+                    break;
+                case "--anomalies":
+                    reader.decisions.removeIf(decision -> !decision.isAnomaly());
+                    break;
+                case "--limit":
+                    reader.limit = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Path path = Paths.get(args[0]);
+        List<Path> files = Files.isDirectory(path) ? EventJournal.segments(path) : List.of(path);
+        for (Path file : files) {
+            if (!reader.print(file, System.out)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return false once the limit is reached
+     */
+    private boolean print(Path file, PrintStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < EventJournal.HEADER_SIZE
+                || buffer.getInt(0) != EventJournal.MAGIC
+                || buffer.getInt(4) != EventJournal.VERSION
+                || buffer.getInt(8) != EventJournal.RECORD_SIZE) {
+            System.err.println("Skipping " + file + ": not an event journal segment");
+            return true;
+        }
+
+        byte[] id = new byte[EventJournal.MAX_ID_LENGTH];
+        for (int base = EventJournal.HEADER_SIZE;
+             base + EventJournal.RECORD_SIZE <= buffer.limit();
+             base += EventJournal.RECORD_SIZE) {
+            long timestamp = buffer.getLong(base + EventJournal.TIMESTAMP);
+            if (timestamp == 0) {
+                // Rest of the segment not written yet
+                break;
+            }
+            EventJournal.Source source = SOURCES[buffer.get(base + EventJournal.SOURCE)];
+            EventJournal.Decision decision = DECISIONS[buffer.get(base + EventJournal.DECISION)];
+            int idLength = buffer.get(base + EventJournal.ID_LENGTH);
+            buffer.get(base + EventJournal.ID, id, 0, idLength);
+            String booking = new String(id, 0, idLength, StandardCharsets.US_ASCII);
+            if (!sources.contains(source) || !decisions.contains(decision)
+                    || (bookingId != null && !bookingId.equals(booking))) {
+                continue;
+            }
+            if (printed++ >= limit) {
+                return false;
+            }
+
+            int type = buffer.get(base + EventJournal.EVENT_TYPE);
+            int lastSequence = buffer.getInt(base + EventJournal.LAST_SEQUENCE);
+            out.println(Instant.ofEpochMilli(timestamp)
+                    + " " + source
+                    + " " + decision
+                    + " booking=" + booking
+                    + " type=" + (type >= 0 ? EVENT_TYPES[type] : "UNKNOWN")
+                    + " seq=" + buffer.getInt(base + EventJournal.SEQUENCE)
+                    + (lastSequence >= 0 ? " last=" + lastSequence : "")
+                    + " partition=" + buffer.getInt(base + EventJournal.PARTITION)
+                    + " offset=" + buffer.getLong(base + EventJournal.OFFSET));
+        }
+        return true;
+    }
+
+    private static <E extends Enum<E>> Set<E> parse(String names, Class<E> type) {
+        List<E> values = new ArrayList<>();
+        for (String name : names.split(",")) {
+            values.add(Enum.valueOf(type, name.trim().toUpperCase()));
+        }
+        return EnumSet.copyOf(values);
+    }
+}
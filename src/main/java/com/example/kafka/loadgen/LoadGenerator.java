@@ -0,0 +1,531 @@
+package com.example.kafka.loadgen;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.LoadProfile;
+import com.example.kafka.model.LoadReport;
+import com.example.kafka.producer.BookingProducerSolved;
+import com.example.kafka.routing.AirlineTopicRouter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SYNTHETIC LOAD GENERATOR
+ *
+ * Produces realistic booking lifecycles to the solved topic at a target
+ * event rate, for capacity planning (partitions, consumer concurrency).
+ *
+ * - Bookings spread over customers uniformly and over flights by a Zipf
+ *   distribution (a few popular flights, a long tail)
+ * - Each flight hands out seats in order; once full, new bookings on it
+ *   are cancelled right after CREATED (sold out)
+ * - A share of bookings is cancelled after a random step of the lifecycle
+ * - concurrentBookings lifecycles are in progress at once and their events
+ *   interleaved at random - each booking's own events stay in order
+ * - Sends are paced to eventsPerSecond, bounded by max-in-flight unacked sends
+ *
+ * Reported: achieved rate, send → ack latency, and end-to-end latency
+ * (send → fetched) measured by a probe consumer that reads the run's own
+ * records via the send timestamp header. The application consumers'
+ * processing latency is in the booking.pipeline.latency metric.
+ *
+ * IDs are prefixed with the run id, so runs never collide with each other.
+ */
+@Slf4j
+@Service
+public class LoadGenerator implements DisposableBean {
+
+    private static final BookingEventType[] LIFECYCLE = {
+            BookingEventType.CREATED,
+            BookingEventType.SEAT_SELECTED,
+            BookingEventType.PAYMENT_INITIATED,
+            BookingEventType.PAYMENT_COMPLETED,
+            BookingEventType.CONFIRMED
+    };
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99", "p99.9"};
+    private static final long MAX_LAG_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final BookingProducerSolved producer;
+    private final KafkaProperties kafkaProperties;
+    private final Environment environment;
+    private final AirlineTopicRouter router;
+    private final int seatsPerFlight;
+    private final int seatsPerRow;
+    private final int maxInFlight;
+    private final long endToEndTimeoutMs;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Run current;
+    private volatile LoadReport lastReport;
+
+    public LoadGenerator(
+            BookingProducerSolved producer,
+            KafkaProperties kafkaProperties,
+            Environment environment,
+            AirlineTopicRouter router,
+            @Value("${kafka.consumer.seats.rows:60}") int seatRows,
+            @Value("${kafka.consumer.seats.seats-per-row:6}") int seatsPerRow,
+            @Value("${kafka.loadgen.max-in-flight:10000}") int maxInFlight,
+            @Value("${kafka.loadgen.end-to-end-timeout-ms:30000}") long endToEndTimeoutMs) {
+        this.producer = producer;
+        this.kafkaProperties = kafkaProperties;
+        this.environment = environment;
+        this.router = router;
+        this.seatsPerFlight = seatRows * seatsPerRow;
+        this.seatsPerRow = seatsPerRow;
+        this.maxInFlight = maxInFlight;
+        this.endToEndTimeoutMs = endToEndTimeoutMs;
+    }
+
+    /**
+     * @return a new profile with the configured kafka.loadgen.* defaults
+     */
+    public LoadProfile defaults() {
+        return Binder.get(environment)
+                .bind("kafka.loadgen", Bindable.ofInstance(new LoadProfile()))
+                .orElseGet(LoadProfile::new);
+    }
+
+    /**
+     * Starts a run in the background.
+     *
+     * @return the run's initial report, or null if a run is already in progress
+     */
+    public synchronized LoadReport start(LoadProfile profile) {
+        if (current != null) {
+            return null;
+        }
+        Run run = new Run(profile);
+        current = run;
+        runner.execute(() -> execute(run));
+        return run.report(LoadReport.Status.RUNNING);
+    }
+
+    /**
+     * Runs on the calling thread (CLI).
+     */
+    public LoadReport run(LoadProfile profile) {
+        Run run;
+        synchronized (this) {
+            if (current != null) {
+                throw new IllegalStateException("A load run is already in progress");
+            }
+            run = new Run(profile);
+            current = run;
+        }
+        return execute(run);
+    }
+
+    /**
+     * @return the running run's progress, else the last run's result (null if none)
+     */
+    public LoadReport status() {
+        Run run = current;
+        return run != null ? run.report(LoadReport.Status.RUNNING) : lastReport;
+    }
+
+    /**
+     * Stops sending new events - the run completes with what was sent so far.
+     *
+     * @return false if no run is in progress
+     */
+    public boolean stop() {
+        Run run = current;
+        if (run == null) {
+            return false;
+        }
+        run.stopRequested = true;
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        runner.shutdownNow();
+    }
+
+    private LoadReport execute(Run run) {
+        LoadReport report;
+        try {
+            run.generate();
+            report = run.report(LoadReport.Status.COMPLETED);
+            log.info("🚀 Load run {}: {} events ({} acked, {} failed) in {} ms - {} events/sec (target {}), "
+                            + "ack p99 {} ms, end-to-end p99 {} ms",
+                    report.getRunId(), report.getEventsSent(), report.getEventsAcked(), report.getEventsFailed(),
+                    report.getDurationMs(), report.getAchievedEventsPerSecond(), report.getTargetEventsPerSecond(),
+                    report.getAckLatencyMs().get("p99"), report.getEndToEndLatencyMs().get("p99"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report = run.report(LoadReport.Status.FAILED);
+            report.setError("Interrupted");
+        } catch (RuntimeException e) {
+            log.error("❌ Load run {} failed", run.runId, e);
+            report = run.report(LoadReport.Status.FAILED);
+            report.setError(e.getMessage());
+        } finally {
+            run.close();
+        }
+        synchronized (this) {
+            lastReport = report;
+            current = null;
+        }
+        return report;
+    }
+
+    private static Map<String, Double> percentiles(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        ValueAtPercentile[] percentiles = snapshot.percentileValues();
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (int i = 0; i < percentiles.length; i++) {
+            values.put(PERCENTILE_NAMES[i], percentiles[i].value(TimeUnit.MILLISECONDS));
+        }
+        values.put("max", snapshot.max(TimeUnit.MILLISECONDS));
+        return values;
+    }
+
+    /**
+     * One run - generation state on the runner thread, counters updated by
+     * the producer's completion callbacks
+     */
+    private final class Run {
+
+        private final String runId = "LG" + Long.toString(System.currentTimeMillis() % 2_176_782_336L, 36).toUpperCase();
+        private final LoadProfile profile;
+        private final ZipfSampler flights;
+        private final int[] seatsTaken;
+        private final Random random = new Random();
+
+        private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        private final Timer ackLatency;
+        private final Timer endToEndLatency;
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Map<Integer, LongAdder> partitionCounts = new ConcurrentHashMap<>();
+
+        private volatile boolean stopRequested;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+        private volatile long eventsSent;
+        private volatile long bookingsStarted;
+        private volatile long bookingsCancelled;
+        private volatile long bookingsSoldOut;
+        private EndToEndProbe probe;
+
+        private Run(LoadProfile profile) {
+            if (profile.getBookings() <= 0 || profile.getFlights() <= 0 || profile.getCustomers() <= 0
+                    || profile.getEventsPerSecond() <= 0 || profile.getConcurrentBookings() <= 0) {
+                throw new IllegalArgumentException("bookings, flights, customers, eventsPerSecond and "
+                        + "concurrentBookings must be positive");
+            }
+            this.profile = profile;
+            this.flights = new ZipfSampler(profile.getFlights(), profile.getZipfExponent());
+            this.seatsTaken = new int[profile.getFlights()];
+            this.ackLatency = latencyTimer("loadgen.ack");
+            this.endToEndLatency = latencyTimer("loadgen.end-to-end");
+        }
+
+        private Timer latencyTimer(String name) {
+            // One window for the whole run instead of Micrometer's rotating ones
+            return Timer.builder(name)
+                    .publishPercentiles(PERCENTILES)
+                    .distributionStatisticExpiry(Duration.ofDays(1))
+                    .distributionStatisticBufferLength(1)
+                    .register(registry);
+        }
+
+        private void generate() throws InterruptedException {
+            if (profile.isMeasureEndToEnd()) {
+                probe = new EndToEndProbe(runId + "-", endToEndLatency);
+            }
+            log.info("🚀 Load run {} started: {} bookings on {} flights at {} events/sec, {} interleaved",
+                    runId, profile.getBookings(), profile.getFlights(), profile.getEventsPerSecond(),
+                    profile.getConcurrentBookings());
+
+            Semaphore window = new Semaphore(maxInFlight);
+            Lifecycle[] active = new Lifecycle[Math.min(profile.getConcurrentBookings(), profile.getBookings())];
+            int activeCount = 0;
+            while (activeCount < active.length) {
+                active[activeCount++] = newLifecycle();
+            }
+
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / profile.getEventsPerSecond();
+            startedNanos = System.nanoTime();
+            long nextSendAt = startedNanos;
+            while (activeCount > 0 && !stopRequested) {
+                int slot = random.nextInt(activeCount);
+                Lifecycle lifecycle = active[slot];
+                BookingEvent event = lifecycle.nextEvent();
+                if (lifecycle.isDone()) {
+                    active[slot] = bookingsStarted < profile.getBookings() ? newLifecycle() : active[--activeCount];
+                }
+
+                long now = System.nanoTime();
+                if (now < nextSendAt) {
+                    LockSupport.parkNanos(nextSendAt - now);
+                } else if (now - nextSendAt > MAX_LAG_NANOS) {
+                    // Cannot keep up - carry on at the target rate rather than bursting to catch up
+                    nextSendAt = now;
+                }
+                nextSendAt += intervalNanos;
+
+                window.acquire();
+                send(event, window);
+            }
+
+            // Wait for the remaining acks - all permits back means nothing in flight
+            window.tryAcquire(maxInFlight, endToEndTimeoutMs, TimeUnit.MILLISECONDS);
+            finishedNanos = System.nanoTime();
+            if (probe != null) {
+                probe.awaitObserved(acked.sum(), endToEndTimeoutMs);
+            }
+        }
+
+        private void send(BookingEvent event, Semaphore window) {
+            long sentAt = System.nanoTime();
+            eventsSent++;
+            try {
+                producer.sendBookingEventAsync(event).whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        ackLatency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                        acked.increment();
+                        partitionCounts.computeIfAbsent(result.getRecordMetadata().partition(),
+                                p -> new LongAdder()).increment();
+                    } else {
+                        failed.increment();
+                    }
+                    window.release();
+                });
+            } catch (RuntimeException e) {
+                // Rejected before reaching the producer buffer
+                failed.increment();
+                window.release();
+            }
+        }
+
+        private Lifecycle newLifecycle() {
+            long number = bookingsStarted++;
+            int flight = flights.sample();
+            String seat = null;
+            if (seatsTaken[flight] < seatsPerFlight) {
+                int index = seatsTaken[flight]++;
+                seat = Integer.toString(index / seatsPerRow + 1) + (char) ('A' + index % seatsPerRow);
+            }
+
+            BookingEventType[] steps;
+            if (seat == null) {
+                steps = new BookingEventType[]{BookingEventType.CREATED, BookingEventType.CANCELLED};
+                bookingsSoldOut++;
+                bookingsCancelled++;
+            } else if (random.nextDouble() < profile.getCancellationRatio()) {
+                // Cancelled after CREATED .. PAYMENT_COMPLETED
+                int completed = 1 + random.nextInt(LIFECYCLE.length - 1);
+                steps = new BookingEventType[completed + 1];
+                System.arraycopy(LIFECYCLE, 0, steps, 0, completed);
+                steps[completed] = BookingEventType.CANCELLED;
+                bookingsCancelled++;
+            } else {
+                steps = LIFECYCLE;
+            }
+            return new Lifecycle(
+                    runId + "-BK" + number,
+                    "CUST" + random.nextInt(profile.getCustomers()),
+                    runId + "-F" + flight,
+                    seat,
+                    // 99.00 .. 998.99
+                    (9_900 + random.nextInt(90_000)) / 100.0,
+                    steps);
+        }
+
+        private LoadReport report(LoadReport.Status status) {
+            long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+            long durationMs = startedNanos != 0 ? Math.max(1, (end - startedNanos) / 1_000_000) : 0;
+            Map<Integer, Long> partitions = new TreeMap<>();
+            partitionCounts.forEach((partition, count) -> partitions.put(partition, count.sum()));
+            long ackedCount = acked.sum();
+            return LoadReport.builder()
+                    .runId(runId)
+                    .status(status)
+                    .profile(profile)
+                    .bookingsStarted(bookingsStarted)
+                    .bookingsCancelled(bookingsCancelled)
+                    .bookingsSoldOut(bookingsSoldOut)
+                    .eventsSent(eventsSent)
+                    .eventsAcked(ackedCount)
+                    .eventsFailed(failed.sum())
+                    .partitionCounts(partitions)
+                    .durationMs(durationMs)
+                    .targetEventsPerSecond(profile.getEventsPerSecond())
+                    .achievedEventsPerSecond(durationMs > 0 ? ackedCount * 1000 / durationMs : 0)
+                    .ackLatencyMs(percentiles(ackLatency))
+                    .endToEndLatencyMs(percentiles(endToEndLatency))
+                    .endToEndObserved(endToEndLatency.count())
+                    .build();
+        }
+
+        private void close() {
+            if (probe != null) {
+                probe.close();
+            }
+            registry.close();
+        }
+    }
+
+    /**
+     * One booking's remaining events
+     */
+    private static final class Lifecycle {
+
+        private final String bookingId;
+        private final String customerId;
+        private final String flightNumber;
+        private final String seatNumber;
+        private final double amount;
+        private final BookingEventType[] steps;
+        private int next;
+
+        private Lifecycle(String bookingId, String customerId, String flightNumber, String seatNumber,
+                          double amount, BookingEventType[] steps) {
+            this.bookingId = bookingId;
+            this.customerId = customerId;
+            this.flightNumber = flightNumber;
+            this.seatNumber = seatNumber;
+            this.amount = amount;
+            this.steps = steps;
+        }
+
+        private BookingEvent nextEvent() {
+            BookingEventType type = steps[next++];
+            boolean payment = type == BookingEventType.PAYMENT_INITIATED || type == BookingEventType.PAYMENT_COMPLETED;
+            return BookingEvent.builder()
+                    .bookingId(bookingId)
+                    .customerId(customerId)
+                    .flightNumber(flightNumber)
+                    .eventType(type.name())
+                    .seatNumber(type == BookingEventType.SEAT_SELECTED ? seatNumber : null)
+                    .amount(payment ? amount : null)
+                    .timestamp(LocalDateTime.now())
+                    .sequenceNumber(next)
+                    .build();
+        }
+
+        private boolean isDone() {
+            return next == steps.length;
+        }
+    }
+
+    /**
+     * Reads the solved topic and the airline shards from their end (no consumer group) and times the
+     * run's own records from their send timestamp header.
+     */
+    private final class EndToEndProbe implements AutoCloseable {
+
+        private final KafkaConsumer<String, byte[]> consumer;
+        private final Thread thread;
+        private final String keyPrefix;
+        private final Timer latency;
+        private volatile boolean running = true;
+
+        private EndToEndProbe(String keyPrefix, Timer latency) {
+            this.keyPrefix = keyPrefix;
+            this.latency = latency;
+
+            Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+            props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+            consumer = new KafkaConsumer<>(props);
+
+            List<TopicPartition> partitions = router.topics().stream()
+                    .flatMap(topic -> consumer.partitionsFor(topic).stream())
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToEnd(partitions);
+            // Resolve the end offsets now, before the first event is sent
+            partitions.forEach(consumer::position);
+
+            thread = new Thread(this::poll, "load-generator-probe");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void poll() {
+            try {
+                while (running) {
+                    for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                        if (record.key() == null || !record.key().startsWith(keyPrefix)) {
+                            continue;
+                        }
+                        long sentAt = BookingMetrics.sentAt(record.headers());
+                        if (sentAt >= 0) {
+                            latency.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+                        }
+                    }
+                }
+            } catch (WakeupException e) {
+                // Closing
+            } catch (RuntimeException e) {
+                log.warn("⚠️  End-to-end probe stopped: {}", e.getMessage());
+            } finally {
+                consumer.close(Duration.ofSeconds(5));
+            }
+        }
+
+        private void awaitObserved(long expected, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (latency.count() < expected && thread.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            consumer.wakeup();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
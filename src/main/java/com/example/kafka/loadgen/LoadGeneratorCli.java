@@ -0,0 +1,70 @@
+package com.example.kafka.loadgen;
+
+import com.example.kafka.KafkaAirlineBookingApplication;
+import com.example.kafka.model.LoadReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * LOAD GENERATOR CLI
+ *
+ * Runs one load run without the web server or any listener, prints the
+ * report as JSON and exits (status 1 if the run failed). Profile settings
+ * are the kafka.loadgen.* properties:
+ *
+ * mvn spring-boot:run -Dspring-boot.run.main-class=com.example.kafka.loadgen.LoadGeneratorCli \
+ *     -Dspring-boot.run.arguments="--kafka.loadgen.events-per-second=5000 --kafka.loadgen.bookings=50000"
+ */
+public final class LoadGeneratorCli {
+
+    private static final Map<String, Object> PRODUCER_ONLY = Map.of(
+            "kafka.consumer.listener-mode", "none",
+            "kafka.consumer.solved.retry.enabled", "false",
+            "kafka.consumer.analytics.enabled", "false",
+            "kafka.consumer.expiry.enabled", "false",
+            "kafka.command.enabled", "false",
+            "kafka.outbox.enabled", "false",
+            "kafka.journal.enabled", "false");
+
+    private LoadGeneratorCli() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(KafkaAirlineBookingApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(applicationContext -> {
+                    // Above application.properties, below the command line
+                    MutablePropertySources sources = applicationContext.getEnvironment().getPropertySources();
+                    MapPropertySource producerOnly = new MapPropertySource("loadGeneratorCli", PRODUCER_ONLY);
+                    if (sources.contains(SimpleCommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+                        sources.addAfter(SimpleCommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, producerOnly);
+                    } else {
+                        sources.addFirst(producerOnly);
+                    }
+                })
+                .run(args);
+
+        int exitCode;
+        try {
+            LoadGenerator generator = context.getBean(LoadGenerator.class);
+            LoadReport report = generator.run(generator.defaults());
+            System.out.println(context.getBean(ObjectMapper.class).writerWithDefaultPrettyPrinter()
+                    .writeValueAsString(report));
+            exitCode = report.getStatus() == LoadReport.Status.COMPLETED ? 0 : 1;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.kafka.loadgen;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf-distributed ranks 0..n-1: P(rank k) ∝ 1 / (k + 1)^exponent.
+ * exponent 0 = uniform, ~1 = typical popularity skew, larger = more skewed.
+ *
+ * The cumulative distribution is precomputed once; a sample is one binary search.
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        if (n <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("n must be positive and exponent non-negative");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int sample() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        // Not found → -(insertion point) - 1; the insertion point is the sampled rank
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.kafka.metrics;
+
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * BOOKING PIPELINE METRICS
+ *
+ * booking.producer.send          timer    send → broker ack, by topic and result
+ * booking.pipeline.latency       timer    send → consume, from the {@value #SENT_AT_HEADER} header
+ * booking.consumer.events        counter  consumed events, by consumer, topic and partition
+ * booking.validation             counter  solved consumer verdicts, by result, event type and prior state
+ * booking.sequence.anomalies     counter  out-of-order and gap detections, by consumer
+ * booking.consumer.duplicates    counter  suppressed redeliveries, by consumer and how they were detected
+ * booking.analytics.late.events  counter  events behind the flight stats windows, by outcome (partial / dropped)
+ * booking.expiry.cancelled       counter  abandoned bookings cancelled by the expiry timer, by pending state
+ * booking.journal.dropped        counter  event journal records dropped because its ring was full
+ * booking.command.latency        timer    booking command send → verdict, by status
+ * booking.replay.records         counter  solved topic records applied again by a replay
+ * booking.outbox.backlog         gauge    producer outbox events not yet acknowledged by Kafka
+ * booking.outbox.oldest.age      gauge    ms the oldest pending outbox event has waited
+ * booking.outbox.retries         counter  outbox events sent again after a failed send
+ * booking.outbox.dead.lettered   counter  outbox events Kafka can never accept, moved to the dead-letter file
+ * booking.switchover.breaks      counter  events out of sequence while partitions were added, by topic
+ *
+ * Consumer lag per partition comes from the Kafka client metrics
+ * (kafka.consumer.fetch.manager.records.lag), bound in KafkaConsumerConfig.
+ *
+ * Meters are created once and cached instead of being looked up per event.
+ */
+@Component
+public class BookingMetrics {
+
+    public static final String SENT_AT_HEADER = "booking-sent-at";
+
+    public static final String CONSUMER_SOLVED = "solved";
+    public static final String CONSUMER_PROBLEM = "problem";
+
+    public static final String DETECTED_BY_HIGH_WATER_MARK = "high-water-mark";
+    public static final String DETECTED_BY_FILTER = "filter";
+
+    private static final String UNKNOWN = "UNKNOWN";
+    private static final String NONE = "NONE";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> sendTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> pipelineTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<TopicPartition, Counter>> consumedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> anomalyCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> duplicateCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> lateEventCounters = new ConcurrentHashMap<>();
+    private final Map<BookingEventType, Counter> expiryCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> switchoverCounters = new ConcurrentHashMap<>();
+    private final Counter journalDropped;
+    private final Counter replayedRecords;
+    private final Counter outboxRetries;
+    private final Counter outboxDeadLettered;
+    private final Map<BookingCommandResult.Status, Timer> commandTimers = new ConcurrentHashMap<>();
+
+    // [result][eventType ordinal + 1][state ordinal + 1]; index 0 = unknown / none
+    private final Counter[][][] validationCounters;
+
+    public BookingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        int types = BookingEventType.values().length + 1;
+        this.validationCounters = new Counter[2][types][types];
+        this.journalDropped = Counter.builder("booking.journal.dropped")
+                .description("Event journal records dropped because the ring was full")
+                .register(registry);
+        this.replayedRecords = Counter.builder("booking.replay.records")
+                .description("Solved topic records applied again by a replay")
+                .register(registry);
+        this.outboxRetries = Counter.builder("booking.outbox.retries")
+                .description("Outbox events sent again after a failed send")
+                .register(registry);
+        this.outboxDeadLettered = Counter.builder("booking.outbox.dead.lettered")
+                .description("Outbox events Kafka can never accept, moved to the dead-letter file")
+                .register(registry);
+    }
+
+    /**
+     * Send timestamp header value, added to every produced record.
+     */
+    public static byte[] encodeSentAt(long epochMillis) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(epochMillis).array();
+    }
+
+    /**
+     * @return the send timestamp carried by the record, or -1 if absent
+     */
+    public static long sentAt(Headers headers) {
+        Header header = headers.lastHeader(SENT_AT_HEADER);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return -1L;
+        }
+        return ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    public void recordSend(String topic, long sentAtMillis, boolean success) {
+        if (sentAtMillis < 0) {
+            return;
+        }
+        String result = success ? "success" : "failure";
+        Timer timer = sendTimers.computeIfAbsent(topic + '|' + result, key -> Timer.builder("booking.producer.send")
+                .description("Time from send to broker acknowledgment")
+                .tag("topic", topic)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry));
+        timer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - sentAtMillis)));
+    }
+
+    public void recordConsumed(String consumer, ConsumerRecord<?, ?> record) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        consumedCounters.computeIfAbsent(consumer, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(partition, tp -> Counter.builder("booking.consumer.events")
+                        .description("Booking events consumed")
+                        .tag("consumer", consumer)
+                        .tag("topic", tp.topic())
+                        .tag("partition", Integer.toString(tp.partition()))
+                        .register(registry))
+                .increment();
+
+        long sentAt = sentAt(record.headers());
+        if (sentAt >= 0) {
+            Timer timer = pipelineTimers.computeIfAbsent(consumer, c -> Timer.builder("booking.pipeline.latency")
+                    .description("Time from producer send to consumer receive")
+                    .tag("consumer", c)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            timer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - sentAt)));
+        }
+    }
+
+    public void recordValidation(String eventType, BookingEventType currentState, boolean success) {
+        BookingEventType type = BookingEventType.fromName(eventType);
+        int result = success ? 1 : 0;
+        int typeIndex = type != null ? type.ordinal() + 1 : 0;
+        int stateIndex = currentState != null ? currentState.ordinal() + 1 : 0;
+
+        Counter counter = validationCounters[result][typeIndex][stateIndex];
+        if (counter == null) {
+            // Benign race - the registry hands out the same counter for the same tags
+            counter = Counter.builder("booking.validation")
+                    .description("Solved consumer business validation results")
+                    .tag("result", success ? "success" : "failure")
+                    .tag("eventType", type != null ? type.name() : UNKNOWN)
+                    .tag("state", currentState != null ? currentState.name() : NONE)
+                    .register(registry);
+            validationCounters[result][typeIndex][stateIndex] = counter;
+        }
+        counter.increment();
+    }
+
+    public void recordOutOfOrder(String consumer) {
+        anomaly(consumer, "out_of_order").increment();
+    }
+
+    public void recordSequenceGap(String consumer) {
+        anomaly(consumer, "gap").increment();
+    }
+
+    /**
+     * Redeliveries are counted here, not as out-of-order anomalies
+     */
+    public void recordDuplicate(String consumer, String detectedBy) {
+        duplicateCounters.computeIfAbsent(consumer + '|' + detectedBy, key -> Counter.builder("booking.consumer.duplicates")
+                        .description("Redelivered events suppressed by the consumers")
+                        .tag("consumer", consumer)
+                        .tag("detectedBy", detectedBy)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * @param outcome "partial" if some of the event's windows were already
+     *                published, "dropped" if none was still open
+     */
+    public void recordLateEvent(String outcome) {
+        lateEventCounters.computeIfAbsent(outcome, key -> Counter.builder("booking.analytics.late.events")
+                        .description("Events arriving after some or all of their flight stats windows closed")
+                        .tag("outcome", outcome)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordExpired(BookingEventType pendingState) {
+        expiryCounters.computeIfAbsent(pendingState, state -> Counter.builder("booking.expiry.cancelled")
+                        .description("Abandoned bookings cancelled by the expiry timer")
+                        .tag("state", state.name())
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordSwitchoverBreak(String topic) {
+        switchoverCounters.computeIfAbsent(topic, key -> Counter.builder("booking.switchover.breaks")
+                        .description("Events out of sequence for their booking while partitions were added")
+                        .tag("topic", topic)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordJournalDropped() {
+        journalDropped.increment();
+    }
+
+    public void recordReplayed(int records) {
+        replayedRecords.increment(records);
+    }
+
+    public void bindOutbox(LongSupplier backlog, LongSupplier oldestAgeMillis) {
+        Gauge.builder("booking.outbox.backlog", backlog::getAsLong)
+                .description("Producer outbox events not yet acknowledged by Kafka")
+                .register(registry);
+        Gauge.builder("booking.outbox.oldest.age", oldestAgeMillis::getAsLong)
+                .description("Time the oldest pending outbox event has waited")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    public void recordOutboxRetry(int events) {
+        outboxRetries.increment(events);
+    }
+
+    public void recordOutboxDeadLettered() {
+        outboxDeadLettered.increment();
+    }
+
+    public void recordCommand(BookingCommandResult.Status status, long elapsedNanos) {
+        commandTimers.computeIfAbsent(status, key -> Timer.builder("booking.command.latency")
+                        .description("Time from sending a booking command to its verdict")
+                        .tag("status", key.name())
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter anomaly(String consumer, String type) {
+        return anomalyCounters.computeIfAbsent(consumer + '|' + type, key -> Counter.builder("booking.sequence.anomalies")
+                .description("Sequence ordering anomalies detected by the consumers")
+                .tag("consumer", consumer)
+                .tag("type", type)
+                .register(registry));
+    }
+}
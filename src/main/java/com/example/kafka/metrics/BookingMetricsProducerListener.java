@@ -0,0 +1,26 @@
+package com.example.kafka.metrics;
+
+import com.example.kafka.model.BookingEvent;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.ProducerListener;
+
+/**
+ * Records send latency for every record sent through the KafkaTemplate
+ */
+@RequiredArgsConstructor
+public class BookingMetricsProducerListener implements ProducerListener<String, BookingEvent> {
+
+    private final BookingMetrics metrics;
+
+    @Override
+    public void onSuccess(ProducerRecord<String, BookingEvent> record, RecordMetadata metadata) {
+        metrics.recordSend(record.topic(), BookingMetrics.sentAt(record.headers()), true);
+    }
+
+    @Override
+    public void onError(ProducerRecord<String, BookingEvent> record, RecordMetadata metadata, Exception exception) {
+        metrics.recordSend(record.topic(), BookingMetrics.sentAt(record.headers()), false);
+    }
+}
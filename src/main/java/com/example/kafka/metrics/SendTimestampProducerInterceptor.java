@@ -0,0 +1,36 @@
+package com.example.kafka.metrics;
+
+import com.example.kafka.model.BookingEvent;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Map;
+
+/**
+ * Stamps every outgoing record with the wall-clock send time, so consumers
+ * can measure produce-to-consume latency and the producer listener can
+ * measure send latency.
+ */
+public class SendTimestampProducerInterceptor implements ProducerInterceptor<String, BookingEvent> {
+
+    @Override
+    public ProducerRecord<String, BookingEvent> onSend(ProducerRecord<String, BookingEvent> record) {
+        record.headers().remove(BookingMetrics.SENT_AT_HEADER);
+        record.headers().add(BookingMetrics.SENT_AT_HEADER,
+                BookingMetrics.encodeSentAt(System.currentTimeMillis()));
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.kafka.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Verdict of the solved consumer on a booking command, sent back on the
+ * command reply topic (TIMEOUT is filled in by the sender if none arrives).
+ */
+@Value
+@Builder(toBuilder = true)
+@Jacksonized
+public class BookingCommandResult {
+
+    public enum Status {
+        ACCEPTED,
+        REJECTED,
+        DUPLICATE,
+        TIMEOUT
+    }
+
+    Status status;
+    String bookingId;
+    String eventType;
+    Integer sequenceNumber;
+    BookingEventType previousState;
+    BookingEventType state;          // new state if accepted, otherwise the current one
+    String reason;                   // why it was rejected
+    Long latencyMs;                  // send → verdict, measured by the sender
+}
@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 @Data
@@ -28,10 +30,15 @@ public class BookingEvent {
     
     @Override
     public String toString() {
-        return String.format("[%s] Booking: %s | Customer: %s | Flight: %s | Type: %s | Seat: %s | Amount: %.2f | Seq: %d",
-                timestamp, bookingId, customerId, flightNumber, eventType, 
-                seatNumber != null ? seatNumber : "N/A", 
-                amount != null ? amount : 0.0, 
-                sequenceNumber);
+        // Concatenation instead of String.format - no format string parsing per call
+        BigDecimal formattedAmount = BigDecimal.valueOf(amount != null ? amount : 0.0)
+                .setScale(2, RoundingMode.HALF_UP);
+        return "[" + timestamp + "] Booking: " + bookingId
+                + " | Customer: " + customerId
+                + " | Flight: " + flightNumber
+                + " | Type: " + eventType
+                + " | Seat: " + (seatNumber != null ? seatNumber : "N/A")
+                + " | Amount: " + formattedAmount.toPlainString()
+                + " | Seq: " + sequenceNumber;
     }
 }
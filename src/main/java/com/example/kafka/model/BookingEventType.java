@@ -0,0 +1,58 @@
+package com.example.kafka.model;
+
+/**
+ * Booking lifecycle event types.
+ *
+ * NOTE: The ordinal is part of the binary wire format - only append new
+ * constants at the end, never reorder or remove existing ones.
+ */
+public enum BookingEventType {
+    CREATED,
+    SEAT_SELECTED,
+    PAYMENT_INITIATED,
+    PAYMENT_COMPLETED,
+    CONFIRMED,
+    CANCELLED;
+
+    private static final BookingEventType[] VALUES = values();
+
+    /**
+     * @return true if no further lifecycle events are expected after this one
+     */
+    public boolean isTerminal() {
+        return this == CONFIRMED || this == CANCELLED;
+    }
+
+    /**
+     * @return the matching type, or null for unknown or missing names
+     */
+    public static BookingEventType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        // String switch = cached hashCode + one equals, instead of a linear scan
+        switch (name) {
+            case "CREATED":
+                return CREATED;
+            case "SEAT_SELECTED":
+                return SEAT_SELECTED;
+            case "PAYMENT_INITIATED":
+                return PAYMENT_INITIATED;
+            case "PAYMENT_COMPLETED":
+                return PAYMENT_COMPLETED;
+            case "CONFIRMED":
+                return CONFIRMED;
+            case "CANCELLED":
+                return CANCELLED;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the type with this ordinal, or null if out of range
+     */
+    public static BookingEventType fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+}
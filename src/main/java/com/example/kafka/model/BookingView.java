@@ -0,0 +1,29 @@
+package com.example.kafka.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-side view of one booking, as projected by the solved consumer.
+ * Immutable - every accepted event replaces the whole view.
+ */
+@Value
+@Builder(toBuilder = true)
+@Jacksonized
+public class BookingView {
+
+    String bookingId;
+    String customerId;
+    String flightNumber;
+    BookingEventType state;
+    String seatNumber;
+    Double amount;
+    int lastSequence;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    LocalDateTime lastEventAt;
+}
@@ -0,0 +1,27 @@
+package com.example.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Result of one bulk ingestion request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkIngestionSummary {
+
+    private long received;
+    private long accepted;      // acknowledged by the broker
+    private long rejected;      // invalid events, never sent
+    private long failed;        // send failed or did not complete in time
+    private Map<Integer, Long> partitionCounts;
+    private long durationMs;
+    private long eventsPerSecond;
+    private String error;       // set if the body could not be read to the end
+}
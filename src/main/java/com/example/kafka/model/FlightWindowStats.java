@@ -0,0 +1,42 @@
+package com.example.kafka.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.Instant;
+
+/**
+ * Funnel and revenue figures of one flight over one time window, as
+ * aggregated by the solved consumer. All counts are additive, so partial
+ * results of several instances can be summed.
+ */
+@Value
+@Builder
+@Jacksonized
+public class FlightWindowStats {
+
+    public enum WindowType {
+        TUMBLING,
+        HOPPING
+    }
+
+    String flightNumber;
+    WindowType windowType;
+    Instant windowStart;
+    Instant windowEnd;
+    // false while the window (plus grace period) is still open
+    boolean closed;
+
+    long created;
+    long seatSelected;
+    long paymentInitiated;
+    long paymentCompleted;
+    long confirmed;
+    long cancelled;
+    double confirmedRevenue;
+
+    // confirmed / created and cancelled / created, null without CREATED events
+    Double conversionRate;
+    Double cancellationRate;
+}
@@ -0,0 +1,25 @@
+package com.example.kafka.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Shape of one synthetic load run. Defaults come from kafka.loadgen.*;
+ * a REST request only needs the fields it changes.
+ */
+@Data
+@NoArgsConstructor
+public class LoadProfile {
+
+    private int bookings = 10_000;
+    private int flights = 200;
+    private int customers = 5_000;
+    private int eventsPerSecond = 1_000;
+    // Flight popularity skew: 0 = uniform, ~1 = a few flights take most bookings
+    private double zipfExponent = 1.0;
+    // Share of bookings cancelled part-way through their lifecycle
+    private double cancellationRatio = 0.05;
+    // Lifecycles in progress at once - their events are interleaved
+    private int concurrentBookings = 500;
+    private boolean measureEndToEnd = true;
+}
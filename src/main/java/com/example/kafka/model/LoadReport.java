@@ -0,0 +1,47 @@
+package com.example.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Progress or result of a synthetic load run
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoadReport {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String runId;
+    private Status status;
+    private LoadProfile profile;
+
+    private long bookingsStarted;
+    private long bookingsCancelled;
+    private long bookingsSoldOut;     // cancelled because the flight had no seat left
+    private long eventsSent;
+    private long eventsAcked;
+    private long eventsFailed;
+    private Map<Integer, Long> partitionCounts;
+
+    private long durationMs;
+    private long targetEventsPerSecond;
+    private long achievedEventsPerSecond;
+
+    // p50 / p95 / p99 / p99.9 / max in milliseconds
+    private Map<String, Double> ackLatencyMs;         // send → broker ack
+    private Map<String, Double> endToEndLatencyMs;    // send → fetched by a consumer
+    private long endToEndObserved;
+
+    private String error;
+}
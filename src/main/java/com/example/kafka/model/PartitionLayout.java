@@ -0,0 +1,36 @@
+package com.example.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How the solved producers spread a topic's bookings over its partitions,
+ * and the state of a partition expansion
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PartitionLayout {
+
+    public enum Status {
+        // Every booking hashed over all partitions
+        SETTLED,
+        // Partitions added - all bookings stay on the old layout until activeFromMillis
+        EXPANDING,
+        // New bookings on the new layout, bookings in progress on the old one until endsAtMillis
+        MIGRATING
+    }
+
+    private String topic;
+    private Status status;
+    private int partitions;
+
+    // Expansion / migration only
+    private int legacyPartitions;
+    private long activeFromMillis;
+    private long endsAtMillis;
+    private int bookingsOnNewLayout;
+}
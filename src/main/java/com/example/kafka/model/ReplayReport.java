@@ -0,0 +1,46 @@
+package com.example.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Progress or result of a replay of the solved topic
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReplayReport {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        STOPPED,
+        FAILED
+    }
+
+    private String replayId;
+    private Status status;
+    private ReplayRequest request;
+
+    // Per partition: replayed from startOffsets (inclusive) to endOffsets (exclusive),
+    // where live processing resumes
+    private Map<Integer, Long> startOffsets;
+    private Map<Integer, Long> endOffsets;
+
+    private long recordsTotal;
+    private long recordsReplayed;
+    private long eventsApplied;
+    private long eventsRejected;
+    private long duplicates;
+
+    private long durationMs;
+    private long recordsPerSecond;
+    private long etaMs;
+
+    private String error;
+}
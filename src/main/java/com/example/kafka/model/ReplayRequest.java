@@ -0,0 +1,24 @@
+package com.example.kafka.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Where a replay of the solved topic starts. Without fromOffset or
+ * fromTimestamp it starts at the beginning of each partition.
+ */
+@Data
+@NoArgsConstructor
+public class ReplayRequest {
+
+    // Solved topic partitions to rewind - empty = all partitions this instance consumes
+    private List<Integer> partitions;
+    private Long fromOffset;
+    // Local time, like BookingEvent timestamps - each partition's first record at or after it
+    private LocalDateTime fromTimestamp;
+    // Discard the state of bookings whose first event is replayed and rebuild them
+    private boolean rebuild;
+}
@@ -0,0 +1,24 @@
+package com.example.kafka.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Seat availability of one flight, as seen by the solved consumer
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SeatAvailability {
+
+    private String flightNumber;
+    private int capacity;
+    private int reserved;
+    private int available;
+    private List<String> availableSeats;
+}
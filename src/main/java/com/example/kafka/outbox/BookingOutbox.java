@@ -0,0 +1,753 @@
+package com.example.kafka.outbox;
+
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.serialization.BookingEventBinaryCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.InvalidTopicException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * DURABLE PRODUCER OUTBOX
+ *
+ * Decouples the booking producers from the broker: an event is appended to a
+ * local memory-mapped log and the caller returns, whether Kafka is fast, slow
+ * or down. A single drainer thread sends the log to Kafka in order.
+ *
+ * - APPEND: one record per event, written under a lock into the current
+ *   segment file - no broker round trip, no blocking on a full producer
+ *   buffer. Segments roll at segment-size-mb; when max-segments are full
+ *   append fails loudly instead of dropping events.
+ * - DRAIN: up to batch-size records are sent through the producer that
+ *   registered the topic, then the drainer waits for all acks. Only the
+ *   acknowledged prefix is committed; from the first failure on, the batch
+ *   is sent again after a backoff (retry-backoff-ms doubling up to
+ *   max-retry-backoff-ms). Events of one booking therefore never overtake
+ *   each other - a resend can only duplicate events, which the solved
+ *   consumer suppresses by bookingId and sequence number.
+ * - DEAD LETTERS: a failure no resend can fix (no producer for the topic any
+ *   more, record too large, serialization error, invalid topic) would block
+ *   every topic behind it until the outbox is full. Such an event is moved
+ *   to the {@value #DEAD_LETTER_FILE} file instead (same record format as
+ *   the segments) and draining continues.
+ * - COMPLETION: {@link #appendAndTrack} completes once the event is
+ *   acknowledged (or dead-lettered); {@link #whenSent} once every event of a
+ *   key appended so far is. Sends that must not overtake a booking's pending
+ *   events wait on these rather than bypassing the outbox.
+ * - CHECKPOINT: the position of the first unacknowledged record, updated
+ *   after every batch. Fully drained segments are deleted.
+ * - RESTART: the log is scanned from the checkpoint and everything after it
+ *   is sent again (at least once).
+ *
+ * Records reach the page cache on append, so they survive a crash of the
+ * process; with force-interval-ms > 0 segments are also flushed to disk
+ * periodically.
+ *
+ * Segment file: [64 byte header: magic, version][records...]
+ * Record: [int length][int crc32][payload]  - length 0 ends the data,
+ *         length -1 continues in the next segment
+ *   payload: long appended-at millis, short topic length, topic,
+ *            short key length (-1 = no key), key, int value length,
+ *            value (BookingEventBinaryCodec)
+ */
+@Slf4j
+@Component
+public class BookingOutbox implements SmartLifecycle {
+
+    /**
+     * Sends one event of a registered topic and journals its outcome.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        CompletableFuture<SendResult<String, BookingEvent>> send(String key, BookingEvent event);
+    }
+
+    static final int MAGIC = 0x424B4F42; // "BKOB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int ROLL = -1;
+    static final String SEGMENT_PREFIX = "outbox-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String CHECKPOINT_FILE = "outbox.checkpoint";
+    static final String DEAD_LETTER_FILE = "outbox.dead-letter";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int batchSize;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final long forceIntervalMs;
+    private final BookingMetrics metrics;
+
+    private final Map<String, Sender> senders = new ConcurrentHashMap<>();
+    // Mapped segments by number - the drainer reads duplicates of the appender's buffers
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    // Append side, guarded by this
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    // Records appended (since startup, plus those recovered) - publishes the bytes to the drainer
+    private volatile long published;
+    // By record number (published count right after its append), until drained
+    private final Map<Long, CompletableFuture<SendResult<String, BookingEvent>>> completions = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPendingByKey = new ConcurrentHashMap<>();
+
+    // Drain side, drainer thread only
+    private long readSegment;
+    private int readPosition;
+    private MappedByteBuffer checkpoint;
+    private FileChannel deadLetters;
+    private volatile long drained;
+    private volatile long oldestPendingMillis;
+    private Thread drainer;
+    private volatile boolean running;
+
+    public BookingOutbox(
+            @Value("${kafka.outbox.enabled:true}") boolean enabled,
+            @Value("${kafka.outbox.directory:./data/outbox}") String directory,
+            @Value("${kafka.outbox.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${kafka.outbox.max-segments:64}") int maxSegments,
+            @Value("${kafka.outbox.batch-size:5000}") int batchSize,
+            @Value("${kafka.outbox.retry-backoff-ms:100}") long retryBackoffMs,
+            @Value("${kafka.outbox.max-retry-backoff-ms:30000}") long maxRetryBackoffMs,
+            @Value("${kafka.outbox.force-interval-ms:0}") long forceIntervalMs,
+            BookingMetrics metrics) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) Math.min(segmentSizeMb * 1024L * 1024L, Integer.MAX_VALUE);
+        this.maxSegments = Math.max(maxSegments, 2);
+        this.batchSize = Math.max(batchSize, 1);
+        this.retryBackoffMs = Math.max(retryBackoffMs, 1);
+        this.maxRetryBackoffMs = Math.max(maxRetryBackoffMs, this.retryBackoffMs);
+        this.forceIntervalMs = forceIntervalMs;
+        this.metrics = metrics;
+
+        if (enabled) {
+            recover();
+            metrics.bindOutbox(this::backlog, this::oldestPendingAgeMillis);
+            log.info("📮 Producer outbox: {} ({} events pending)", this.directory.toAbsolutePath(), backlog());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Producers register the topic they own; the drainer sends its records
+     * through that producer.
+     */
+    public void registerSender(String topic, Sender sender) {
+        senders.put(topic, sender);
+    }
+
+    /**
+     * Appends the event - it is sent to the topic later, after every event
+     * appended before it.
+     *
+     * @throws IllegalStateException if the outbox is full (max-segments)
+     */
+    public void append(String topic, String key, BookingEvent event) {
+        append(topic, key, event, null);
+    }
+
+    /**
+     * Like {@link #append}, for callers that need the outcome.
+     *
+     * @return completes with the send result once Kafka has acknowledged the
+     *         event, exceptionally if it was dead-lettered or the outbox
+     *         stopped first
+     */
+    public CompletableFuture<SendResult<String, BookingEvent>> appendAndTrack(String topic, String key, BookingEvent event) {
+        CompletableFuture<SendResult<String, BookingEvent>> completion = new CompletableFuture<>();
+        append(topic, key, event, completion);
+        return completion;
+    }
+
+    private void append(String topic, String key, BookingEvent event,
+                        CompletableFuture<SendResult<String, BookingEvent>> completion) {
+        byte[] record = encode(topic, key, event, System.currentTimeMillis());
+        if (record.length + Integer.BYTES > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Event too large for an outbox segment: " + record.length + " bytes");
+        }
+        synchronized (this) {
+            if (writeBuffer.remaining() < record.length + Integer.BYTES) {
+                roll();
+            }
+            writeBuffer.put(record);
+            long number = published + 1;
+            // Registered before the record is published, so the drainer always finds them
+            if (completion != null) {
+                completions.put(number, completion);
+            }
+            if (key != null) {
+                lastPendingByKey.put(key, number);
+            }
+            published = number;
+        }
+    }
+
+    /**
+     * @return completes once every event of the key appended so far has been
+     *         acknowledged or dead-lettered - immediately if none is pending
+     */
+    public CompletableFuture<Void> whenSent(String key) {
+        Long number = key != null ? lastPendingByKey.get(key) : null;
+        if (number == null || drained >= number) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<SendResult<String, BookingEvent>> created = new CompletableFuture<>();
+        CompletableFuture<SendResult<String, BookingEvent>> completion = completions.putIfAbsent(number, created);
+        if (completion == null) {
+            completion = created;
+            // The drainer may have passed the record before the future was registered
+            if (drained >= number) {
+                completions.remove(number, created);
+                created.complete(null);
+            }
+        }
+        return completion.handle((result, ex) -> null);
+    }
+
+    /**
+     * @return events appended but not yet acknowledged by Kafka
+     */
+    public long backlog() {
+        return published - drained;
+    }
+
+    /**
+     * @return how long the oldest pending event has waited, 0 if none
+     */
+    public long oldestPendingAgeMillis() {
+        long oldest = oldestPendingMillis;
+        return oldest == 0 || backlog() == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drainLoop, "booking-outbox-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segments.values().forEach(MappedByteBuffer::force);
+        closeDeadLetters();
+        IllegalStateException stopped = new IllegalStateException("Producer outbox stopped before the event was sent");
+        completions.values().forEach(completion -> completion.completeExceptionally(stopped));
+        completions.clear();
+        if (backlog() > 0) {
+            log.warn("📮 Producer outbox stopped with {} events pending - they are sent on the next start", backlog());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        long backoff = retryBackoffMs;
+        long lastForce = System.currentTimeMillis();
+        while (running) {
+            if (forceIntervalMs > 0 && System.currentTimeMillis() - lastForce >= forceIntervalMs) {
+                segments.values().forEach(MappedByteBuffer::force);
+                lastForce = System.currentTimeMillis();
+            }
+
+            List<Entry> batch = readBatch();
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            long first = drained + 1;
+            int sent = send(batch);
+            if (sent > 0) {
+                Entry last = batch.get(sent - 1);
+                commit(last.nextSegment, last.nextPosition, sent);
+                complete(batch, first, sent);
+            }
+            if (sent == batch.size()) {
+                backoff = retryBackoffMs;
+                continue;
+            }
+
+            // Resend from the first failure so no booking's events get out of order
+            int unsent = batch.size() - sent;
+            metrics.recordOutboxRetry(unsent);
+            log.warn("📮 Outbox: {} events not acknowledged by Kafka ({} pending), retrying in {} ms",
+                    unsent, backlog(), backoff);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+            backoff = Math.min(backoff * 2, maxRetryBackoffMs);
+        }
+    }
+
+    /**
+     * Sends the batch and waits for every ack. Events failing for good are
+     * dead-lettered and count as sent.
+     *
+     * @return length of the acknowledged (or dead-lettered) prefix
+     */
+    private int send(List<Entry> batch) {
+        List<CompletableFuture<SendResult<String, BookingEvent>>> futures = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            Sender sender = senders.get(entry.topic);
+            CompletableFuture<SendResult<String, BookingEvent>> future;
+            if (sender == null) {
+                future = CompletableFuture.failedFuture(new NoSenderException(entry.topic));
+            } else {
+                try {
+                    future = sender.send(entry.key, entry.event);
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+            }
+            futures.add(future);
+            if (future.isCompletedExceptionally() && !isNonRetriable(future.handle((result, ex) -> ex).join())) {
+                // Broker unreachable (e.g. metadata timeout) - don't wait on the rest of the batch too
+                break;
+            }
+        }
+
+        int sent = 0;
+        for (CompletableFuture<SendResult<String, BookingEvent>> future : futures) {
+            Entry entry = batch.get(sent);
+            try {
+                entry.result = future.join();
+            } catch (RuntimeException e) {
+                entry.failure = e;
+                if (!isNonRetriable(e) || !deadLetter(entry, e)) {
+                    // Wait for the rest anyway - nothing may still be in flight when resending
+                    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                            .exceptionally(ex -> null)
+                            .join();
+                    break;
+                }
+            }
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * Drainer only, after the commit - completes the futures of the sent prefix.
+     */
+    private void complete(List<Entry> batch, long first, int sent) {
+        for (int i = 0; i < sent; i++) {
+            Entry entry = batch.get(i);
+            long number = first + i;
+            if (entry.key != null) {
+                lastPendingByKey.remove(entry.key, number);
+            }
+            CompletableFuture<SendResult<String, BookingEvent>> completion = completions.remove(number);
+            if (completion == null) {
+                continue;
+            }
+            if (entry.result != null) {
+                completion.complete(entry.result);
+            } else {
+                completion.completeExceptionally(entry.failure);
+            }
+        }
+    }
+
+    /**
+     * @return true if sending the event again can never succeed
+     */
+    static boolean isNonRetriable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSenderException
+                    || cause instanceof RecordTooLargeException
+                    || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof SerializationException
+                    || cause instanceof InvalidTopicException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drainer only - appends the event to the dead-letter file.
+     *
+     * @return false if it could not be written (the event stays in the outbox)
+     */
+    private boolean deadLetter(Entry entry, Throwable failure) {
+        try {
+            if (deadLetters == null) {
+                deadLetters = FileChannel.open(directory.resolve(DEAD_LETTER_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer record = ByteBuffer.wrap(encode(entry.topic, entry.key, entry.event, entry.appendedAtMillis));
+            while (record.hasRemaining()) {
+                deadLetters.write(record);
+            }
+        } catch (IOException e) {
+            log.error("❌ Outbox: could not write dead-letter file {}: {}", DEAD_LETTER_FILE, e.getMessage());
+            return false;
+        }
+        metrics.recordOutboxDeadLettered();
+        log.error("☠️  Outbox: {} event of booking {} seq {} for {} can never be sent - moved to {}: {}",
+                entry.event.getEventType(), entry.event.getBookingId(), entry.event.getSequenceNumber(),
+                entry.topic, DEAD_LETTER_FILE, failure.getMessage());
+        return true;
+    }
+
+    private void closeDeadLetters() {
+        if (deadLetters == null) {
+            return;
+        }
+        try {
+            deadLetters.close();
+        } catch (IOException e) {
+            log.warn("⚠️  Could not close the outbox dead-letter file: {}", e.getMessage());
+        }
+        deadLetters = null;
+    }
+
+    /**
+     * Reads up to batch-size published records from the checkpoint on,
+     * without moving the checkpoint.
+     */
+    private List<Entry> readBatch() {
+        long available = published - drained;
+        if (available <= 0) {
+            return List.of();
+        }
+        int count = (int) Math.min(available, batchSize);
+        List<Entry> batch = new ArrayList<>(count);
+        long segment = readSegment;
+        ByteBuffer buffer = segments.get(segment).duplicate();
+        int position = readPosition;
+        while (batch.size() < count) {
+            int length = buffer.getInt(position);
+            if (length == ROLL || length == 0) {
+                // A zero length before the published count is reached can only be a corrupt tail
+                Long next = segments.higherKey(segment);
+                if (next == null) {
+                    break;
+                }
+                segment = next;
+                buffer = segments.get(segment).duplicate();
+                position = HEADER_SIZE;
+                continue;
+            }
+            Entry entry = decode(buffer, position, length);
+            position += RECORD_HEADER_SIZE + length;
+            entry.nextSegment = segment;
+            entry.nextPosition = position;
+            batch.add(entry);
+        }
+        if (!batch.isEmpty()) {
+            oldestPendingMillis = batch.get(0).appendedAtMillis;
+        }
+        return batch;
+    }
+
+    private void commit(long segment, int position, int records) {
+        readSegment = segment;
+        readPosition = position;
+        checkpoint.putLong(0, segment);
+        checkpoint.putLong(8, position);
+        checkpoint.putLong(16, checksum(segment, position));
+        drained = drained + records;
+
+        // Segments before the checkpoint are fully sent
+        for (Long number : List.copyOf(segments.headMap(segment).keySet())) {
+            segments.remove(number);
+            try {
+                Files.deleteIfExists(segmentPath(number));
+            } catch (IOException e) {
+                log.warn("⚠️  Could not delete drained outbox segment {}: {}", number, e.getMessage());
+            }
+        }
+    }
+
+    private void roll() {
+        if (segments.size() >= maxSegments) {
+            throw new IllegalStateException("Producer outbox is full (" + maxSegments + " segments, "
+                    + backlog() + " events pending)");
+        }
+        writeBuffer.putInt(writeBuffer.position(), ROLL);
+        openSegment(writeSegment + 1);
+    }
+
+    /**
+     * Appender only (or constructor) - maps a new segment and makes it current.
+     */
+    private void openSegment(long number) {
+        try (FileChannel channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.position(HEADER_SIZE);
+            segments.put(number, buffer);
+            writeSegment = number;
+            writeBuffer = buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open outbox segment " + number, e);
+        }
+    }
+
+    /**
+     * Maps the existing segments, resumes after the checkpoint and counts
+     * the events still to be sent.
+     */
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, 64);
+            }
+
+            List<Long> numbers = segmentNumbers();
+            long checkpointSegment = checkpoint.getLong(0);
+            long checkpointPosition = checkpoint.getLong(8);
+            boolean valid = checkpoint.getLong(16) == checksum(checkpointSegment, checkpointPosition)
+                    && checkpointPosition >= HEADER_SIZE && checkpointPosition < segmentSize;
+            if (!valid || !numbers.contains(checkpointSegment)) {
+                // No usable checkpoint - send everything still on disk
+                checkpointSegment = numbers.isEmpty() ? 1 : numbers.get(0);
+                checkpointPosition = HEADER_SIZE;
+            }
+
+            for (long number : numbers) {
+                if (number < checkpointSegment) {
+                    Files.deleteIfExists(segmentPath(number));
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(segmentPath(number),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    if (channel.size() != segmentSize) {
+                        log.warn("⚠️  Outbox segment {} has a different size than segment-size-mb, skipped", number);
+                        continue;
+                    }
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                        log.warn("⚠️  Outbox segment {} has an unknown format, skipped", number);
+                        continue;
+                    }
+                    segments.put(number, buffer);
+                }
+            }
+
+            if (segments.isEmpty()) {
+                openSegment(numbers.isEmpty() ? checkpointSegment : numbers.get(numbers.size() - 1) + 1);
+            }
+            readSegment = segments.firstKey();
+            readPosition = readSegment == checkpointSegment ? (int) checkpointPosition : HEADER_SIZE;
+            published = countPending();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the producer outbox in " + directory, e);
+        }
+    }
+
+    /**
+     * Counts the valid records from the checkpoint on and leaves the last
+     * segment's write position after the last one.
+     */
+    private long countPending() {
+        long pending = 0;
+        Long segment = readSegment;
+        int position = readPosition;
+        while (segment != null) {
+            MappedByteBuffer buffer = segments.get(segment);
+            Long next = segments.higherKey(segment);
+            while (true) {
+                int length = position + RECORD_HEADER_SIZE <= segmentSize ? buffer.getInt(position) : 0;
+                if (length == ROLL || length == 0 || !isValid(buffer, position, length)) {
+                    break;
+                }
+                pending++;
+                String key = readKey(buffer, position);
+                if (key != null) {
+                    lastPendingByKey.put(key, pending);
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (next == null) {
+                // Continue appending after the last valid record; clear a torn tail
+                if (position + Integer.BYTES <= segmentSize) {
+                    buffer.putInt(position, 0);
+                }
+                buffer.position(position);
+                writeSegment = segment;
+                writeBuffer = buffer;
+            } else if (buffer.getInt(position) != ROLL) {
+                log.warn("⚠️  Outbox segment {} ends early at {} - continuing with segment {}", segment, position, next);
+            }
+            segment = next;
+            position = HEADER_SIZE;
+        }
+        return pending;
+    }
+
+    private boolean isValid(ByteBuffer buffer, int position, int length) {
+        if (length < 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES);
+    }
+
+    private static byte[] encode(String topic, String key, BookingEvent event, long appendedAtMillis) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] value = BookingEventBinaryCodec.encode(event);
+        int payloadSize = Long.BYTES + Short.BYTES + topicBytes.length
+                + Short.BYTES + (keyBytes != null ? keyBytes.length : 0)
+                + Integer.BYTES + value.length;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadSize);
+        record.putInt(payloadSize);
+        record.putInt(0); // crc, below
+        record.putLong(appendedAtMillis);
+        record.putShort((short) topicBytes.length).put(topicBytes);
+        if (keyBytes != null) {
+            record.putShort((short) keyBytes.length).put(keyBytes);
+        } else {
+            record.putShort((short) -1);
+        }
+        record.putInt(value.length).put(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, payloadSize);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static Entry decode(ByteBuffer buffer, int position, int length) {
+        ByteBuffer in = buffer.duplicate();
+        in.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        long appendedAt = in.getLong();
+        String topic = readString(in, in.getShort());
+        short keyLength = in.getShort();
+        String key = keyLength >= 0 ? readString(in, keyLength) : null;
+        byte[] value = new byte[in.getInt()];
+        in.get(value);
+        return new Entry(topic, key, BookingEventBinaryCodec.decode(value), appendedAt);
+    }
+
+    private static String readKey(ByteBuffer buffer, int position) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(position + RECORD_HEADER_SIZE + Long.BYTES);
+        in.position(in.position() + in.getShort());
+        short keyLength = in.getShort();
+        return keyLength >= 0 ? readString(in, keyLength) : null;
+    }
+
+    private static String readString(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(long segment, long position) {
+        return (segment * 31 + position) ^ MAGIC;
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * The topic's producer is gone (e.g. its airline shard was removed).
+     */
+    private static final class NoSenderException extends IllegalStateException {
+
+        private NoSenderException(String topic) {
+            super("No producer for topic " + topic);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String topic;
+        private final String key;
+        private final BookingEvent event;
+        private final long appendedAtMillis;
+        // Position after this record
+        private long nextSegment;
+        private int nextPosition;
+        // Outcome of the last send
+        private SendResult<String, BookingEvent> result;
+        private Throwable failure;
+
+        private Entry(String topic, String key, BookingEvent event, long appendedAtMillis) {
+            this.topic = topic;
+            this.key = key;
+            this.event = event;
+            this.appendedAtMillis = appendedAtMillis;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.kafka.producer;
 
+import com.example.kafka.journal.EventJournal;
 import com.example.kafka.model.BookingEvent;
+import com.example.kafka.outbox.BookingOutbox;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -31,34 +33,57 @@ public class BookingProducerProblem {
 
     private final KafkaTemplate<String, BookingEvent> kafkaTemplate;
     private final String topic;
+    private final EventJournal journal;
+    private final BookingOutbox outbox;
 
     public BookingProducerProblem(
             KafkaTemplate<String, BookingEvent> kafkaTemplate,
-            @Value("${kafka.topic.booking.problem}") String topic) {
+            @Value("${kafka.topic.booking.problem}") String topic,
+            EventJournal journal,
+            BookingOutbox outbox) {
         this.kafkaTemplate = kafkaTemplate;
         this.topic = topic;
+        this.journal = journal;
+        this.outbox = outbox;
+        outbox.registerSender(topic, (key, event) -> send(event));
     }
 
     /**
      * PROBLEM: Sending without partition key
      * The message will be distributed randomly across partitions
+     * (through the outbox if enabled - see {@link BookingProducerSolved})
      */
     public void sendBookingEvent(BookingEvent event) {
-        log.warn("⚠️  PROBLEM PRODUCER - Sending WITHOUT partition key: {}", event.getEventType());
-        
+        log.debug("⚠️  PROBLEM PRODUCER - Sending WITHOUT partition key: {}", event.getEventType());
+
+        if (outbox.isEnabled()) {
+            outbox.append(topic, null, event);
+            return;
+        }
+        send(event).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.error("❌ Failed to send event: {}", event.getEventType(), ex);
+            }
+        });
+    }
+
+    private CompletableFuture<SendResult<String, BookingEvent>> send(BookingEvent event) {
         // NO PARTITION KEY - This is the problem!
         CompletableFuture<SendResult<String, BookingEvent>> future = 
             kafkaTemplate.send(topic, event);
 
         future.whenComplete((result, ex) -> {
             if (ex == null) {
-                log.info("📤 Sent (NO KEY): {} to partition {} offset {}",
+                journal.recordSend(EventJournal.Source.PROBLEM_PRODUCER, event,
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset(), true);
+                log.debug("📤 Sent (NO KEY): {} to partition {} offset {}",
                         event.getEventType(),
                         result.getRecordMetadata().partition(),
                         result.getRecordMetadata().offset());
             } else {
-                log.error("❌ Failed to send event: {}", event.getEventType(), ex);
+                journal.recordSend(EventJournal.Source.PROBLEM_PRODUCER, event, -1, -1L, false);
             }
         });
+        return future;
     }
 }
@@ -1,8 +1,11 @@
 package com.example.kafka.producer;
 
+import com.example.kafka.journal.EventJournal;
 import com.example.kafka.model.BookingEvent;
+import com.example.kafka.outbox.BookingOutbox;
+import com.example.kafka.routing.AirlineTopicRouter;
+import com.example.kafka.routing.BookingPartitioner;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
@@ -24,45 +27,102 @@ import java.util.concurrent.CompletableFuture;
  * 
  * RESULT: All events for booking "BK001" go to the same partition,
  *         ensuring they are processed in the correct sequence.
+ *
+ * AIRLINE SHARDS: carriers with a shard of their own (see {@link AirlineTopicRouter})
+ * go to their shard topic instead, still keyed by bookingId.
+ *
+ * PARTITION EXPANSION: the partition is picked by {@link BookingPartitioner} -
+ * the same hash, except that bookings in progress keep their partition while
+ * partitions are being added.
  */
 @Slf4j
 @Service
 public class BookingProducerSolved {
 
     private final KafkaTemplate<String, BookingEvent> kafkaTemplate;
-    private final String topic;
+    private final AirlineTopicRouter router;
+    private final BookingPartitioner partitioner;
+    private final EventJournal journal;
+    private final BookingOutbox outbox;
 
     public BookingProducerSolved(
             KafkaTemplate<String, BookingEvent> kafkaTemplate,
-            @Value("${kafka.topic.booking.solved}") String topic) {
+            AirlineTopicRouter router,
+            BookingPartitioner partitioner,
+            EventJournal journal,
+            BookingOutbox outbox) {
         this.kafkaTemplate = kafkaTemplate;
-        this.topic = topic;
+        this.router = router;
+        this.partitioner = partitioner;
+        this.journal = journal;
+        this.outbox = outbox;
+        for (String topic : router.topics()) {
+            outbox.registerSender(topic, (key, event) -> send(topic, key, event));
+        }
     }
 
     /**
      * SOLUTION: Sending with partition key (bookingId)
      * All messages with the same bookingId will go to the same partition
+     *
+     * With the outbox enabled the event is only written to the local outbox
+     * here - it reaches Kafka shortly after, in order, even if the broker is
+     * down right now.
      */
     public void sendBookingEvent(BookingEvent event) {
-        log.info("✅ SOLUTION PRODUCER - Sending WITH partition key: {} [BookingID: {}]", 
+        log.debug("✅ SOLUTION PRODUCER - Sending WITH partition key: {} [BookingID: {}]", 
                 event.getEventType(), event.getBookingId());
         
         // PARTITION KEY = bookingId - This ensures ordering!
         String partitionKey = event.getBookingId();
-        
+        String topic = router.topicFor(event);
+
+        if (outbox.isEnabled()) {
+            outbox.append(topic, partitionKey, event);
+            return;
+        }
+        send(topic, partitionKey, event).whenComplete((result, ex) -> {
+            if (ex != null) {
+                log.error("❌ Failed to send event: {}", event.getEventType(), ex);
+            }
+        });
+    }
+
+    /**
+     * Sends and journals the outcome - used directly and by the outbox
+     * (which retries failures itself)
+     */
+    private CompletableFuture<SendResult<String, BookingEvent>> send(String topic, String partitionKey, BookingEvent event) {
         CompletableFuture<SendResult<String, BookingEvent>> future = 
-            kafkaTemplate.send(topic, partitionKey, event);
+            kafkaTemplate.send(partitioner.record(topic, event));
 
         future.whenComplete((result, ex) -> {
             if (ex == null) {
-                log.info("📤 Sent (KEY={}): {} to partition {} offset {}",
+                journal.recordSend(EventJournal.Source.SOLVED_PRODUCER, event,
+                        result.getRecordMetadata().partition(), result.getRecordMetadata().offset(), true);
+                log.debug("📤 Sent (KEY={}): {} to partition {} offset {}",
                         partitionKey,
                         event.getEventType(),
                         result.getRecordMetadata().partition(),
                         result.getRecordMetadata().offset());
             } else {
-                log.error("❌ Failed to send event: {}", event.getEventType(), ex);
+                journal.recordSend(EventJournal.Source.SOLVED_PRODUCER, event, -1, -1L, false);
             }
         });
+        return future;
+    }
+
+    /**
+     * Same keyed send without per-event logging, for high-volume callers.
+     * The caller owns completion handling. With the outbox enabled the event
+     * is appended behind the booking's pending events and the future
+     * completes once Kafka has acknowledged it.
+     */
+    public CompletableFuture<SendResult<String, BookingEvent>> sendBookingEventAsync(BookingEvent event) {
+        String topic = router.topicFor(event);
+        if (outbox.isEnabled()) {
+            return outbox.appendAndTrack(topic, event.getBookingId(), event);
+        }
+        return kafkaTemplate.send(partitioner.record(topic, event));
     }
 }
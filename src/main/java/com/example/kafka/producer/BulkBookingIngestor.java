@@ -0,0 +1,137 @@
+package com.example.kafka.producer;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.BulkIngestionSummary;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BULK INGESTION
+ *
+ * Streams BookingEvents from a request body (NDJSON or a JSON array) into
+ * {@link BookingProducerSolved} without buffering the whole body.
+ *
+ * - Events are parsed one at a time and sent without waiting for each ack
+ * - A semaphore bounds the sends in flight; when the window is full the
+ *   reader waits for the broker to catch up (backpressure)
+ * - Every event keeps bookingId as its key, so per-booking order is the
+ *   order of the input
+ * - Events the consumer could never apply (no bookingId, unknown eventType,
+ *   missing or non-positive sequenceNumber) are rejected and not sent
+ */
+@Slf4j
+@Service
+public class BulkBookingIngestor {
+
+    private final BookingProducerSolved solvedProducer;
+    private final ObjectReader eventReader;
+    private final int maxInFlight;
+    private final long completionTimeoutMs;
+
+    public BulkBookingIngestor(
+            BookingProducerSolved solvedProducer,
+            ObjectMapper objectMapper,
+            @Value("${kafka.producer.bulk.max-in-flight:10000}") int maxInFlight,
+            @Value("${kafka.producer.bulk.completion-timeout-ms:60000}") long completionTimeoutMs) {
+        this.solvedProducer = solvedProducer;
+        this.eventReader = objectMapper.readerFor(BookingEvent.class);
+        this.maxInFlight = maxInFlight;
+        this.completionTimeoutMs = completionTimeoutMs;
+    }
+
+    public BulkIngestionSummary ingest(InputStream body) {
+        long started = System.nanoTime();
+        Semaphore window = new Semaphore(maxInFlight);
+        LongAdder accepted = new LongAdder();
+        Map<Integer, LongAdder> partitionCounts = new ConcurrentHashMap<>();
+        long received = 0;
+        long rejected = 0;
+        String error = null;
+
+        // Handles both NDJSON and a top-level JSON array
+        try (MappingIterator<BookingEvent> events = eventReader.readValues(body)) {
+            while (events.hasNextValue()) {
+                BookingEvent event = events.nextValue();
+                received++;
+                if (!isValid(event)) {
+                    rejected++;
+                    continue;
+                }
+
+                window.acquire();
+                try {
+                    solvedProducer.sendBookingEventAsync(event).whenComplete((result, ex) -> {
+                        if (ex == null) {
+                            accepted.increment();
+                            partitionCounts.computeIfAbsent(result.getRecordMetadata().partition(),
+                                    p -> new LongAdder()).increment();
+                        }
+                        window.release();
+                    });
+                } catch (RuntimeException e) {
+                    // Send rejected before reaching the producer buffer - counted as failed
+                    window.release();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            error = "Stopped after " + received + " events: " + e.getMessage();
+            log.warn("⚠️  Bulk ingestion stopped early: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted after " + received + " events";
+        }
+
+        // Wait for the remaining sends - all permits back means nothing in flight
+        try {
+            if (!window.tryAcquire(maxInFlight, completionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                error = "Timed out waiting for " + (maxInFlight - window.availablePermits()) + " sends";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted while waiting for sends to complete";
+        }
+
+        long sent = received - rejected;
+        long acceptedCount = accepted.sum();
+        long durationMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        Map<Integer, Long> partitions = new TreeMap<>();
+        partitionCounts.forEach((partition, count) -> partitions.put(partition, count.sum()));
+
+        BulkIngestionSummary summary = BulkIngestionSummary.builder()
+                .received(received)
+                .accepted(acceptedCount)
+                .rejected(rejected)
+                // Anything sent but not acknowledged counts as failed
+                .failed(sent - acceptedCount)
+                .partitionCounts(partitions)
+                .durationMs(durationMs)
+                .eventsPerSecond(acceptedCount * 1000 / durationMs)
+                .error(error)
+                .build();
+
+        log.info("📦 Bulk ingestion: {} received, {} accepted, {} rejected, {} failed in {} ms ({} events/sec)",
+                summary.getReceived(), summary.getAccepted(), summary.getRejected(), summary.getFailed(),
+                summary.getDurationMs(), summary.getEventsPerSecond());
+        return summary;
+    }
+
+    private static boolean isValid(BookingEvent event) {
+        return event != null && event.getBookingId() != null
+                && BookingEventType.fromName(event.getEventType()) != null
+                && event.getSequenceNumber() != null && event.getSequenceNumber() > 0;
+    }
+}
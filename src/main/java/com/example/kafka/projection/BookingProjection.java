@@ -0,0 +1,185 @@
+package com.example.kafka.projection;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.BookingView;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * BOOKING QUERY PROJECTION (read side)
+ *
+ * Maintained by the solved consumer after every accepted event and read by
+ * the query API - the consumer's own state store stays private.
+ *
+ * - Primary map bookingId → immutable {@link BookingView}
+ * - Secondary indexes flightNumber → bookingIds and customerId → bookingIds
+ *
+ * Reads never lock and never block the consumer: each booking is read as
+ * one immutable snapshot (never half-updated), and listings iterate
+ * concurrent maps, so they reflect every booking as of some moment
+ * during the read.
+ *
+ * Bounded by maxEntries - beyond it the earliest projected booking is dropped.
+ *
+ * Each booking remembers the partition its events were consumed from. When
+ * a rebalance takes a partition away for good, the solved consumer drops its
+ * bookings ({@link #dropPartitions}) - the new owner projects them from then
+ * on, and a view kept here would go stale.
+ */
+@Component
+public class BookingProjection {
+
+    private final int maxEntries;
+    private final Map<String, BookingView> bookings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byFlight = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byCustomer = new ConcurrentHashMap<>();
+    // Bookings in the order they were first projected
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    // Partition each booking was last consumed from
+    private final Map<String, TopicPartition> partitions = new ConcurrentHashMap<>();
+
+    public BookingProjection(@Value("${kafka.consumer.projection.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Applies an accepted event. Called on the consumer thread; events of one
+     * booking are applied one at a time (they share a partition / key chain).
+     *
+     * @param partition where the event was consumed from, or null to keep the
+     *                  booking's current one (retry topics)
+     */
+    public void apply(BookingEvent event, BookingEventType state, TopicPartition partition) {
+        String bookingId = event.getBookingId();
+        BookingView previous = bookings.get(bookingId);
+        BookingView.BookingViewBuilder view = previous != null
+                ? previous.toBuilder()
+                : BookingView.builder().bookingId(bookingId);
+
+        if (event.getCustomerId() != null) {
+            view.customerId(event.getCustomerId());
+        }
+        if (event.getFlightNumber() != null) {
+            view.flightNumber(event.getFlightNumber());
+        }
+        if (event.getSeatNumber() != null) {
+            view.seatNumber(event.getSeatNumber());
+        }
+        if (event.getAmount() != null) {
+            view.amount(event.getAmount());
+        }
+        if (event.getSequenceNumber() != null) {
+            view.lastSequence(event.getSequenceNumber());
+        }
+        if (event.getTimestamp() != null) {
+            view.lastEventAt(event.getTimestamp());
+        }
+        BookingView updated = view.state(state).build();
+
+        bookings.put(bookingId, updated);
+        if (partition != null) {
+            partitions.put(bookingId, partition);
+        }
+        if (previous == null) {
+            insertionOrder.add(bookingId);
+        }
+        reindex(byFlight, bookingId, previous != null ? previous.getFlightNumber() : null, updated.getFlightNumber());
+        reindex(byCustomer, bookingId, previous != null ? previous.getCustomerId() : null, updated.getCustomerId());
+
+        while (bookings.size() > maxEntries) {
+            String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            remove(eldest);
+        }
+    }
+
+    /**
+     * Drops the bookings of partitions this instance no longer consumes.
+     */
+    public void dropPartitions(Collection<TopicPartition> lost) {
+        if (lost.isEmpty()) {
+            return;
+        }
+        Set<String> dropped = new HashSet<>();
+        partitions.forEach((bookingId, partition) -> {
+            if (lost.contains(partition)) {
+                dropped.add(bookingId);
+            }
+        });
+        dropped.forEach(this::remove);
+        insertionOrder.removeAll(dropped);
+    }
+
+    public BookingView get(String bookingId) {
+        return bookings.get(bookingId);
+    }
+
+    public List<BookingView> byFlight(String flightNumber) {
+        return lookup(byFlight, flightNumber);
+    }
+
+    public List<BookingView> byCustomer(String customerId) {
+        return lookup(byCustomer, customerId);
+    }
+
+    public int size() {
+        return bookings.size();
+    }
+
+    private void remove(String bookingId) {
+        BookingView removed = bookings.remove(bookingId);
+        partitions.remove(bookingId);
+        if (removed != null) {
+            reindex(byFlight, bookingId, removed.getFlightNumber(), null);
+            reindex(byCustomer, bookingId, removed.getCustomerId(), null);
+        }
+    }
+
+    private static void reindex(Map<String, Set<String>> index, String bookingId, String oldKey, String newKey) {
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            index.computeIfPresent(oldKey, (key, ids) -> {
+                ids.remove(bookingId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (newKey != null && !newKey.equals(oldKey)) {
+            // Add inside compute, so a concurrent removal can't drop the set we add to
+            index.compute(newKey, (key, ids) -> {
+                Set<String> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                target.add(bookingId);
+                return target;
+            });
+        }
+    }
+
+    private List<BookingView> lookup(Map<String, Set<String>> index, String key) {
+        Set<String> ids = index.get(key);
+        if (ids == null) {
+            return List.of();
+        }
+        List<BookingView> views = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            BookingView view = bookings.get(id);
+            if (view != null) {
+                views.add(view);
+            }
+        }
+        views.sort(Comparator.comparing(BookingView::getBookingId));
+        return views;
+    }
+}
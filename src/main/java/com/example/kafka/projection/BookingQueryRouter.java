@@ -0,0 +1,230 @@
+package com.example.kafka.projection;
+
+import com.example.kafka.consumer.BookingConsumerSolved;
+import com.example.kafka.model.BookingView;
+import com.example.kafka.routing.BookingPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QUERY ROUTING ACROSS INSTANCES
+ *
+ * Each instance only projects the bookings of the solved-topic partitions
+ * it consumes. With kafka.consumer.projection.routing.enabled=true:
+ *
+ * - A booking query is answered locally if this instance owns the booking's
+ *   partition (as picked by the producer's {@link BookingPartitioner}),
+ *   otherwise it is forwarded to the owning group member
+ * - Flight / customer queries span partitions, so they are answered locally
+ *   and by every other member, and the results merged
+ *
+ * Owners come from the consumer group description (member host + this
+ * service's HTTP port, the same on every instance), refreshed at most every
+ * refresh-ms. Forwarded requests carry local=true, so they are never
+ * forwarded again. If an owner cannot be reached the local answer is used.
+ *
+ * NOTE: Ownership is tracked for the default solved topic only. Bookings of
+ * carriers with an airline shard (see AirlineTopicRouter) cannot be located
+ * from their id alone - a booking query is routed as if the booking were on
+ * the default topic; flight and customer queries still reach every member.
+ */
+@Slf4j
+@Component
+public class BookingQueryRouter implements DisposableBean {
+
+    private final boolean enabled;
+    private final int port;
+    private final long refreshMillis;
+    private final String topic;
+    private final KafkaAdmin kafkaAdmin;
+    private final BookingPartitioner partitioner;
+    private final RestClient restClient = RestClient.create();
+
+    // Solved-topic partitions assigned to this instance's consumers
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+
+    private AdminClient adminClient;
+    private volatile Map<Integer, String> partitionOwners = Map.of();
+    private volatile long ownersRefreshedAt;
+
+    public BookingQueryRouter(
+            @Value("${kafka.consumer.projection.routing.enabled:false}") boolean enabled,
+            @Value("${kafka.consumer.projection.routing.port:${server.port:8080}}") int port,
+            @Value("${kafka.consumer.projection.routing.refresh-ms:5000}") long refreshMillis,
+            @Value("${kafka.topic.booking.solved}") String topic,
+            KafkaAdmin kafkaAdmin,
+            BookingPartitioner partitioner) {
+        this.enabled = enabled;
+        this.port = port;
+        this.refreshMillis = refreshMillis;
+        this.topic = topic;
+        this.kafkaAdmin = kafkaAdmin;
+        this.partitioner = partitioner;
+    }
+
+    public void partitionsAssigned(Collection<TopicPartition> partitions) {
+        partitions.stream()
+                .filter(partition -> partition.topic().equals(topic))
+                .forEach(partition -> ownedPartitions.add(partition.partition()));
+    }
+
+    public void partitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.stream()
+                .filter(partition -> partition.topic().equals(topic))
+                .forEach(partition -> ownedPartitions.remove(partition.partition()));
+    }
+
+    /**
+     * @return the owning instance's answer, or a local result if this instance
+     *         owns the booking (or routing is off / the owner is unknown or unreachable)
+     */
+    public RoutedResult<BookingView> fetchBooking(String bookingId) {
+        if (!enabled) {
+            return RoutedResult.local();
+        }
+        int partition = partitionFor(bookingId);
+        if (ownedPartitions.contains(partition)) {
+            return RoutedResult.local();
+        }
+        String owner = owners().get(partition);
+        if (owner == null) {
+            return RoutedResult.local();
+        }
+        try {
+            BookingView view = restClient.get()
+                    .uri(owner + "/api/bookings/{bookingId}?local=true", bookingId)
+                    .retrieve()
+                    .onStatus(status -> status.value() == 404, (request, response) -> { })
+                    .body(BookingView.class);
+            return RoutedResult.remote(view);
+        } catch (RestClientException e) {
+            log.warn("⚠️  Booking query for {} could not be routed to {}: {}", bookingId, owner, e.getMessage());
+            return RoutedResult.local();
+        }
+    }
+
+    /**
+     * @return views from every other group member for the given index query
+     *         (e.g. "/api/flights/UA200/bookings"); empty if routing is off
+     */
+    public List<BookingView> fetchFromPeers(String path) {
+        if (!enabled) {
+            return List.of();
+        }
+        Map<Integer, String> owners = owners();
+        Set<String> peers = new LinkedHashSet<>();
+        owners.forEach((partition, url) -> {
+            if (!ownedPartitions.contains(partition)) {
+                peers.add(url);
+            }
+        });
+        // A member that owns one of our partitions would be us (during a rebalance)
+        ownedPartitions.forEach(partition -> peers.remove(owners.get(partition)));
+
+        List<BookingView> views = new ArrayList<>();
+        for (String peer : peers) {
+            try {
+                List<BookingView> remote = restClient.get()
+                        .uri(peer + path + "?local=true")
+                        .retrieve()
+                        .body(new ParameterizedTypeReference<List<BookingView>>() { });
+                if (remote != null) {
+                    views.addAll(remote);
+                }
+            } catch (RestClientException e) {
+                log.warn("⚠️  Query {} could not be routed to {}: {}", path, peer, e.getMessage());
+            }
+        }
+        return views;
+    }
+
+    int partitionFor(String bookingId) {
+        // Where the solved producer sends the booking's events
+        return partitioner.partitionOf(topic, bookingId);
+    }
+
+    private Map<Integer, String> owners() {
+        long now = System.currentTimeMillis();
+        if (now - ownersRefreshedAt < refreshMillis) {
+            return partitionOwners;
+        }
+        synchronized (this) {
+            if (now - ownersRefreshedAt >= refreshMillis) {
+                partitionOwners = describeOwners();
+                ownersRefreshedAt = System.currentTimeMillis();
+            }
+            return partitionOwners;
+        }
+    }
+
+    private Map<Integer, String> describeOwners() {
+        try {
+            if (adminClient == null) {
+                adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+            }
+            ConsumerGroupDescription group = adminClient
+                    .describeConsumerGroups(List.of(BookingConsumerSolved.GROUP_ID))
+                    .describedGroups().get(BookingConsumerSolved.GROUP_ID)
+                    .get(5, TimeUnit.SECONDS);
+
+            Map<Integer, String> owners = new HashMap<>();
+            for (MemberDescription member : group.members()) {
+                String host = member.host().startsWith("/") ? member.host().substring(1) : member.host();
+                for (TopicPartition partition : member.assignment().topicPartitions()) {
+                    if (partition.topic().equals(topic)) {
+                        owners.put(partition.partition(), "http://" + host + ":" + port);
+                    }
+                }
+            }
+            return owners;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("⚠️  Could not describe consumer group {}: {}", BookingConsumerSolved.GROUP_ID, e.getMessage());
+            return partitionOwners;
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+
+    /**
+     * Either "answer locally" or the owning instance's answer (value may be
+     * null if the owner does not know the booking).
+     */
+    public record RoutedResult<T>(boolean remote, T value) {
+
+        static <T> RoutedResult<T> local() {
+            return new RoutedResult<>(false, null);
+        }
+
+        static <T> RoutedResult<T> remote(T value) {
+            return new RoutedResult<>(true, value);
+        }
+    }
+}
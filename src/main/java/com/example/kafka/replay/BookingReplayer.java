@@ -0,0 +1,547 @@
+package com.example.kafka.replay;
+
+import com.example.kafka.consumer.BookingConsumerSolved;
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.ReplayReport;
+import com.example.kafka.model.ReplayRequest;
+import com.example.kafka.serialization.BookingEventDeserializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * REPLAY / BACKFILL OF THE SOLVED TOPIC
+ *
+ * Rewinds partitions to an offset or a timestamp, catches them up to where
+ * live processing stands and hands back to the live listener:
+ *
+ * 1. The running solved listener (record or batch mode) is paused. It keeps
+ *    its partitions - no rebalance - and commits what it has acknowledged.
+ *    In parallel mode the records already handed to the workers are waited
+ *    for (up to the revoke drain timeout) and their acknowledgments must be
+ *    committed before the replay is planned; otherwise it fails.
+ * 2. The replay ends, per partition, at the group's committed offset: exactly
+ *    where the live listener resumes.
+ * 3. Up to kafka.consumer.replay.threads workers, each with its own group-less
+ *    consumer tuned for large fetches and polls, read the partitions in
+ *    parallel and apply them through {@link BookingConsumerSolved#replay} -
+ *    state, seats and projection only, no per-event side effects or logging.
+ * 4. The replayed state is committed to the local changelog, expiry timers
+ *    are re-armed from it, and the live listener is resumed - also when the
+ *    replay is stopped or fails.
+ *
+ * Only partitions this instance consumes can be replayed, since that is
+ * where their state lives; with no solved listener running
+ * (listener-mode=none) any partition can, up to its end.
+ *
+ * Airline shard topics (see AirlineTopicRouter) have listeners of their
+ * own and are not replayed; they keep consuming during a replay.
+ *
+ * Progress and ETA are logged every progress-interval-ms and served by
+ * GET /api/replay.
+ */
+@Slf4j
+@Service
+public class BookingReplayer implements DisposableBean {
+
+    private static final String[] LIVE_LISTENER_IDS = {"booking-solved-listener", "booking-solved-batch-listener"};
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+    private static final Comparator<TopicPartition> BY_PARTITION = Comparator.comparingInt(TopicPartition::partition);
+
+    private final BookingConsumerSolved solvedConsumer;
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaProperties kafkaProperties;
+    private final BookingMetrics metrics;
+    private final String topic;
+    private final int threads;
+    private final int maxPollRecords;
+    private final int fetchMinBytes;
+    private final int fetchMaxWaitMs;
+    private final int maxPartitionFetchBytes;
+    private final long progressIntervalMs;
+    private final long pauseTimeoutMs;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Run current;
+    private volatile ReplayReport lastReport;
+
+    public BookingReplayer(
+            BookingConsumerSolved solvedConsumer,
+            KafkaListenerEndpointRegistry registry,
+            KafkaProperties kafkaProperties,
+            BookingMetrics metrics,
+            @Value("${kafka.topic.booking.solved}") String topic,
+            @Value("${kafka.consumer.replay.threads:4}") int threads,
+            @Value("${kafka.consumer.replay.max-poll-records:5000}") int maxPollRecords,
+            @Value("${kafka.consumer.replay.fetch-min-bytes:1048576}") int fetchMinBytes,
+            @Value("${kafka.consumer.replay.fetch-max-wait-ms:100}") int fetchMaxWaitMs,
+            @Value("${kafka.consumer.replay.max-partition-fetch-bytes:16777216}") int maxPartitionFetchBytes,
+            @Value("${kafka.consumer.replay.progress-interval-ms:5000}") long progressIntervalMs,
+            @Value("${kafka.consumer.replay.pause-timeout-ms:30000}") long pauseTimeoutMs) {
+        this.solvedConsumer = solvedConsumer;
+        this.registry = registry;
+        this.kafkaProperties = kafkaProperties;
+        this.metrics = metrics;
+        this.topic = topic;
+        this.threads = Math.max(1, threads);
+        this.maxPollRecords = maxPollRecords;
+        this.fetchMinBytes = fetchMinBytes;
+        this.fetchMaxWaitMs = fetchMaxWaitMs;
+        this.maxPartitionFetchBytes = maxPartitionFetchBytes;
+        this.progressIntervalMs = progressIntervalMs;
+        this.pauseTimeoutMs = pauseTimeoutMs;
+    }
+
+    /**
+     * Starts a replay in the background.
+     *
+     * @return the replay's initial report, or null if a replay is already in progress
+     * @throws IllegalArgumentException if the request names an invalid start
+     *                                  or a partition this instance does not consume
+     */
+    public synchronized ReplayReport start(ReplayRequest request) {
+        if (current != null) {
+            return null;
+        }
+        if (request.getFromOffset() != null && request.getFromTimestamp() != null) {
+            throw new IllegalArgumentException("Give either fromOffset or fromTimestamp, not both");
+        }
+        if (request.getFromOffset() != null && request.getFromOffset() < 0) {
+            throw new IllegalArgumentException("fromOffset must not be negative");
+        }
+
+        MessageListenerContainer live = liveContainer();
+        Set<TopicPartition> partitions = partitionsToReplay(request, live);
+        Run run = new Run(request, live, partitions);
+        current = run;
+        runner.execute(() -> execute(run));
+        return run.report(ReplayReport.Status.RUNNING);
+    }
+
+    /**
+     * @return the running replay's progress, else the last replay's result (null if none)
+     */
+    public ReplayReport status() {
+        Run run = current;
+        return run != null ? run.report(ReplayReport.Status.RUNNING) : lastReport;
+    }
+
+    /**
+     * Stops the running replay - live processing resumes with the state
+     * replayed so far.
+     *
+     * @return false if no replay is in progress
+     */
+    public boolean stop() {
+        Run run = current;
+        if (run == null) {
+            return false;
+        }
+        run.stopRequested = true;
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        runner.shutdownNow();
+    }
+
+    private MessageListenerContainer liveContainer() {
+        for (String id : LIVE_LISTENER_IDS) {
+            MessageListenerContainer container = registry.getListenerContainer(id);
+            if (container != null && container.isRunning()) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    private Set<TopicPartition> partitionsToReplay(ReplayRequest request, MessageListenerContainer live) {
+        Set<TopicPartition> available = new TreeSet<>(BY_PARTITION);
+        if (live != null) {
+            Collection<TopicPartition> assigned = live.getAssignedPartitions();
+            if (assigned != null) {
+                assigned.stream().filter(partition -> partition.topic().equals(topic)).forEach(available::add);
+            }
+        } else {
+            try (KafkaConsumer<String, BookingEvent> consumer = newConsumer(null, "booking-replay-metadata")) {
+                consumer.partitionsFor(topic).forEach(info -> available.add(new TopicPartition(topic, info.partition())));
+            }
+        }
+
+        if (request.getPartitions() == null || request.getPartitions().isEmpty()) {
+            return available;
+        }
+        Set<TopicPartition> requested = new TreeSet<>(BY_PARTITION);
+        for (int partition : request.getPartitions()) {
+            TopicPartition topicPartition = new TopicPartition(topic, partition);
+            if (!available.contains(topicPartition)) {
+                throw new IllegalArgumentException("Partition " + partition + " is not consumed by this instance");
+            }
+            requested.add(topicPartition);
+        }
+        return requested;
+    }
+
+    private void execute(Run run) {
+        ReplayReport report;
+        try {
+            run.replay();
+            report = run.report(run.stopRequested ? ReplayReport.Status.STOPPED : ReplayReport.Status.COMPLETED);
+            log.info("⏪ Replay {} {}: {} records of {} partitions in {} ms - {} records/sec "
+                            + "({} applied, {} rejected, {} duplicates)",
+                    report.getReplayId(), report.getStatus(), report.getRecordsReplayed(), run.partitions.size(),
+                    report.getDurationMs(), report.getRecordsPerSecond(),
+                    report.getEventsApplied(), report.getEventsRejected(), report.getDuplicates());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report = run.report(ReplayReport.Status.FAILED);
+            report.setError("Interrupted");
+        } catch (Exception e) {
+            log.error("❌ Replay {} failed", run.replayId, e);
+            report = run.report(ReplayReport.Status.FAILED);
+            report.setError(e.getMessage());
+        }
+        synchronized (this) {
+            lastReport = report;
+            current = null;
+        }
+    }
+
+    /**
+     * @param groupId null for a consumer that only reads assigned partitions
+     */
+    private KafkaConsumer<String, BookingEvent> newConsumer(String groupId, String clientId) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        if (groupId != null) {
+            props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        }
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, maxPartitionFetchBytes);
+        return new KafkaConsumer<>(props, new StringDeserializer(), new BookingEventDeserializer());
+    }
+
+    /**
+     * One replay - planned and coordinated on the runner thread, records
+     * applied by the worker threads
+     */
+    private final class Run {
+
+        private final String replayId = "RP" + Long.toString(System.currentTimeMillis() % 2_176_782_336L, 36).toUpperCase();
+        private final ReplayRequest request;
+        private final MessageListenerContainer live;
+        private final Set<TopicPartition> partitions;
+
+        // Filled in by plan(), read-only afterwards
+        private final Map<TopicPartition, Long> startOffsets = new ConcurrentHashMap<>();
+        private final Map<TopicPartition, Long> endOffsets = new ConcurrentHashMap<>();
+        private volatile long recordsTotal;
+
+        // Offsets covered so far per partition
+        private final Map<TopicPartition, Long> progress = new ConcurrentHashMap<>();
+        private final LongAdder applied = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final Set<String> rebuilt = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean stopRequested;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+
+        private Run(ReplayRequest request, MessageListenerContainer live, Set<TopicPartition> partitions) {
+            this.request = request;
+            this.live = live;
+            this.partitions = partitions;
+        }
+
+        private void replay() throws InterruptedException, ExecutionException {
+            startedNanos = System.nanoTime();
+            if (live != null) {
+                live.pause();
+            }
+            try {
+                Map<TopicPartition, Long> acknowledged = Map.of();
+                if (live != null) {
+                    awaitPaused();
+                    acknowledged = solvedConsumer.awaitInFlight(partitions);
+                }
+                plan(acknowledged);
+                log.info("⏪ Replay {} started: {} records on partitions {} (live listener {})",
+                        replayId, recordsTotal, partitionNumbers(), live != null ? "paused" : "not running");
+                if (recordsTotal > 0) {
+                    runWorkers();
+                }
+            } finally {
+                finishedNanos = System.nanoTime();
+                if (!endOffsets.isEmpty()) {
+                    solvedConsumer.replayCompleted(endOffsets);
+                }
+                if (live != null) {
+                    live.resume();
+                }
+            }
+        }
+
+        private void awaitPaused() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + pauseTimeoutMs;
+            while (!live.isContainerPaused()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Live listener did not pause within " + pauseTimeoutMs + " ms");
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        /**
+         * Start and end offset per partition; the end is where the live
+         * listener resumes (its committed offset), or the log end without one.
+         *
+         * @param acknowledged offsets acknowledged by the parallel workers, which
+         *                     the committed offsets must reach first
+         */
+        private void plan(Map<TopicPartition, Long> acknowledged) throws InterruptedException {
+            try (KafkaConsumer<String, BookingEvent> consumer =
+                         newConsumer(BookingConsumerSolved.GROUP_ID, "booking-replay-planner")) {
+                Map<TopicPartition, OffsetAndMetadata> committed = awaitCommitted(consumer, acknowledged);
+                Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions);
+                Map<TopicPartition, Long> logEnd = consumer.endOffsets(partitions);
+                Map<TopicPartition, OffsetAndTimestamp> byTime = null;
+                if (request.getFromTimestamp() != null) {
+                    long timestamp = request.getFromTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    Map<TopicPartition, Long> query = new HashMap<>();
+                    partitions.forEach(partition -> query.put(partition, timestamp));
+                    byTime = consumer.offsetsForTimes(query);
+                }
+
+                long total = 0;
+                for (TopicPartition partition : partitions) {
+                    long first = beginning.get(partition);
+                    OffsetAndMetadata resume = committed.get(partition);
+                    // Live listener without a commit has not processed anything yet
+                    long end = resume != null ? resume.offset() : live != null ? first : logEnd.get(partition);
+                    long start;
+                    if (request.getFromOffset() != null) {
+                        start = request.getFromOffset();
+                    } else if (byTime != null) {
+                        OffsetAndTimestamp found = byTime.get(partition);
+                        start = found != null ? found.offset() : end;
+                    } else {
+                        start = first;
+                    }
+                    start = Math.min(Math.max(start, first), Math.max(end, first));
+                    end = Math.max(end, start);
+
+                    startOffsets.put(partition, start);
+                    endOffsets.put(partition, end);
+                    progress.put(partition, 0L);
+                    total += end - start;
+                }
+                recordsTotal = total;
+            }
+        }
+
+        /**
+         * The paused listener commits acknowledgments on its next loop - waits
+         * until they cover every acknowledged offset.
+         */
+        private Map<TopicPartition, OffsetAndMetadata> awaitCommitted(KafkaConsumer<String, BookingEvent> consumer,
+                                                                      Map<TopicPartition, Long> acknowledged)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + pauseTimeoutMs;
+            while (true) {
+                Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(partitions);
+                boolean caughtUp = acknowledged.entrySet().stream().allMatch(entry -> {
+                    OffsetAndMetadata commit = committed.get(entry.getKey());
+                    return commit != null && commit.offset() >= entry.getValue();
+                });
+                if (caughtUp) {
+                    return committed;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Live listener did not commit its in-flight records within "
+                            + pauseTimeoutMs + " ms");
+                }
+                Thread.sleep(50);
+            }
+        }
+
+        private void runWorkers() throws InterruptedException, ExecutionException {
+            List<TopicPartition> pending = partitions.stream()
+                    .filter(partition -> endOffsets.get(partition) > startOffsets.get(partition))
+                    .toList();
+            int workers = Math.min(threads, pending.size());
+            List<List<TopicPartition>> assignments = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                assignments.add(new ArrayList<>());
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                assignments.get(i % workers).add(pending.get(i));
+            }
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "booking-replay-worker-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                List<TopicPartition> assignment = assignments.get(i);
+                String clientId = "booking-replay-" + replayId + "-" + i;
+                futures.add(pool.submit(() -> work(assignment, clientId)));
+            }
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(progressIntervalMs, TimeUnit.MILLISECONDS)) {
+                    logProgress();
+                }
+            } catch (InterruptedException e) {
+                stopRequested = true;
+                pool.shutdownNow();
+                throw e;
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        private void work(List<TopicPartition> assignment, String clientId) {
+            try (KafkaConsumer<String, BookingEvent> consumer = newConsumer(null, clientId)) {
+                consumer.assign(assignment);
+                assignment.forEach(partition -> consumer.seek(partition, startOffsets.get(partition)));
+
+                List<TopicPartition> remaining = new ArrayList<>(assignment);
+                while (!remaining.isEmpty() && !stopRequested) {
+                    ConsumerRecords<String, BookingEvent> polled = consumer.poll(POLL_TIMEOUT);
+                    List<ConsumerRecord<String, BookingEvent>> batch = new ArrayList<>(polled.count());
+                    for (TopicPartition partition : polled.partitions()) {
+                        long end = endOffsets.get(partition);
+                        for (ConsumerRecord<String, BookingEvent> record : polled.records(partition)) {
+                            if (record.offset() >= end) {
+                                // Live processing takes it from here
+                                break;
+                            }
+                            if (record.value() != null && record.value().getBookingId() != null
+                                    && record.value().getSequenceNumber() != null) {
+                                batch.add(record);
+                            }
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        BookingConsumerSolved.ReplayResult result = solvedConsumer.replay(batch, request.isRebuild(), rebuilt);
+                        applied.add(result.applied());
+                        rejected.add(result.rejected());
+                        duplicates.add(result.duplicates());
+                        metrics.recordReplayed(batch.size());
+                    }
+
+                    Iterator<TopicPartition> iterator = remaining.iterator();
+                    while (iterator.hasNext()) {
+                        TopicPartition partition = iterator.next();
+                        long end = endOffsets.get(partition);
+                        long position = Math.min(consumer.position(partition), end);
+                        progress.put(partition, position - startOffsets.get(partition));
+                        if (position >= end) {
+                            consumer.pause(List.of(partition));
+                            iterator.remove();
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Stop the other workers too
+                stopRequested = true;
+                throw e;
+            }
+        }
+
+        private void logProgress() {
+            ReplayReport report = report(ReplayReport.Status.RUNNING);
+            long percent = recordsTotal > 0 ? 100 * report.getRecordsReplayed() / recordsTotal : 100;
+            log.info("⏪ Replay {}: {}/{} records ({}%) - {} records/sec, ETA {} s",
+                    replayId, report.getRecordsReplayed(), recordsTotal, percent,
+                    report.getRecordsPerSecond(), TimeUnit.MILLISECONDS.toSeconds(report.getEtaMs()));
+        }
+
+        private List<Integer> partitionNumbers() {
+            return partitions.stream().map(TopicPartition::partition).toList();
+        }
+
+        private ReplayReport report(ReplayReport.Status status) {
+            long replayed = progress.values().stream().mapToLong(Long::longValue).sum();
+            long started = startedNanos;
+            long elapsedNanos = started == 0 ? 0
+                    : (finishedNanos != 0 ? finishedNanos : System.nanoTime()) - started;
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            long perSecond = elapsedNanos > 0 ? Math.round(replayed * 1e9 / elapsedNanos) : 0;
+            long remaining = Math.max(0, recordsTotal - replayed);
+            long etaMs = status != ReplayReport.Status.RUNNING || remaining == 0 ? 0
+                    : perSecond > 0 ? remaining * 1000 / perSecond : -1;
+
+            return ReplayReport.builder()
+                    .replayId(replayId)
+                    .status(status)
+                    .request(request)
+                    .startOffsets(byPartitionNumber(startOffsets))
+                    .endOffsets(byPartitionNumber(endOffsets))
+                    .recordsTotal(recordsTotal)
+                    .recordsReplayed(replayed)
+                    .eventsApplied(applied.sum())
+                    .eventsRejected(rejected.sum())
+                    .duplicates(duplicates.sum())
+                    .durationMs(durationMs)
+                    .recordsPerSecond(perSecond)
+                    .etaMs(etaMs)
+                    .build();
+        }
+
+        private Map<Integer, Long> byPartitionNumber(Map<TopicPartition, Long> offsets) {
+            Map<Integer, Long> result = new TreeMap<>();
+            offsets.forEach((partition, offset) -> result.put(partition.partition(), offset));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.kafka.routing;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * AIRLINE-SHARDED TOPIC ROUTING
+ *
+ * Solved events of the carriers listed in kafka.routing.airline.shards go to
+ * a topic of their own instead of the shared solved topic, so a flash sale on
+ * one carrier only builds up lag on that carrier's shard:
+ *
+ *   AA1234 → airline-bookings-solved.AA   (own partitions, own consumers)
+ *   XY0042 → airline-bookings-solved      (every carrier without a shard)
+ *
+ * The carrier is the two-character IATA designator the flight number starts
+ * with. Within a shard events stay keyed by bookingId, so a booking's events
+ * keep their order - a booking never changes carrier.
+ *
+ * Shard spec: CARRIER[:partitions[:concurrency]], comma-separated, e.g.
+ * "AA:12:4,UA:6" - partitions default to 3 and concurrency to 1. The topics
+ * are created by KafkaAdmin (see KafkaTopicConfig) and every shard gets its
+ * own listener container (see AirlineShardListenerConfig).
+ *
+ * NEW SHARDS: sharding a carrier that already has bookings in progress would
+ * send their next events to the shard topic while earlier ones are still
+ * waiting on the default topic. Carriers listed in
+ * kafka.routing.airline.new-shards are migrated like an expanded topic (see
+ * {@link BookingPartitioner}): for migration-window-ms after startup only
+ * bookings created from then on (sequence 1) use the shard - they are
+ * remembered until their terminal event - and every other booking of the
+ * carrier stays on the default topic until it finishes. Shard a live carrier
+ * only through new-shards, and remove a shard only once its bookings are
+ * done.
+ *
+ * The migration is kept in a {@link MigrationLog}
+ * (kafka.producer.partition-expansion.directory), so a restart during the
+ * window resumes it with the same end and the same bookings on the shards.
+ *
+ * NOTE: Like the partition migration, which bookings started on the shard
+ * is known to this instance only - roll new-shards out to one producer
+ * instance, or stop the others for the window.
+ */
+@Slf4j
+@Component
+public class AirlineTopicRouter {
+
+    public static final int DEFAULT_PARTITIONS = 3;
+    public static final int DEFAULT_CONCURRENCY = 1;
+
+    private static final int CARRIER_LENGTH = 2;
+
+    /**
+     * One carrier's topic, with its partition count and consumer concurrency
+     */
+    public record Shard(String carrier, String topic, int partitions, int concurrency) {
+    }
+
+    private final String defaultTopic;
+    private final Shard[] shards;
+    private final Set<String> topics;
+    private final Set<String> migratingCarriers;
+    private final long migrationEndsAtMillis;
+    private volatile boolean migrating;
+    // Bookings of migrating carriers created on their shard that have not finished yet
+    private final MigrationLog migrationLog;
+
+    public AirlineTopicRouter(
+            @Value("${kafka.topic.booking.solved}") String defaultTopic,
+            @Value("${kafka.routing.airline.shards:}") List<String> shardSpecs,
+            @Value("${kafka.routing.airline.new-shards:}") List<String> newShards,
+            @Value("${kafka.routing.airline.migration-window-ms:3600000}") long migrationWindowMillis,
+            @Value("${kafka.producer.partition-expansion.directory:./data/partition-migrations}") String directory) {
+        this.defaultTopic = defaultTopic;
+
+        List<Shard> parsed = new ArrayList<>();
+        Set<String> carriers = new LinkedHashSet<>();
+        for (String spec : shardSpecs) {
+            if (spec.isBlank()) {
+                continue;
+            }
+            Shard shard = parse(defaultTopic, spec.trim());
+            if (!carriers.add(shard.carrier())) {
+                throw new IllegalArgumentException("Carrier " + shard.carrier() + " is sharded twice");
+            }
+            parsed.add(shard);
+        }
+        this.shards = parsed.toArray(new Shard[0]);
+
+        Set<String> allTopics = new LinkedHashSet<>();
+        allTopics.add(defaultTopic);
+        parsed.forEach(shard -> allTopics.add(shard.topic()));
+        this.topics = Collections.unmodifiableSet(allTopics);
+
+        Set<String> migrating = new LinkedHashSet<>();
+        for (String carrier : newShards) {
+            if (carrier.isBlank()) {
+                continue;
+            }
+            String code = carrier.trim().toUpperCase(Locale.ROOT);
+            if (!carriers.contains(code)) {
+                throw new IllegalArgumentException("New airline shard " + code + " is not in kafka.routing.airline.shards");
+            }
+            migrating.add(code);
+        }
+        this.migratingCarriers = Collections.unmodifiableSet(migrating);
+        this.migrationLog = migrating.isEmpty() ? null
+                : openMigrationLog(Path.of(directory).resolve(defaultTopic + ".shards.migration"), migrationWindowMillis);
+        this.migrationEndsAtMillis = migrationLog != null ? migrationLog.parameter(1) : 0;
+        this.migrating = migrationLog != null;
+
+        if (!parsed.isEmpty()) {
+            log.info("✈️  Airline shards: {}", parsed);
+        }
+        if (this.migrating) {
+            log.warn("🔀 New airline shards {} - bookings in progress stay on {}, new bookings use the shard; "
+                            + "{} bookings on the shards, migration ends in {} ms", migrating, defaultTopic,
+                    migrationLog.started().size(), migrationEndsAtMillis - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return the migration left by an earlier run for the same new shards,
+     *         or a new one
+     */
+    private MigrationLog openMigrationLog(Path file, long migrationWindowMillis) {
+        long now = System.currentTimeMillis();
+        MigrationLog recovered = MigrationLog.recover(file);
+        if (recovered != null) {
+            if (recovered.parameterCount() == 2 && recovered.parameter(0) == migratingCarriers.hashCode()
+                    && now < recovered.parameter(1)) {
+                return recovered;
+            }
+            recovered.delete();
+        }
+        return MigrationLog.create(file, migratingCarriers.hashCode(), now + migrationWindowMillis);
+    }
+
+    public static String shardTopicName(String defaultTopic, String carrier) {
+        return defaultTopic + "." + carrier;
+    }
+
+    /**
+     * @return the topic for the event's carrier - the default solved topic
+     *         if the carrier has no shard (or there is no flight number)
+     */
+    public String topicFor(BookingEvent event) {
+        Shard shard = shardFor(event.getFlightNumber());
+        if (shard == null) {
+            return defaultTopic;
+        }
+        if (!isMigrating(shard)) {
+            return shard.topic();
+        }
+        String bookingId = event.getBookingId();
+        Integer sequence = event.getSequenceNumber();
+        BookingEventType type = BookingEventType.fromName(event.getEventType());
+        boolean terminal = type != null && type.isTerminal();
+        if (sequence != null && sequence == 1) {
+            if (!terminal) {
+                migrationLog.started(bookingId);
+            }
+            return shard.topic();
+        }
+        if (terminal ? migrationLog.finished(bookingId) : migrationLog.started().contains(bookingId)) {
+            return shard.topic();
+        }
+        // Started before the shard existed - stays where its earlier events are
+        return defaultTopic;
+    }
+
+    /**
+     * @return the topic the booking's next event goes to - for finding the
+     *         owner of a booking (expiry timers)
+     */
+    public String topicOf(String bookingId, String flightNumber) {
+        Shard shard = shardFor(flightNumber);
+        if (shard == null) {
+            return defaultTopic;
+        }
+        return !isMigrating(shard) || migrationLog.started().contains(bookingId) ? shard.topic() : defaultTopic;
+    }
+
+    /**
+     * @return the carrier's shard, or null for the default topic
+     */
+    public Shard shardFor(String flightNumber) {
+        if (flightNumber == null || flightNumber.length() < CARRIER_LENGTH) {
+            return null;
+        }
+        // A handful of shards - a scan beats hashing a substring per event
+        for (Shard shard : shards) {
+            if (flightNumber.regionMatches(true, 0, shard.carrier(), 0, CARRIER_LENGTH)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private boolean isMigrating(Shard shard) {
+        if (!migrating || !migratingCarriers.contains(shard.carrier())) {
+            return false;
+        }
+        if (System.currentTimeMillis() < migrationEndsAtMillis) {
+            return true;
+        }
+        synchronized (this) {
+            if (migrating) {
+                migrating = false;
+                migrationLog.delete();
+                log.info("🔀 Migration to airline shards {} finished", migratingCarriers);
+            }
+        }
+        return false;
+    }
+
+    public List<Shard> shards() {
+        return List.of(shards);
+    }
+
+    /**
+     * @return the default solved topic and every shard topic
+     */
+    public Set<String> topics() {
+        return topics;
+    }
+
+    public boolean isSolvedTopic(String topic) {
+        return topics.contains(topic);
+    }
+
+    public String defaultTopic() {
+        return defaultTopic;
+    }
+
+    private static Shard parse(String defaultTopic, String spec) {
+        String[] parts = spec.split(":");
+        String carrier = parts[0].trim().toUpperCase(Locale.ROOT);
+        if (carrier.length() != CARRIER_LENGTH || !carrier.chars().allMatch(Character::isLetterOrDigit)
+                || parts.length > 3) {
+            throw new IllegalArgumentException("Invalid airline shard '" + spec
+                    + "' - expected CARRIER[:partitions[:concurrency]] with a two-character carrier code");
+        }
+        int partitions = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT_PARTITIONS;
+        int concurrency = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : DEFAULT_CONCURRENCY;
+        if (partitions < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("Airline shard '" + spec + "' needs at least 1 partition and 1 consumer");
+        }
+        return new Shard(carrier, shardTopicName(defaultTopic, carrier), partitions, concurrency);
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.kafka.routing;
+
+import com.example.kafka.consumer.retry.BookingRetryCoordinator;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.PartitionLayout;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ConsumerGroupListing;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * ORDERING-SAFE PARTITION EXPANSION
+ *
+ * Keyed records land on hash(bookingId) % partitions. Adding partitions to
+ * a solved topic changes that for most bookings, so the next event of a
+ * booking in progress would go to another partition and could be consumed
+ * before its predecessors on the old one. This partitioner picks the
+ * partition for the solved producers itself and moves bookings to the new
+ * layout only where that is safe:
+ *
+ * - SETTLED: same hash as Kafka's default partitioner - nothing changes
+ *   until the partition count of a topic grows
+ * - EXPANSION: noticed in the producer's metadata, requested through
+ *   {@link #expand} (POST /api/partitions), or configured for a restart
+ *   (previous-partitions). For activation-delay-ms every booking stays on
+ *   the old layout, so the consumer group can pick up the new partitions
+ *   (consumers find them within kafka.consumer.metadata-max-age-ms, the
+ *   default delay)
+ * - MIGRATION: bookings created from then on (sequence 1) use the new
+ *   layout and are remembered until their terminal event; every other
+ *   booking is already in progress and stays on its old partition until it
+ *   finishes
+ * - After migration-window-ms the migration ends and all bookings use the
+ *   new layout - the window must exceed how long a booking stays open
+ *
+ * RETRY TOPICS: the topic's retry topics are grown to the same partition
+ * count along with it (in expand, in the same admin call) - the retry
+ * coordinator forwards to the source partition number, and the range
+ * assignor only co-locates partition N of a topic and its retry topics
+ * while the counts match.
+ *
+ * Records sent during a migration carry the partition count they were
+ * hashed with in the {@value #LAYOUT_HEADER} header, so the consumer can
+ * check sequence continuity across the switchover.
+ *
+ * PERSISTENCE: a migration and the bookings started on its new layout are
+ * kept in a {@link MigrationLog} per topic (kafka.producer.partition-expansion.directory),
+ * so a producer restarted during the window resumes it - same layouts, same
+ * end, same bookings on the new layout. The log is deleted when the
+ * migration ends.
+ *
+ * NOTE: Which bookings started on the new layout is still known to this
+ * instance only, so a booking's events must all come from one producer.
+ * {@link #expand} therefore refuses to start a migration while more than
+ * one instance is running (counted by their command reply groups, see
+ * BookingCommandGateway). Expansions noticed in the metadata - partitions
+ * added from outside - are migrated by every instance on its own.
+ */
+@Slf4j
+@Component
+public class BookingPartitioner {
+
+    public static final String LAYOUT_HEADER = "booking-partition-layout";
+    public static final String PRODUCER_GROUP_PREFIX = "booking-command-replies-";
+
+    // How often the producer's metadata is checked for new partitions
+    private static final long OBSERVE_INTERVAL_MILLIS = 1000;
+
+    private final KafkaTemplate<String, BookingEvent> kafkaTemplate;
+    private final KafkaAdmin kafkaAdmin;
+    private final long activationDelayMillis;
+    private final long migrationWindowMillis;
+    private final Map<String, Integer> previousPartitions;
+    private final Path directory;
+    private final List<Long> retryDelays;
+    private final Map<String, TopicLayout> layouts = new ConcurrentHashMap<>();
+
+    public BookingPartitioner(
+            KafkaTemplate<String, BookingEvent> kafkaTemplate,
+            KafkaAdmin kafkaAdmin,
+            @Value("${kafka.producer.partition-expansion.activation-delay-ms:${kafka.consumer.metadata-max-age-ms:300000}}") long activationDelayMillis,
+            @Value("${kafka.producer.partition-expansion.migration-window-ms:3600000}") long migrationWindowMillis,
+            @Value("${kafka.producer.partition-expansion.previous-partitions:}") List<String> previousPartitions,
+            @Value("${kafka.producer.partition-expansion.directory:./data/partition-migrations}") String directory,
+            @Value("${kafka.consumer.solved.retry.delays-ms:1000,10000,60000}") List<Long> retryDelays) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaAdmin = kafkaAdmin;
+        this.activationDelayMillis = activationDelayMillis;
+        this.migrationWindowMillis = migrationWindowMillis;
+        this.directory = Paths.get(directory);
+        this.retryDelays = List.copyOf(retryDelays);
+        this.previousPartitions = new HashMap<>();
+        for (String entry : previousPartitions) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid previous-partitions entry '" + entry
+                        + "' - expected TOPIC:partitions");
+            }
+            this.previousPartitions.put(entry.substring(0, separator).trim(),
+                    Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+    }
+
+    /**
+     * @return a record for the event with its partition chosen, keyed by bookingId
+     */
+    public ProducerRecord<String, BookingEvent> record(String topic, BookingEvent event) {
+        String bookingId = event.getBookingId();
+        TopicLayout layout = layout(topic);
+        Migration migration = layout.migration(System.currentTimeMillis());
+        if (migration == null) {
+            return new ProducerRecord<>(topic, hash(bookingId) % layout.partitions, bookingId, event);
+        }
+
+        int partitions = migration.partitionsFor(event);
+        ProducerRecord<String, BookingEvent> record =
+                new ProducerRecord<>(topic, hash(bookingId) % partitions, bookingId, event);
+        record.headers().add(LAYOUT_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(partitions).array());
+        return record;
+    }
+
+    /**
+     * @return the partition the booking's next event goes to - for finding
+     *         the owner of a booking (expiry timers, query routing)
+     */
+    public int partitionOf(String topic, String bookingId) {
+        TopicLayout layout = layout(topic);
+        Migration migration = layout.migration(System.currentTimeMillis());
+        int partitions = migration == null ? layout.partitions
+                : migration.startedOnNewLayout(bookingId) ? migration.partitions : migration.legacyPartitions;
+        return hash(bookingId) % partitions;
+    }
+
+    /**
+     * Adds partitions to the topic and starts a migration right away.
+     *
+     * @return the topic's layout afterwards
+     * @throws IllegalArgumentException if the topic already has that many partitions
+     * @throws IllegalStateException    if a migration of the topic is still running,
+     *                                  or other producer instances are running
+     */
+    public PartitionLayout expand(String topic, int partitions) {
+        TopicLayout layout = layout(topic);
+        synchronized (layout) {
+            long now = System.currentTimeMillis();
+            if (layout.migration(now) != null) {
+                throw new IllegalStateException("Partitions of " + topic + " are still being migrated");
+            }
+            if (partitions <= layout.partitions) {
+                throw new IllegalArgumentException(topic + " already has " + layout.partitions + " partitions");
+            }
+            int instances = producerInstances();
+            if (instances > 1) {
+                throw new IllegalStateException(instances + " producer instances are running - bookings started on "
+                        + "the new layout would only be known to this one");
+            }
+            // Only the partition counts are changed
+            kafkaAdmin.createOrModifyTopics(withRetryTopics(topic, partitions));
+            layout.startMigration(partitions, now);
+        }
+        return layoutOf(topic);
+    }
+
+    /**
+     * @return the layout of every topic this partitioner has routed to
+     */
+    public List<PartitionLayout> layouts() {
+        return layouts.keySet().stream().sorted().map(this::layoutOf).toList();
+    }
+
+    public PartitionLayout layoutOf(String topic) {
+        TopicLayout layout = layout(topic);
+        Migration migration = layout.migration(System.currentTimeMillis());
+        if (migration == null) {
+            return PartitionLayout.builder()
+                    .topic(topic)
+                    .status(PartitionLayout.Status.SETTLED)
+                    .partitions(layout.partitions)
+                    .build();
+        }
+        return PartitionLayout.builder()
+                .topic(topic)
+                .status(System.currentTimeMillis() < migration.activeFromMillis
+                        ? PartitionLayout.Status.EXPANDING
+                        : PartitionLayout.Status.MIGRATING)
+                .partitions(migration.partitions)
+                .legacyPartitions(migration.legacyPartitions)
+                .activeFromMillis(migration.activeFromMillis)
+                .endsAtMillis(migration.endsAtMillis)
+                .bookingsOnNewLayout(migration.started().size())
+                .build();
+    }
+
+    /**
+     * @return the partition count a record was hashed with during a migration,
+     *         or 0 if it was sent outside one
+     */
+    public static int layoutOf(Headers headers) {
+        Header header = headers.lastHeader(LAYOUT_HEADER);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : 0;
+    }
+
+    private TopicLayout layout(String topic) {
+        TopicLayout layout = layouts.get(topic);
+        if (layout == null) {
+            layout = layouts.computeIfAbsent(topic, this::initialLayout);
+        }
+        long now = System.currentTimeMillis();
+        if (now - layout.observedAtMillis >= OBSERVE_INTERVAL_MILLIS) {
+            layout.observedAtMillis = now;
+            // Cached producer metadata - refreshed every metadata.max.age.ms
+            layout.observe(kafkaTemplate.partitionsFor(topic).size());
+        }
+        return layout;
+    }
+
+    private TopicLayout initialLayout(String topic) {
+        int available = kafkaTemplate.partitionsFor(topic).size();
+        TopicLayout resumed = resumeMigration(topic, available);
+        if (resumed != null) {
+            return resumed;
+        }
+        Integer previous = previousPartitions.get(topic);
+        if (previous == null || previous >= available) {
+            return new TopicLayout(topic, available);
+        }
+        // Restarted after an expansion - bookings in progress are still on the old layout
+        growRetryTopics(topic, available);
+        TopicLayout layout = new TopicLayout(topic, previous);
+        layout.startMigration(available, System.currentTimeMillis());
+        return layout;
+    }
+
+    /**
+     * @return the layout with the migration left by an earlier run, or null if
+     *         there is none (or it no longer matches the topic)
+     */
+    private TopicLayout resumeMigration(String topic, int available) {
+        MigrationLog migrationLog = MigrationLog.recover(migrationLogPath(topic));
+        if (migrationLog == null) {
+            return null;
+        }
+        int legacyPartitions = (int) migrationLog.parameter(0);
+        int partitions = (int) migrationLog.parameter(1);
+        long activeFrom = migrationLog.parameter(2);
+        long endsAt = migrationLog.parameter(3);
+        if (migrationLog.parameterCount() != 4 || System.currentTimeMillis() >= endsAt
+                || legacyPartitions >= partitions || partitions > available) {
+            migrationLog.delete();
+            return null;
+        }
+        TopicLayout layout = new TopicLayout(topic, legacyPartitions);
+        layout.migration = new Migration(legacyPartitions, partitions, activeFrom, endsAt, migrationLog);
+        log.warn("🔀 {}: resumed migration {} → {} partitions with {} bookings on the new layout; ends in {} ms",
+                topic, legacyPartitions, partitions, migrationLog.started().size(),
+                endsAt - System.currentTimeMillis());
+        return layout;
+    }
+
+    /**
+     * @return the topic and its retry topics, each with the partition count
+     */
+    private NewTopic[] withRetryTopics(String topic, int partitions) {
+        NewTopic[] topics = new NewTopic[retryDelays.size() + 1];
+        topics[0] = new NewTopic(topic, Optional.of(partitions), Optional.empty());
+        for (int tier = 0; tier < retryDelays.size(); tier++) {
+            topics[tier + 1] = new NewTopic(BookingRetryCoordinator.retryTopicName(topic, retryDelays.get(tier)),
+                    Optional.of(partitions), Optional.empty());
+        }
+        return topics;
+    }
+
+    /**
+     * Partitions were added from outside - the retry topics follow.
+     */
+    private void growRetryTopics(String topic, int partitions) {
+        try {
+            kafkaAdmin.createOrModifyTopics(withRetryTopics(topic, partitions));
+        } catch (RuntimeException e) {
+            log.error("❌ Could not grow the retry topics of {} to {} partitions: {}", topic, partitions, e.getMessage());
+        }
+    }
+
+    private Path migrationLogPath(String topic) {
+        return directory.resolve(topic + ".migration");
+    }
+
+    /**
+     * @return running instances of this service, by their command reply
+     *         groups with members - 0 if they cannot be counted
+     */
+    private int producerInstances() {
+        try (AdminClient admin = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
+            List<String> groups = admin.listConsumerGroups().all().get(5, TimeUnit.SECONDS).stream()
+                    .map(ConsumerGroupListing::groupId)
+                    .filter(groupId -> groupId.startsWith(PRODUCER_GROUP_PREFIX))
+                    .toList();
+            if (groups.isEmpty()) {
+                return 0;
+            }
+            Map<String, ConsumerGroupDescription> described =
+                    admin.describeConsumerGroups(groups).all().get(5, TimeUnit.SECONDS);
+            return (int) described.values().stream().filter(group -> !group.members().isEmpty()).count();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting producer instances", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not count producer instances: " + e.getMessage(), e);
+        }
+    }
+
+    private static int hash(String bookingId) {
+        // Same as the producer's default partitioner for keyed records
+        return Utils.toPositive(Utils.murmur2(bookingId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private final class TopicLayout {
+
+        private final String topic;
+        // Layout of bookings outside a migration
+        private volatile int partitions;
+        private volatile Migration migration;
+        private volatile long observedAtMillis = System.currentTimeMillis();
+        private boolean warnedRegrowth;
+
+        private TopicLayout(String topic, int partitions) {
+            this.topic = topic;
+            this.partitions = partitions;
+        }
+
+        /**
+         * @return the running migration, or null once settled
+         */
+        private Migration migration(long now) {
+            Migration current = migration;
+            if (current != null && now >= current.endsAtMillis) {
+                synchronized (this) {
+                    if (migration == current) {
+                        partitions = current.partitions;
+                        migration = null;
+                        current.migrationLog.delete();
+                        log.info("🔀 {}: migration to {} partitions finished", topic, current.partitions);
+                    }
+                }
+                return null;
+            }
+            return current;
+        }
+
+        private void observe(int available) {
+            Migration current = migration;
+            int target = current != null ? current.partitions : partitions;
+            if (available <= target) {
+                return;
+            }
+            synchronized (this) {
+                if (migration != null) {
+                    if (available > migration.partitions && !warnedRegrowth) {
+                        warnedRegrowth = true;
+                        log.warn("⚠️  {} grew to {} partitions during a migration - new bookings keep using {} "
+                                + "until it ends", topic, available, migration.partitions);
+                    }
+                } else if (available > partitions) {
+                    growRetryTopics(topic, available);
+                    startMigration(available, System.currentTimeMillis());
+                }
+            }
+        }
+
+        private synchronized void startMigration(int newPartitions, long now) {
+            long activeFrom = now + activationDelayMillis;
+            long endsAt = activeFrom + migrationWindowMillis;
+            MigrationLog migrationLog = MigrationLog.create(migrationLogPath(topic), partitions, newPartitions, activeFrom, endsAt);
+            migration = new Migration(partitions, newPartitions, activeFrom, endsAt, migrationLog);
+            warnedRegrowth = false;
+            log.warn("🔀 {}: {} → {} partitions - bookings in progress stay on their partition, "
+                            + "new bookings move over in {} ms; migration ends in {} ms",
+                    topic, partitions, newPartitions, activationDelayMillis, activationDelayMillis + migrationWindowMillis);
+        }
+    }
+
+    private static final class Migration {
+
+        private final int legacyPartitions;
+        private final int partitions;
+        private final long activeFromMillis;
+        private final long endsAtMillis;
+        // Bookings created on the new layout that have not finished yet
+        private final MigrationLog migrationLog;
+
+        private Migration(int legacyPartitions, int partitions, long activeFromMillis, long endsAtMillis,
+                          MigrationLog migrationLog) {
+            this.legacyPartitions = legacyPartitions;
+            this.partitions = partitions;
+            this.activeFromMillis = activeFromMillis;
+            this.endsAtMillis = endsAtMillis;
+            this.migrationLog = migrationLog;
+        }
+
+        private Set<String> started() {
+            return migrationLog.started();
+        }
+
+        /**
+         * @return the partition count to hash the event's booking with
+         */
+        private int partitionsFor(BookingEvent event) {
+            if (System.currentTimeMillis() < activeFromMillis) {
+                // Consumers may not have the new partitions yet
+                return legacyPartitions;
+            }
+            String bookingId = event.getBookingId();
+            Integer sequence = event.getSequenceNumber();
+            BookingEventType type = BookingEventType.fromName(event.getEventType());
+            boolean terminal = type != null && type.isTerminal();
+            if (sequence != null && sequence == 1) {
+                if (!terminal) {
+                    migrationLog.started(bookingId);
+                }
+                return partitions;
+            }
+            if (terminal ? migrationLog.finished(bookingId) : started().contains(bookingId)) {
+                return partitions;
+            }
+            // Started before the expansion - stays where its earlier events are
+            return legacyPartitions;
+        }
+
+        private boolean startedOnNewLayout(String bookingId) {
+            return System.currentTimeMillis() >= activeFromMillis && started().contains(bookingId);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.kafka.routing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local record of a running migration (partition expansion or new airline
+ * shard): its parameters and the bookings started on the new layout, so a
+ * restarted producer keeps routing them there.
+ *
+ * File: one header line "MIGRATION n1 n2 ...", then "+bookingId" when a
+ * booking starts on the new layout and "-bookingId" when it finishes. Every
+ * line is flushed to the page cache - like the outbox, it survives a crash
+ * of the process. A torn last line is ignored on recovery.
+ */
+@Slf4j
+final class MigrationLog {
+
+    private static final String HEADER = "MIGRATION";
+
+    private final Path file;
+    private final long[] parameters;
+    private final Set<String> started;
+    private BufferedWriter writer;
+
+    private MigrationLog(Path file, long[] parameters, Set<String> started, BufferedWriter writer) {
+        this.file = file;
+        this.parameters = parameters;
+        this.started = started;
+        this.writer = writer;
+    }
+
+    /**
+     * Starts a new log, replacing any earlier one.
+     */
+    static MigrationLog create(Path file, long... parameters) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            StringBuilder header = new StringBuilder(HEADER);
+            for (long parameter : parameters) {
+                header.append(' ').append(parameter);
+            }
+            writer.write(header.toString());
+            writer.newLine();
+            writer.flush();
+            return new MigrationLog(file, parameters.clone(), ConcurrentHashMap.newKeySet(), writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create migration log " + file, e);
+        }
+    }
+
+    /**
+     * @return the log left by an earlier run, or null if there is none (or it
+     *         is unreadable)
+     */
+    static MigrationLog recover(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith(HEADER + " ")) {
+                log.warn("⚠️  Migration log {} has no header - ignored", file);
+                return null;
+            }
+            long[] parameters = Arrays.stream(lines.get(0).substring(HEADER.length() + 1).trim().split(" "))
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+            Set<String> started = ConcurrentHashMap.newKeySet();
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.length() < 2) {
+                    continue;
+                }
+                if (line.charAt(0) == '+') {
+                    started.add(line.substring(1));
+                } else if (line.charAt(0) == '-') {
+                    started.remove(line.substring(1));
+                }
+            }
+            BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // Start on a fresh line after a torn one
+            writer.newLine();
+            writer.flush();
+            return new MigrationLog(file, parameters, started, writer);
+        } catch (IOException | RuntimeException e) {
+            log.warn("⚠️  Could not read migration log {}: {} - ignored", file, e.getMessage());
+            return null;
+        }
+    }
+
+    long parameter(int index) {
+        return index < parameters.length ? parameters[index] : -1;
+    }
+
+    int parameterCount() {
+        return parameters.length;
+    }
+
+    /**
+     * Bookings started on the new layout and not finished yet - a live view,
+     * updated by {@link #started} and {@link #finished}.
+     */
+    Set<String> started() {
+        return started;
+    }
+
+    void started(String bookingId) {
+        if (started.add(bookingId)) {
+            append('+', bookingId);
+        }
+    }
+
+    /**
+     * @return true if the booking had started on the new layout
+     */
+    boolean finished(String bookingId) {
+        if (!started.remove(bookingId)) {
+            return false;
+        }
+        append('-', bookingId);
+        return true;
+    }
+
+    /**
+     * The migration has ended - nothing is left to remember.
+     */
+    synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("⚠️  Could not delete migration log {}: {}", file, e.getMessage());
+        }
+    }
+
+    synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("⚠️  Could not close migration log {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private synchronized void append(char operation, String bookingId) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(operation);
+            writer.write(bookingId);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            // Routing goes on from memory - only a restart would lose the booking
+            log.warn("⚠️  Could not write migration log {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.kafka.serialization;
+
+import com.example.kafka.model.BookingEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * BookingEvent deserializer that reads both wire formats.
+ *
+ * The first byte decides: {@link BookingEventBinaryCodec#MAGIC} means the
+ * compact binary format, anything else is treated as the legacy JSON format.
+ * This lets a topic switch formats without draining it first.
+ */
+public class BookingEventDeserializer implements Deserializer<BookingEvent> {
+
+    // Type headers ignored - the target type is always BookingEvent
+    private final JsonDeserializer<BookingEvent> jsonDeserializer =
+            new JsonDeserializer<>(BookingEvent.class, false);
+
+    @Override
+    public BookingEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return BookingEventBinaryCodec.isBinary(data)
+                ? BookingEventBinaryCodec.decode(data)
+                : jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public BookingEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return BookingEventBinaryCodec.isBinary(data)
+                ? BookingEventBinaryCodec.decode(data)
+                : jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.kafka.serialization;
+
+import com.example.kafka.model.BookingEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Per-topic BookingEvent serializer.
+ *
+ * Topics listed in {@value #BINARY_TOPICS_CONFIG} get the compact binary
+ * format ({@link BookingEventBinaryCodec}); every other topic keeps JSON.
+ *
+ * Migration: deploy consumers with {@link BookingEventDeserializer} first
+ * (it reads both formats), then add topics to the binary list.
+ */
+public class BookingEventSerializer implements Serializer<BookingEvent> {
+
+    public static final String BINARY_TOPICS_CONFIG = "booking.wire-format.binary-topics";
+
+    private final JsonSerializer<BookingEvent> jsonSerializer = new JsonSerializer<>();
+    private Set<String> binaryTopics = Set.of();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+        Object topics = configs.get(BINARY_TOPICS_CONFIG);
+        if (topics != null) {
+            binaryTopics = Arrays.stream(topics.toString().split(","))
+                    .map(String::trim)
+                    .filter(topic -> !topic.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, BookingEvent event) {
+        if (event == null) {
+            return null;
+        }
+        return binaryTopics.contains(topic)
+                ? BookingEventBinaryCodec.encode(event)
+                : jsonSerializer.serialize(topic, event);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, BookingEvent event) {
+        if (event == null) {
+            return null;
+        }
+        // Binary records need no type headers; JSON keeps them for older consumers
+        return binaryTopics.contains(topic)
+                ? BookingEventBinaryCodec.encode(event)
+                : jsonSerializer.serialize(topic, headers, event);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
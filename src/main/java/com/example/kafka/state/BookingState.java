@@ -0,0 +1,80 @@
+package com.example.kafka.state;
+
+import com.example.kafka.model.BookingEventType;
+import lombok.Value;
+
+/**
+ * Compact per-booking entry: last state, last sequence number and the time
+ * of the last update, kept together in one small immutable object.
+ *
+ * lastSequence is the booking's high-water mark and never moves backwards.
+ * seenWindow records which of the 64 sequences below it were processed
+ * (bit i = lastSequence - 1 - i), so a redelivered event can be told apart
+ * from one that arrives late for the first time.
+ */
+@Value
+public class BookingState {
+
+    /** Window of an entry whose history is unknown (e.g. restored) - all seen */
+    public static final long FULL_WINDOW = -1L;
+
+    BookingEventType state;
+    int lastSequence;
+    long updatedAtMillis;
+    long seenWindow;
+
+    public BookingState(BookingEventType state, int lastSequence, long updatedAtMillis) {
+        this(state, lastSequence, updatedAtMillis, FULL_WINDOW);
+    }
+
+    public BookingState(BookingEventType state, int lastSequence, long updatedAtMillis, long seenWindow) {
+        this.state = state;
+        this.lastSequence = lastSequence;
+        this.updatedAtMillis = updatedAtMillis;
+        this.seenWindow = seenWindow;
+    }
+
+    public boolean isTerminal() {
+        return state != null && state.isTerminal();
+    }
+
+    /**
+     * @return true if this sequence was already processed - sequences more
+     *         than 64 below the high-water mark are assumed to be
+     */
+    public boolean hasSeen(int sequence) {
+        if (sequence >= lastSequence) {
+            return sequence == lastSequence;
+        }
+        int distance = lastSequence - 1 - sequence;
+        return distance >= Long.SIZE || (seenWindow & (1L << distance)) != 0;
+    }
+
+    /**
+     * @return the entry after processing another sequence of the booking
+     */
+    public BookingState advance(BookingEventType newState, int sequence, long nowMillis) {
+        if (sequence > lastSequence) {
+            int shift = sequence - lastSequence;
+            // The old high-water mark becomes bit (shift - 1)
+            long window = shift > Long.SIZE ? 0L
+                    : (shift == Long.SIZE ? 0L : seenWindow << shift) | (1L << (shift - 1));
+            return new BookingState(newState, sequence, nowMillis, window);
+        }
+        if (sequence == lastSequence) {
+            return new BookingState(newState, lastSequence, nowMillis, seenWindow);
+        }
+        // Late event - keep the high-water mark, just mark it as seen
+        int distance = lastSequence - 1 - sequence;
+        long window = distance < Long.SIZE ? seenWindow | (1L << distance) : seenWindow;
+        return new BookingState(newState, lastSequence, nowMillis, window);
+    }
+
+    /**
+     * @return the entry of a booking's first processed event
+     */
+    public static BookingState first(BookingEventType state, int sequence, long nowMillis) {
+        // Anything below it arriving later is late, not a redelivery
+        return new BookingState(state, sequence, nowMillis, 0L);
+    }
+}
@@ -0,0 +1,642 @@
+package com.example.kafka.state;
+
+import com.example.kafka.inventory.SeatInventory;
+import com.example.kafka.model.BookingEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * PERSISTENT STATE FOR THE SOLVED CONSUMER
+ *
+ * Makes a {@link BookingStateStore} survive restarts:
+ *
+ * - CHANGELOG: every state change is appended to a memory-mapped file, together
+ *   with the Kafka offset of the record that caused it
+ * - SNAPSHOT: when the changelog fills up (or on a timer / shutdown) all LIVE
+ *   entries are written to a snapshot file and the changelog starts over
+ * - RECOVERY: load the snapshot, replay the short changelog tail - cost is
+ *   proportional to live bookings, not to the topic history
+ * - REMOVALS: bookings removed from the store or evicted by it are logged too,
+ *   so recovery does not bring them back
+ * - SEATS: reservations and releases of the {@link SeatInventory} are logged
+ *   and snapshotted with the bookings, so restored bookings keep their seats
+ *
+ * The changelog also records the last applied offset per partition, so the
+ * consumer can seek to exactly where its local state ends on assignment.
+ * State and consumer position therefore always describe the same point.
+ *
+ * Changelog record:  [int length][int crc32][payload]  - a zero length ends the log
+ *   STATE   payload: type, state, seq, updatedAt, offset, partition, topic, bookingId
+ *                    (offset -1 = part of a batch, applied only at the next OFFSET record)
+ *   OFFSET  payload: type, offset, partition, topic
+ *   REMOVE  payload: type, bookingId
+ *   SEAT    payload: type, flight, seat, bookingId  (empty flight = released;
+ *                    applied at the next commit point, like a batch change)
+ *
+ * Snapshot and changelog carry a generation number. Two changelog files take
+ * turns: starting a snapshot only copies the live entries and switches appends
+ * to the other file under a new generation; a background thread then writes
+ * and fsyncs the copy, so the consumer never waits for snapshot I/O. Until
+ * that snapshot is durable, recovery replays the older file followed by the
+ * newer one.
+ */
+@Slf4j
+public class BookingStateChangelog implements AutoCloseable {
+
+    private static final int MAGIC = 0x424B5343; // "BKSC"
+    private static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_SEATS = 1;
+    private static final int HEADER_SIZE = 16;   // magic, version, generation
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte TYPE_STATE = 1;
+    private static final byte TYPE_OFFSET = 2;
+    private static final byte TYPE_REMOVE = 3;
+    private static final byte TYPE_SEAT = 4;
+    private static final byte NO_STATE = -1;
+
+    private final BookingStateStore store;
+    private final SeatInventory seatInventory;
+    private final Path[] changelogFiles;
+    private final Path snapshotFile;
+    private final int changelogSize;
+    private final long snapshotIntervalMillis;
+
+    private final Map<TopicPartition, Long> appliedOffsets = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    // Filled by the store's eviction listener, which must not take this monitor
+    private final Queue<String> evictedIds = new ConcurrentLinkedQueue<>();
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-state-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileChannel[] channels = new FileChannel[2];
+    private final MappedByteBuffer[] buffers = new MappedByteBuffer[2];
+    private MappedByteBuffer buffer;
+    // Generation of the changelog being appended to, and of the newest durable snapshot
+    private long generation;
+    // Written by the snapshot writer without this monitor - the consumer may be waiting for it
+    private volatile long snapshotGeneration;
+    private Future<?> pendingSnapshot;
+    private long lastSnapshotMillis;
+
+    public BookingStateChangelog(BookingStateStore store, SeatInventory seatInventory, Path directory,
+                                 int changelogSize, long snapshotIntervalMillis) {
+        this.store = store;
+        this.seatInventory = seatInventory;
+        this.changelogFiles = new Path[] {
+                directory.resolve("booking-state.changelog.0"),
+                directory.resolve("booking-state.changelog.1")
+        };
+        this.snapshotFile = directory.resolve("booking-state.snapshot");
+        this.changelogSize = changelogSize;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Loads snapshot + changelog into the store and opens the changelog for appends.
+     */
+    public synchronized void open() {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            long started = System.nanoTime();
+            int snapshotEntries = loadSnapshot();
+
+            for (int slot = 0; slot < 2; slot++) {
+                channels[slot] = FileChannel.open(changelogFiles[slot], StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                long size = Math.max(channels[slot].size(), changelogSize);
+                buffers[slot] = channels[slot].map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+
+            // The snapshot's own changelog, then the next one if its snapshot never became durable
+            List<Runnable> pending = new ArrayList<>();
+            int replayed = replayChangelog(generation, pending);
+            if (replayed >= 0) {
+                int next = replayChangelog(generation + 1, pending);
+                if (next >= 0) {
+                    replayed += next;
+                    generation++;
+                }
+            }
+            if (!pending.isEmpty()) {
+                // Batch without its OFFSET record - the batch will be redelivered
+                log.warn("⚠️  Discarding {} uncommitted batch changes from booking state changelog", pending.size());
+            }
+            buffer = buffers[slot(generation)];
+            lastSnapshotMillis = System.currentTimeMillis();
+
+            log.info("💾 Booking state restored: {} snapshot entries + {} changelog records in {} ms ({} live bookings, {} seats)",
+                    snapshotEntries, Math.max(replayed, 0), (System.nanoTime() - started) / 1_000_000, store.size(),
+                    seatInventory.reservationCount());
+
+            // Start a fresh generation so the next run replays only new changes
+            snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open booking state changelog", e);
+        }
+    }
+
+    /**
+     * Records a state change caused by the record at the given offset.
+     */
+    public synchronized void appendState(String bookingId, BookingState entry,
+                                         TopicPartition partition, long offset) {
+        writeEvictions();
+        writeState(bookingId, entry, partition.topic(), partition.partition(), offset);
+        appliedOffsets.merge(partition, offset, Math::max);
+        maybeSnapshot();
+    }
+
+    /**
+     * Records a state change that belongs to a batch. It only takes effect on
+     * replay once {@link #appendOffset} commits the batch.
+     */
+    public synchronized void appendPendingState(String bookingId, BookingState entry) {
+        writeEvictions();
+        writeState(bookingId, entry, "", -1, -1L);
+    }
+
+    /**
+     * Records that the booking was removed from the store.
+     */
+    public synchronized void appendRemoval(String bookingId) {
+        writeEvictions();
+        writeRemoval(bookingId);
+    }
+
+    /**
+     * Records a seat reservation; it takes effect on replay with the next
+     * commit point (the state change or offset of the same record).
+     */
+    public synchronized void appendSeat(String bookingId, String flightNumber, String seatNumber) {
+        byte[] flight = flightNumber.getBytes(StandardCharsets.UTF_8);
+        byte[] seat = seatNumber.getBytes(StandardCharsets.UTF_8);
+        byte[] id = bookingId.getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 1 + 2 + flight.length + 2 + seat.length + 2 + id.length;
+        int start = beginRecord(payloadSize);
+
+        buffer.put(TYPE_SEAT);
+        putString(flight);
+        putString(seat);
+        putString(id);
+
+        endRecord(start, payloadSize);
+    }
+
+    /**
+     * Records that the booking gave up its seat.
+     */
+    public synchronized void appendSeatRelease(String bookingId) {
+        appendSeat(bookingId, "", "");
+    }
+
+    /**
+     * Eviction listener for the store: the removal is logged with the next
+     * append. Called with a store segment locked, so it only queues.
+     */
+    public void evicted(String bookingId, BookingState entry) {
+        evictedIds.add(bookingId);
+    }
+
+    private void writeEvictions() {
+        String bookingId;
+        while ((bookingId = evictedIds.poll()) != null) {
+            writeRemoval(bookingId);
+        }
+    }
+
+    private void writeRemoval(String bookingId) {
+        byte[] id = bookingId.getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 1 + 2 + id.length;
+        int start = beginRecord(payloadSize);
+
+        buffer.put(TYPE_REMOVE);
+        putString(id);
+
+        endRecord(start, payloadSize);
+    }
+
+    private void writeState(String bookingId, BookingState entry, String topicName, int partition, long offset) {
+        byte[] id = bookingId.getBytes(StandardCharsets.UTF_8);
+        byte[] topic = topicName.getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 1 + 1 + 4 + 8 + 8 + 4 + 2 + topic.length + 2 + id.length;
+        int start = beginRecord(payloadSize);
+
+        buffer.put(TYPE_STATE);
+        buffer.put(entry.getState() != null ? (byte) entry.getState().ordinal() : NO_STATE);
+        buffer.putInt(entry.getLastSequence());
+        buffer.putLong(entry.getUpdatedAtMillis());
+        buffer.putLong(offset);
+        buffer.putInt(partition);
+        putString(topic);
+        putString(id);
+
+        endRecord(start, payloadSize);
+    }
+
+    /**
+     * Records that every record up to and including the offset has been applied.
+     */
+    public synchronized void appendOffset(TopicPartition partition, long offset) {
+        writeEvictions();
+        byte[] topic = partition.topic().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 1 + 8 + 4 + 2 + topic.length;
+        int start = beginRecord(payloadSize);
+
+        buffer.put(TYPE_OFFSET);
+        buffer.putLong(offset);
+        buffer.putInt(partition.partition());
+        putString(topic);
+
+        endRecord(start, payloadSize);
+        appliedOffsets.merge(partition, offset, Math::max);
+        maybeSnapshot();
+    }
+
+    /**
+     * @return the last applied offset for the partition, or null if unknown
+     */
+    public synchronized Long appliedOffset(TopicPartition partition) {
+        return appliedOffsets.get(partition);
+    }
+
+    /**
+     * Writes all live entries to a new snapshot and empties the changelog,
+     * waiting until the snapshot is durable.
+     */
+    public synchronized void snapshot() {
+        if (awaitPendingSnapshot() && startSnapshot()) {
+            awaitPendingSnapshot();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channels[0] == null) {
+            return;
+        }
+        writeEvictions();
+        snapshot();
+        snapshotWriter.shutdown();
+        for (int slot = 0; slot < 2; slot++) {
+            try {
+                channels[slot].close();
+            } catch (IOException e) {
+                log.warn("⚠️  Failed to close booking state changelog", e);
+            }
+            channels[slot] = null;
+        }
+    }
+
+    /**
+     * Snapshots only at commit points (after an applied offset), so a snapshot
+     * never contains half of a batch. Starts early, at 75% of the changelog;
+     * skipped while the previous snapshot is still being written.
+     */
+    private void maybeSnapshot() {
+        if ((buffer.position() > buffer.capacity() / 4 * 3
+                || System.currentTimeMillis() - lastSnapshotMillis >= snapshotIntervalMillis)
+                && (pendingSnapshot == null || pendingSnapshot.isDone())) {
+            awaitPendingSnapshot();
+            startSnapshot();
+        }
+    }
+
+    /**
+     * Copies the live entries and hands them to the snapshot writer. Appends
+     * switch to the other changelog file under the next generation - unless
+     * the last snapshot failed, in which case the current changelog is still
+     * needed and the copy is written under the current generation instead
+     * (replaying it on top of that copy only repeats changes already in it).
+     *
+     * @return false if no snapshot was started (the changelog is closed)
+     */
+    private boolean startSnapshot() {
+        if (channels[0] == null) {
+            return false;
+        }
+        if (snapshotGeneration == generation) {
+            // The other file only holds changes the durable snapshot already has
+            generation++;
+            buffer = buffers[slot(generation)];
+            buffer.clear();
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(generation);
+            buffer.putInt(0);
+            buffer.position(HEADER_SIZE);
+        }
+        lastSnapshotMillis = System.currentTimeMillis();
+
+        long snapshotOf = generation;
+        Map<TopicPartition, Long> offsets = new HashMap<>(appliedOffsets);
+        List<String> ids = new ArrayList<>(store.size());
+        List<BookingState> entries = new ArrayList<>(store.size());
+        store.forEach((bookingId, entry) -> {
+            ids.add(bookingId);
+            entries.add(entry);
+        });
+        List<SeatEntry> seats = new ArrayList<>(seatInventory.reservationCount());
+        seatInventory.forEachReservation((bookingId, flightNumber, seatNumber) ->
+                seats.add(new SeatEntry(bookingId, flightNumber, seatNumber)));
+        pendingSnapshot = snapshotWriter.submit(() -> writeSnapshot(snapshotOf, offsets, ids, entries, seats));
+        return true;
+    }
+
+    /**
+     * @return false if the last snapshot is still not durable
+     */
+    private boolean awaitPendingSnapshot() {
+        if (pendingSnapshot != null) {
+            try {
+                pendingSnapshot.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.error("❌ Booking state snapshot writer failed", e.getCause());
+            }
+            if (pendingSnapshot.isDone()) {
+                pendingSnapshot = null;
+            }
+        }
+        return pendingSnapshot == null;
+    }
+
+    /**
+     * Runs on the snapshot writer thread - touches only the copied view and
+     * the snapshot file, except for publishing the new durable generation.
+     */
+    private void writeSnapshot(long snapshotOf, Map<TopicPartition, Long> offsets,
+                               List<String> ids, List<BookingState> entries, List<SeatEntry> seats) {
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+             DataOutputStream out = new DataOutputStream(checked)) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshotOf);
+
+            out.writeInt(offsets.size());
+            for (Map.Entry<TopicPartition, Long> offset : offsets.entrySet()) {
+                out.writeUTF(offset.getKey().topic());
+                out.writeInt(offset.getKey().partition());
+                out.writeLong(offset.getValue());
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                BookingState entry = entries.get(i);
+                out.writeBoolean(true);
+                out.writeUTF(ids.get(i));
+                out.writeByte(entry.getState() != null ? entry.getState().ordinal() : NO_STATE);
+                out.writeInt(entry.getLastSequence());
+                out.writeLong(entry.getUpdatedAtMillis());
+            }
+            out.writeBoolean(false);
+
+            for (SeatEntry seat : seats) {
+                out.writeBoolean(true);
+                out.writeUTF(seat.bookingId());
+                out.writeUTF(seat.flightNumber());
+                out.writeUTF(seat.seatNumber());
+            }
+            out.writeBoolean(false);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            log.error("❌ Failed to write booking state snapshot", e);
+            return;
+        }
+
+        try {
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("❌ Failed to install booking state snapshot", e);
+            return;
+        }
+
+        // Snapshot is durable - the older changelog is no longer needed
+        snapshotGeneration = Math.max(snapshotGeneration, snapshotOf);
+        log.info("💾 Booking state snapshot written: {} live bookings, {} seats (generation {})",
+                ids.size(), seats.size(), snapshotOf);
+    }
+
+    private int beginRecord(int payloadSize) {
+        // Record + trailing zero length marker must fit; only a huge batch gets here
+        if (buffer.position() + RECORD_HEADER_SIZE + payloadSize + 4 > buffer.capacity()) {
+            // Must switch files now - wait for the previous snapshot (and retry it if it failed)
+            if (awaitPendingSnapshot() && snapshotGeneration != generation) {
+                startSnapshot();
+                awaitPendingSnapshot();
+            }
+            if (snapshotGeneration == generation) {
+                startSnapshot();
+            }
+            if (buffer.position() + RECORD_HEADER_SIZE + payloadSize + 4 > buffer.capacity()) {
+                throw new IllegalStateException("Booking state changelog is full and could not be snapshotted");
+            }
+        }
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        return start;
+    }
+
+    private void endRecord(int start, int payloadSize) {
+        int end = buffer.position();
+        crc.reset();
+        crc.update(buffer.slice(start + RECORD_HEADER_SIZE, payloadSize));
+        // End marker first, then the header - a torn write never looks complete
+        buffer.putInt(end, 0);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, payloadSize);
+    }
+
+    private void putString(byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private String getString() {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (InputStream file = Files.newInputStream(snapshotFile);
+             CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+             DataInputStream in = new DataInputStream(checked)) {
+
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_WITHOUT_SEATS) {
+                log.warn("⚠️  Ignoring booking state snapshot with unknown format");
+                return 0;
+            }
+            long loadedGeneration = in.readLong();
+
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            int offsetCount = in.readInt();
+            for (int i = 0; i < offsetCount; i++) {
+                offsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+            }
+
+            List<String> ids = new ArrayList<>();
+            List<BookingState> entries = new ArrayList<>();
+            while (in.readBoolean()) {
+                ids.add(in.readUTF());
+                entries.add(new BookingState(toState(in.readByte()), in.readInt(), in.readLong()));
+            }
+            List<SeatEntry> seats = new ArrayList<>();
+            while (version == VERSION && in.readBoolean()) {
+                seats.add(new SeatEntry(in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                log.warn("⚠️  Ignoring corrupt booking state snapshot");
+                return 0;
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                store.restore(ids.get(i), entries.get(i));
+            }
+            for (SeatEntry seat : seats) {
+                seatInventory.restore(seat.bookingId(), seat.flightNumber(), seat.seatNumber());
+            }
+            appliedOffsets.putAll(offsets);
+            generation = loadedGeneration;
+            this.snapshotGeneration = loadedGeneration;
+            return ids.size();
+        }
+    }
+
+    /**
+     * Replays the changelog file of the given generation, if there is one.
+     * Batch changes still pending at its end carry over into the next file.
+     *
+     * @return records replayed, or -1 if no changelog of that generation exists
+     */
+    private int replayChangelog(long expectedGeneration, List<Runnable> pending) {
+        MappedByteBuffer file = buffers[slot(expectedGeneration)];
+        file.clear();
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION || file.getLong(8) != expectedGeneration) {
+            // Empty, foreign or older than the snapshot - nothing to replay
+            return -1;
+        }
+        buffer = file;
+
+        int replayed = 0;
+        buffer.position(HEADER_SIZE);
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0 || start + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(start + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                log.warn("⚠️  Booking state changelog ends with a torn record at position {}", start);
+                break;
+            }
+
+            buffer.position(start + RECORD_HEADER_SIZE);
+            byte type = buffer.get();
+            if (type == TYPE_STATE) {
+                BookingEventType state = toState(buffer.get());
+                int sequence = buffer.getInt();
+                long updatedAt = buffer.getLong();
+                long offset = buffer.getLong();
+                int partition = buffer.getInt();
+                String topic = getString();
+                String bookingId = getString();
+
+                BookingState entry = new BookingState(state, sequence, updatedAt);
+                pending.add(() -> store.restore(bookingId, entry));
+                if (offset >= 0) {
+                    applyPending(pending);
+                    appliedOffsets.merge(new TopicPartition(topic, partition), offset, Math::max);
+                }
+            } else if (type == TYPE_OFFSET) {
+                long offset = buffer.getLong();
+                int partition = buffer.getInt();
+                String topic = getString();
+                applyPending(pending);
+                appliedOffsets.merge(new TopicPartition(topic, partition), offset, Math::max);
+            } else if (type == TYPE_REMOVE) {
+                String bookingId = getString();
+                if (pending.isEmpty()) {
+                    store.remove(bookingId);
+                } else {
+                    // Keeps its place among the batch's changes
+                    pending.add(() -> store.remove(bookingId));
+                }
+            } else if (type == TYPE_SEAT) {
+                String flight = getString();
+                String seat = getString();
+                String bookingId = getString();
+                pending.add(flight.isEmpty()
+                        ? () -> seatInventory.restoreRelease(bookingId)
+                        : () -> seatInventory.restore(bookingId, flight, seat));
+            }
+            buffer.position(start + RECORD_HEADER_SIZE + length);
+            replayed++;
+        }
+        return replayed;
+    }
+
+    private void applyPending(List<Runnable> pending) {
+        pending.forEach(Runnable::run);
+        pending.clear();
+    }
+
+    private record SeatEntry(String bookingId, String flightNumber, String seatNumber) {
+    }
+
+    private static int slot(long generation) {
+        return (int) (generation & 1);
+    }
+
+    private static BookingEventType toState(byte code) {
+        return code == NO_STATE ? null : BookingEventType.fromOrdinal(code);
+    }
+}
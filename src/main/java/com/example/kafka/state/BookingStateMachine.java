@@ -0,0 +1,231 @@
+package com.example.kafka.state;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * BOOKING STATE MACHINE
+ *
+ * Table-driven replacement for the hand-written switch over event type
+ * strings. A booking's state is the type of the last accepted event
+ * (null = no booking yet).
+ *
+ * Everything is precomputed when the machine is built:
+ * - next[state][event]    the resulting state, or null if not allowed
+ * - reason[state][event]  the rejection message for disallowed cells
+ *
+ * so a transition is two array lookups - no string comparisons beyond
+ * resolving the event type, and no allocations.
+ *
+ * Standard flow:
+ *   (none) → CREATED → SEAT_SELECTED → PAYMENT_INITIATED → PAYMENT_COMPLETED → CONFIRMED
+ *   CANCELLED from any state
+ *
+ * Configurable via the builder:
+ * - seatSelectionOptional: PAYMENT_INITIATED straight from CREATED (basic fares)
+ * - cancellableFrom: restricts the states CANCELLED is accepted from
+ * - allow / deny: arbitrary extra or removed transitions
+ * - hooks: notified of every accepted and rejected transition
+ */
+public final class BookingStateMachine {
+
+    private static final BookingEventType[] TYPES = BookingEventType.values();
+    private static final int NO_STATE = 0;
+    private static final String UNKNOWN_EVENT_TYPE = "Unknown event type";
+
+    private final BookingEventType[][] next;
+    private final String[][] reason;
+    private final BookingTransitionHook[] hooks;
+
+    private BookingStateMachine(BookingEventType[][] next, String[][] reason, BookingTransitionHook[] hooks) {
+        this.next = next;
+        this.reason = reason;
+        this.hooks = hooks;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Validates the event against the booking's current state and notifies the hooks.
+     *
+     * @return the booking's next state, or null if the transition is not allowed
+     *         or the event type is unknown
+     */
+    public BookingEventType transition(BookingEventType current, BookingEvent event) {
+        return transition(current, BookingEventType.fromName(event.getEventType()), event);
+    }
+
+    /**
+     * Same as {@link #transition(BookingEventType, BookingEvent)} for callers
+     * that already resolved the event type.
+     */
+    public BookingEventType transition(BookingEventType current, BookingEventType type, BookingEvent event) {
+        if (type == null) {
+            for (BookingTransitionHook hook : hooks) {
+                hook.onRejected(event, current, UNKNOWN_EVENT_TYPE);
+            }
+            return null;
+        }
+
+        int row = row(current);
+        BookingEventType to = next[row][type.ordinal()];
+        if (to == null) {
+            for (BookingTransitionHook hook : hooks) {
+                hook.onRejected(event, current, reason[row][type.ordinal()]);
+            }
+            return null;
+        }
+        for (BookingTransitionHook hook : hooks) {
+            hook.onTransition(event, current, to);
+        }
+        return to;
+    }
+
+    /**
+     * Pure table lookup like {@link #isAllowed} - the hooks are not notified.
+     *
+     * @return the booking's next state, or null if the transition is not allowed
+     */
+    public BookingEventType nextState(BookingEventType current, BookingEventType event) {
+        return event != null ? next[row(current)][event.ordinal()] : null;
+    }
+
+    /**
+     * Pure table lookup - no hooks.
+     */
+    public boolean isAllowed(BookingEventType current, BookingEventType event) {
+        return event != null && next[row(current)][event.ordinal()] != null;
+    }
+
+    /**
+     * @return the rejection message for this transition, or null if it is allowed
+     */
+    public String rejectionReason(BookingEventType current, BookingEventType event) {
+        return event != null ? reason[row(current)][event.ordinal()] : UNKNOWN_EVENT_TYPE;
+    }
+
+    private static int row(BookingEventType state) {
+        return state != null ? state.ordinal() + 1 : NO_STATE;
+    }
+
+    public static final class Builder {
+
+        // allowed[row][event] - row 0 is "no booking yet"
+        private final boolean[][] allowed = new boolean[TYPES.length + 1][TYPES.length];
+        // Explicit denials win over the flow options
+        private final boolean[][] denied = new boolean[TYPES.length + 1][TYPES.length];
+        private final List<BookingTransitionHook> hooks = new ArrayList<>();
+        private boolean seatSelectionOptional;
+        private Set<BookingEventType> cancellableFrom;
+        private boolean cancellableWithoutBooking = true;
+
+        private Builder() {
+            allow(null, BookingEventType.CREATED);
+            allow(BookingEventType.CREATED, BookingEventType.SEAT_SELECTED);
+            allow(BookingEventType.SEAT_SELECTED, BookingEventType.PAYMENT_INITIATED);
+            allow(BookingEventType.PAYMENT_INITIATED, BookingEventType.PAYMENT_COMPLETED);
+            allow(BookingEventType.PAYMENT_COMPLETED, BookingEventType.CONFIRMED);
+        }
+
+        /**
+         * Allows PAYMENT_INITIATED directly after CREATED (fares without seat selection)
+         */
+        public Builder seatSelectionOptional(boolean optional) {
+            this.seatSelectionOptional = optional;
+            return this;
+        }
+
+        /**
+         * Restricts CANCELLED to the given states. Empty or null = any state,
+         * including bookings not seen yet (the default).
+         */
+        public Builder cancellableFrom(Set<BookingEventType> states) {
+            this.cancellableFrom = states == null || states.isEmpty() ? null : EnumSet.copyOf(states);
+            this.cancellableWithoutBooking = cancellableFrom == null;
+            return this;
+        }
+
+        /**
+         * @param from current state, or null for a booking not seen yet
+         */
+        public Builder allow(BookingEventType from, BookingEventType event) {
+            allowed[row(from)][event.ordinal()] = true;
+            denied[row(from)][event.ordinal()] = false;
+            return this;
+        }
+
+        /**
+         * @param from current state, or null for a booking not seen yet
+         */
+        public Builder deny(BookingEventType from, BookingEventType event) {
+            allowed[row(from)][event.ordinal()] = false;
+            denied[row(from)][event.ordinal()] = true;
+            return this;
+        }
+
+        public Builder hook(BookingTransitionHook hook) {
+            hooks.add(hook);
+            return this;
+        }
+
+        public Builder hooks(List<? extends BookingTransitionHook> hooks) {
+            this.hooks.addAll(hooks);
+            return this;
+        }
+
+        public BookingStateMachine build() {
+            boolean[][] cells = new boolean[allowed.length][];
+            for (int row = 0; row < allowed.length; row++) {
+                cells[row] = allowed[row].clone();
+            }
+            if (seatSelectionOptional) {
+                cells[row(BookingEventType.CREATED)][BookingEventType.PAYMENT_INITIATED.ordinal()] = true;
+            }
+            int cancelled = BookingEventType.CANCELLED.ordinal();
+            cells[NO_STATE][cancelled] |= cancellableWithoutBooking;
+            for (BookingEventType state : TYPES) {
+                cells[row(state)][cancelled] |= cancellableFrom == null || cancellableFrom.contains(state);
+            }
+
+            BookingEventType[][] next = new BookingEventType[cells.length][TYPES.length];
+            String[][] reason = new String[cells.length][TYPES.length];
+            for (int row = 0; row < cells.length; row++) {
+                BookingEventType from = row == NO_STATE ? null : TYPES[row - 1];
+                for (BookingEventType event : TYPES) {
+                    if (cells[row][event.ordinal()] && !denied[row][event.ordinal()]) {
+                        next[row][event.ordinal()] = event;
+                    } else {
+                        reason[row][event.ordinal()] = describeRejection(from, event);
+                    }
+                }
+            }
+            return new BookingStateMachine(next, reason, hooks.toArray(new BookingTransitionHook[0]));
+        }
+
+        private static String describeRejection(BookingEventType from, BookingEventType event) {
+            switch (event) {
+                case CREATED:
+                    return "Booking already exists!";
+                case SEAT_SELECTED:
+                    return "Cannot select seat before creating booking!";
+                case PAYMENT_INITIATED:
+                    return "Cannot initiate payment before seat selection!";
+                case PAYMENT_COMPLETED:
+                    return "Cannot complete payment before initiating!";
+                case CONFIRMED:
+                    return "Cannot confirm before payment!";
+                case CANCELLED:
+                    return from == null ? "Cannot cancel unknown booking!" : "Cannot cancel booking in state " + from + "!";
+                default:
+                    return "Transition " + from + " -> " + event + " not allowed!";
+            }
+        }
+    }
+}
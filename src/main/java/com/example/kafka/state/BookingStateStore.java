@@ -0,0 +1,247 @@
+package com.example.kafka.state;
+
+import com.example.kafka.model.BookingEventType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * BOUNDED BOOKING STATE STORE
+ *
+ * Replaces the unbounded "lastSequence" / "state" map pairs in the consumers
+ * with one entry per booking and three eviction rules:
+ *
+ * - TERMINAL: CONFIRMED / CANCELLED bookings are dropped after a grace period
+ *   (late duplicates inside the grace period are still recognised)
+ * - IDLE TTL: bookings with no update for the TTL are dropped
+ * - CAPACITY: beyond the entry cap, the least recently updated booking is dropped
+ *
+ * Entries are split across lock-striped segments. Each segment keeps its
+ * bookings in update order, and terminal bookings in a FIFO queue. Because
+ * the grace period and TTL are fixed, both lists are ordered by expiry time
+ * and eviction only ever looks at their heads - no full scans. To keep that
+ * true, an entry stored with an update time older than the segment's newest
+ * (restored out of order, or stamped just before a racing write) is moved
+ * up to that time - it may live slightly longer, never shorter.
+ */
+public class BookingStateStore {
+
+    private final Segment[] segments;
+    private final long terminalGraceMillis;
+    private final long idleTtlMillis;
+
+    private final LongAdder terminalEvictions = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder capacityEvictions = new LongAdder();
+
+    private volatile BiConsumer<String, BookingState> evictionListener;
+
+    public BookingStateStore(int maxEntries, long terminalGraceMillis, long idleTtlMillis, int segmentCount) {
+        if (maxEntries < segmentCount) {
+            throw new IllegalArgumentException("maxEntries must be at least the segment count");
+        }
+        this.terminalGraceMillis = terminalGraceMillis;
+        this.idleTtlMillis = idleTtlMillis;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maxEntries / segmentCount);
+        }
+    }
+
+    /**
+     * @return the booking's entry, or null if unknown or evicted
+     */
+    public BookingState get(String bookingId) {
+        Segment segment = segmentFor(bookingId);
+        synchronized (segment) {
+            return segment.entries.get(bookingId);
+        }
+    }
+
+    /**
+     * Records a processed sequence - the high-water mark never moves backwards
+     * (see {@link BookingState#advance}).
+     *
+     * @return the stored entry
+     */
+    public BookingState put(String bookingId, BookingEventType state, int sequence) {
+        Segment segment = segmentFor(bookingId);
+        synchronized (segment) {
+            long now = System.currentTimeMillis();
+            BookingState previous = segment.entries.get(bookingId);
+            BookingState entry = previous != null
+                    ? previous.advance(state, sequence, now)
+                    : BookingState.first(state, sequence, now);
+            store(segment, bookingId, entry, now);
+            return entry;
+        }
+    }
+
+    /**
+     * Stores an entry as-is, e.g. one advanced by the caller over several events.
+     */
+    public void put(String bookingId, BookingState entry) {
+        Segment segment = segmentFor(bookingId);
+        synchronized (segment) {
+            store(segment, bookingId, entry, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Stores an entry as-is, keeping its original update time (used when
+     * reloading persisted state). Entries restored out of update order are
+     * moved up to the newest update time of their segment.
+     */
+    public void restore(String bookingId, BookingState entry) {
+        put(bookingId, entry);
+    }
+
+    /**
+     * Called with every entry dropped by an eviction rule (not by remove),
+     * while its segment is locked - must be quick and must not call back
+     * into the store.
+     */
+    public void setEvictionListener(BiConsumer<String, BookingState> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    public void remove(String bookingId) {
+        Segment segment = segmentFor(bookingId);
+        synchronized (segment) {
+            segment.entries.remove(bookingId);
+        }
+    }
+
+    /**
+     * Evicts expired entries in every segment. Writes already do this for
+     * their own segment; call this to reclaim memory while traffic is idle.
+     */
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictExpired(segment, now);
+            }
+        }
+    }
+
+    /**
+     * Visits every live entry, segment by segment, in update order.
+     * Each segment is locked only while it is being visited.
+     */
+    public void forEach(BiConsumer<String, BookingState> action) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.forEach(action);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long terminalEvictions() {
+        return terminalEvictions.sum();
+    }
+
+    public long idleEvictions() {
+        return idleEvictions.sum();
+    }
+
+    public long capacityEvictions() {
+        return capacityEvictions.sum();
+    }
+
+    private void store(Segment segment, String bookingId, BookingState entry, long now) {
+        if (entry.getUpdatedAtMillis() < segment.newestUpdateMillis) {
+            // Head-of-list eviction needs the tail to be the newest update
+            entry = new BookingState(entry.getState(), entry.getLastSequence(), segment.newestUpdateMillis,
+                    entry.getSeenWindow());
+        } else {
+            segment.newestUpdateMillis = entry.getUpdatedAtMillis();
+        }
+        // Remove first so the booking moves to the tail (most recently updated)
+        segment.entries.remove(bookingId);
+        segment.entries.put(bookingId, entry);
+        if (entry.isTerminal()) {
+            segment.terminalQueue.addLast(new TerminalMark(bookingId, entry.getUpdatedAtMillis()));
+        }
+        evictExpired(segment, now);
+    }
+
+    private void evicted(String bookingId, BookingState entry) {
+        BiConsumer<String, BookingState> listener = evictionListener;
+        if (listener != null) {
+            listener.accept(bookingId, entry);
+        }
+    }
+
+    private void evictExpired(Segment segment, long now) {
+        // Terminal bookings - FIFO queue is ordered by the time they became terminal
+        while (!segment.terminalQueue.isEmpty()
+                && segment.terminalQueue.peekFirst().terminalAtMillis + terminalGraceMillis <= now) {
+            TerminalMark mark = segment.terminalQueue.pollFirst();
+            BookingState entry = segment.entries.get(mark.bookingId);
+            // Skip if the booking was already evicted or re-created since
+            if (entry != null && entry.isTerminal() && entry.getUpdatedAtMillis() <= mark.terminalAtMillis) {
+                segment.entries.remove(mark.bookingId);
+                terminalEvictions.increment();
+                evicted(mark.bookingId, entry);
+            }
+        }
+
+        // Idle bookings - the map is in update order, so the head is the oldest
+        Iterator<Map.Entry<String, BookingState>> iterator = segment.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, BookingState> eldest = iterator.next();
+            if (eldest.getValue().getUpdatedAtMillis() + idleTtlMillis > now) {
+                break;
+            }
+            iterator.remove();
+            idleEvictions.increment();
+            evicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private Segment segmentFor(String bookingId) {
+        int hash = bookingId.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private final class Segment {
+
+        private final Deque<TerminalMark> terminalQueue = new ArrayDeque<>();
+        private final Map<String, BookingState> entries;
+        private long newestUpdateMillis = Long.MIN_VALUE;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BookingState> eldest) {
+                    if (size() > capacity) {
+                        capacityEvictions.increment();
+                        evicted(eldest.getKey(), eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private record TerminalMark(String bookingId, long terminalAtMillis) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.kafka.state;
+
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+
+/**
+ * Extension point of {@link BookingStateMachine}, called on the consumer
+ * thread for every validated event. Declare as a Spring bean to have it
+ * registered with the shared state machine.
+ */
+public interface BookingTransitionHook {
+
+    /**
+     * @param from the booking's state before the event, or null if new
+     */
+    default void onTransition(BookingEvent event, BookingEventType from, BookingEventType to) {
+    }
+
+    /**
+     * @param from   the booking's current state, or null if new
+     * @param reason why the transition was rejected
+     */
+    default void onRejected(BookingEvent event, BookingEventType from, String reason) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.kafka.state;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * DUPLICATE FILTER FOR EVICTED BOOKINGS
+ *
+ * Once a booking leaves the {@link BookingStateStore} its high-water mark is
+ * gone, so a late redelivery would look like a brand new booking. Evicted
+ * (bookingId, sequence) pairs are remembered here instead, in a fixed amount
+ * of memory:
+ *
+ * - Bloom filter over 64-bit hashes of bookingId + sequence, k bit positions
+ *   by double hashing, bits set lock-free with CAS
+ * - Two generations: inserts go to the current one; once it holds
+ *   "capacity" pairs the older one is dropped and a fresh one started, so at
+ *   least the last "capacity" pairs are always remembered
+ *
+ * Answers "might contain" - never a false negative for remembered pairs, and
+ * a false positive (a new event taken for a duplicate) at roughly the
+ * configured rate.
+ */
+public class EvictedSequenceFilter {
+
+    private final long capacity;
+    private final long bitsPerGeneration;
+    private final int hashCount;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param capacity          pairs per generation
+     * @param falsePositiveRate target rate across both generations
+     */
+    public EvictedSequenceFilter(long capacity, double falsePositiveRate) {
+        if (capacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("capacity must be positive and falsePositiveRate in (0, 1)");
+        }
+        // Each lookup checks both generations - give each half the budget
+        double perGeneration = falsePositiveRate / 2;
+        long bits = (long) Math.ceil(-capacity * Math.log(perGeneration) / (Math.log(2) * Math.log(2)));
+        this.capacity = capacity;
+        this.bitsPerGeneration = Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitsPerGeneration / capacity * Math.log(2)));
+        this.current = new Generation(bitsPerGeneration);
+        this.previous = new Generation(bitsPerGeneration);
+    }
+
+    /**
+     * Remembers an evicted entry: its high-water mark and every sequence
+     * its window marks as processed.
+     */
+    public void addEvicted(String bookingId, BookingState entry) {
+        int highWaterMark = entry.getLastSequence();
+        add(bookingId, highWaterMark);
+        long window = entry.getSeenWindow();
+        for (int distance = 0; window != 0 && distance < Long.SIZE; distance++, window >>>= 1) {
+            int sequence = highWaterMark - 1 - distance;
+            if (sequence < 0) {
+                break;
+            }
+            if ((window & 1L) != 0) {
+                add(bookingId, sequence);
+            }
+        }
+    }
+
+    public void add(String bookingId, int sequence) {
+        long hash = hash(bookingId, sequence);
+        Generation generation = current;
+        generation.add(hash, hashCount);
+        if (generation.insertions.incrementAndGet() >= capacity) {
+            rotate(generation);
+        }
+    }
+
+    public boolean mightContain(String bookingId, int sequence) {
+        long hash = hash(bookingId, sequence);
+        return current.contains(hash, hashCount) || previous.contains(hash, hashCount);
+    }
+
+    /**
+     * @return approximate pairs remembered across both generations
+     */
+    public long size() {
+        return current.insertions.get() + previous.insertions.get();
+    }
+
+    public long memoryBytes() {
+        return 2 * bitsPerGeneration / Byte.SIZE;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private synchronized void rotate(Generation full) {
+        if (current != full) {
+            // Another thread rotated already
+            return;
+        }
+        previous = full;
+        current = new Generation(bitsPerGeneration);
+    }
+
+    private static long hash(String bookingId, int sequence) {
+        // FNV-1a over the id's chars, then the sequence, finished with a 64-bit mix
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < bookingId.length(); i++) {
+            hash = (hash ^ bookingId.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ sequence) * 0x100000001b3L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final AtomicLong insertions = new AtomicLong();
+
+        private Generation(long bits) {
+            this.bits = bits;
+            this.words = new AtomicLongArray((int) (bits / Long.SIZE));
+        }
+
+        private void add(long hash, int hashCount) {
+            long step = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(hash + i * step, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+        }
+
+        private boolean contains(long hash, int hashCount) {
+            long step = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(hash + i * step, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.example.kafka;
+
+import com.example.kafka.command.BookingCommandGateway;
+import com.example.kafka.consumer.retry.BookingRetryCoordinator;
+import com.example.kafka.metrics.BookingMetrics;
+import com.example.kafka.model.BookingCommandResult;
+import com.example.kafka.model.BookingEvent;
+import com.example.kafka.model.BookingEventType;
+import com.example.kafka.model.PartitionLayout;
+import com.example.kafka.model.ReplayReport;
+import com.example.kafka.model.ReplayRequest;
+import com.example.kafka.producer.BookingProducerProblem;
+import com.example.kafka.producer.BookingProducerSolved;
+import com.example.kafka.replay.BookingReplayer;
+import com.example.kafka.routing.AirlineTopicRouter;
+import com.example.kafka.routing.BookingPartitioner;
+import com.example.kafka.state.BookingState;
+import com.example.kafka.state.BookingStateStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * ORDERING AND PERFORMANCE REGRESSION SUITE (embedded broker)
+ *
+ * Drives thousands of interleaved booking lifecycles through both paths of
+ * the running application:
+ *
+ * - SOLVED:  BookingProducerSolved → BookingConsumerSolved. Must show zero
+ *   out-of-order events, zero gaps and zero validation failures, every
+ *   booking must end CONFIRMED, and end-to-end throughput and p99 pipeline
+ *   latency must stay within the floors below.
+ * - PROBLEM: BookingProducerProblem → BookingConsumerProblem, same workload.
+ *   The out-of-order rate is measured and reported; it must be non-zero, or
+ *   the suite no longer demonstrates the problem.
+ *
+ * The problem topic is created with 3 partitions here, like the solved one -
+ * with the single partition of the default setup an unkeyed producer keeps
+ * its order by accident.
+ *
+ * - COMMANDS: BookingCommandGateway gets the solved consumer's verdict
+ *   back for an accepted, a rejected and a redelivered event.
+ * - REPLAY: BookingReplayer restores lost booking state from the topic and
+ *   hands back to the live listener.
+ * - AIRLINE SHARDS: a sharded carrier's bookings go to its own topic and
+ *   are consumed there in order, by the shard's own listener.
+ * - PARTITION EXPANSION: partitions are added to a topic while bookings are
+ *   half way through; they finish in order and new bookings use the new
+ *   partitions. The retry topics grow with the topic, so an event failing
+ *   validation on an added partition is retried on the same partition.
+ *
+ * Floors (system properties, e.g. -Dbooking.it.min-events-per-second=2000):
+ *   booking.it.min-events-per-second   default 1000
+ *   booking.it.max-p99-latency-ms      default 3000
+ */
+@Slf4j
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "kafka.journal.enabled=false",
+                "kafka.outbox.directory=target/outbox-it",
+                "kafka.producer.partition-expansion.directory=target/partition-migrations-it",
+                "kafka.routing.airline.shards=" + BookingOrderingIntegrationTest.SHARDED_CARRIER + ":2:2,"
+                        + BookingOrderingIntegrationTest.EXPANDED_CARRIER + ":2:1",
+                // New partitions are picked up within a second, new bookings move over after two
+                "kafka.consumer.metadata-max-age-ms=1000",
+                "kafka.producer.partition-expansion.activation-delay-ms=2000",
+                "kafka.consumer.expiry.enabled=false",
+                "kafka.consumer.analytics.enabled=false",
+                // Thousands of expected out-of-order banners
+                "logging.level.com.example.kafka.consumer.BookingConsumerProblem=OFF",
+                "logging.level.kafka=WARN",
+                "logging.level.state.change.logger=WARN",
+                "logging.level.org.apache.zookeeper=WARN"
+        })
+@EmbeddedKafka(partitions = 3, topics = {"airline-bookings-problem", "airline-bookings-solved"})
+class BookingOrderingIntegrationTest {
+
+    private static final int BOOKINGS = 2_000;
+    private static final int FLIGHTS = 20;
+    private static final int SEATS_PER_ROW = 6;
+    private static final BookingEventType[] LIFECYCLE = {
+            BookingEventType.CREATED,
+            BookingEventType.SEAT_SELECTED,
+            BookingEventType.PAYMENT_INITIATED,
+            BookingEventType.PAYMENT_COMPLETED,
+            BookingEventType.CONFIRMED
+    };
+    private static final int EVENTS = BOOKINGS * LIFECYCLE.length;
+    private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(120);
+    static final String SHARDED_CARRIER = "ZZ";
+    private static final int SHARDED_BOOKINGS = 100;
+    static final String EXPANDED_CARRIER = "ZY";
+
+    @Autowired
+    private BookingProducerSolved solvedProducer;
+
+    @Autowired
+    private BookingProducerProblem problemProducer;
+
+    @Autowired
+    private BookingCommandGateway commandGateway;
+
+    @Autowired
+    private BookingReplayer replayer;
+
+    @Autowired
+    @Qualifier("solvedBookingStateStore")
+    private BookingStateStore solvedStateStore;
+
+    @Autowired
+    private AirlineTopicRouter router;
+
+    @Autowired
+    private BookingPartitioner partitioner;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KafkaTemplate<String, BookingEvent> kafkaTemplate;
+
+    @Autowired
+    private BookingRetryCoordinator retryCoordinator;
+
+    @Value("${kafka.topic.booking.solved}")
+    private String solvedTopic;
+
+    @Value("${kafka.topic.booking.problem}")
+    private String problemTopic;
+
+    @Value("${booking.it.min-events-per-second:1000}")
+    private double minEventsPerSecond;
+
+    @Value("${booking.it.max-p99-latency-ms:3000}")
+    private double maxP99LatencyMs;
+
+    @Test
+    void solvedPathKeepsOrderAndMeetsPerformanceFloors() {
+        double consumedBefore = consumed(BookingMetrics.CONSUMER_SOLVED, solvedTopic);
+        double outOfOrderBefore = anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order");
+        double gapsBefore = anomalies(BookingMetrics.CONSUMER_SOLVED, "gap");
+        double failuresBefore = validationFailures();
+
+        List<BookingEvent> events = interleavedLifecycles("IT-SOLVED-");
+        long started = System.nanoTime();
+        events.forEach(solvedProducer::sendBookingEvent);
+        awaitConsumed(BookingMetrics.CONSUMER_SOLVED, solvedTopic, consumedBefore + EVENTS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        double eventsPerSecond = EVENTS / seconds;
+        double p99LatencyMs = p99(pipelineLatency(BookingMetrics.CONSUMER_SOLVED));
+        log.info("SOLVED path: {} events in {} s ({} events/s), pipeline p99 {} ms",
+                EVENTS, String.format("%.2f", seconds), Math.round(eventsPerSecond), Math.round(p99LatencyMs));
+
+        assertThat(anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order") - outOfOrderBefore)
+                .as("out-of-order events on the keyed path").isZero();
+        assertThat(anomalies(BookingMetrics.CONSUMER_SOLVED, "gap") - gapsBefore)
+                .as("sequence gaps on the keyed path").isZero();
+        assertThat(validationFailures() - failuresBefore)
+                .as("validation failures on the keyed path").isZero();
+        for (int b = 0; b < BOOKINGS; b++) {
+            BookingState state = solvedStateStore.get("IT-SOLVED-" + b);
+            assertThat(state).as("state of booking %d", b).isNotNull();
+            assertThat(state.getState()).isEqualTo(BookingEventType.CONFIRMED);
+            assertThat(state.getLastSequence()).isEqualTo(LIFECYCLE.length);
+        }
+
+        assertThat(eventsPerSecond).as("end-to-end events per second").isGreaterThanOrEqualTo(minEventsPerSecond);
+        assertThat(p99LatencyMs).as("p99 send → consume latency (ms)").isLessThanOrEqualTo(maxP99LatencyMs);
+    }
+
+    @Test
+    void problemPathReordersUnkeyedEvents() {
+        double consumedBefore = consumed(BookingMetrics.CONSUMER_PROBLEM, problemTopic);
+        double outOfOrderBefore = anomalies(BookingMetrics.CONSUMER_PROBLEM, "out_of_order");
+
+        interleavedLifecycles("IT-PROBLEM-").forEach(problemProducer::sendBookingEvent);
+        awaitConsumed(BookingMetrics.CONSUMER_PROBLEM, problemTopic, consumedBefore + EVENTS);
+
+        double outOfOrder = anomalies(BookingMetrics.CONSUMER_PROBLEM, "out_of_order") - outOfOrderBefore;
+        log.info("PROBLEM path: {} of {} events out of order ({}%)",
+                Math.round(outOfOrder), EVENTS, String.format("%.1f", 100.0 * outOfOrder / EVENTS));
+
+        assertThat(outOfOrder).as("out-of-order events on the unkeyed path").isPositive();
+    }
+
+    @Test
+    void commandsAreAnsweredWithTheConsumerVerdict() throws Exception {
+        assertThat(commandGateway.awaitReplyAssignment(Duration.ofSeconds(30))).isTrue();
+        Duration timeout = Duration.ofSeconds(15);
+
+        BookingEvent created = command("IT-COMMAND-1", BookingEventType.CREATED, 1);
+        BookingCommandResult accepted = commandGateway.send(created, timeout).get();
+        assertThat(accepted.getStatus()).isEqualTo(BookingCommandResult.Status.ACCEPTED);
+        assertThat(accepted.getState()).isEqualTo(BookingEventType.CREATED);
+
+        BookingCommandResult rejected = commandGateway
+                .send(command("IT-COMMAND-1", BookingEventType.CONFIRMED, 2), timeout).get();
+        assertThat(rejected.getStatus()).isEqualTo(BookingCommandResult.Status.REJECTED);
+        assertThat(rejected.getState()).isEqualTo(BookingEventType.CREATED);
+        assertThat(rejected.getReason()).isNotBlank();
+
+        BookingCommandResult duplicate = commandGateway.send(created, timeout).get();
+        assertThat(duplicate.getStatus()).isEqualTo(BookingCommandResult.Status.DUPLICATE);
+    }
+
+    @Test
+    void replayRestoresLostStateAndResumesLiveProcessing() {
+        LocalDateTime from = LocalDateTime.now().minusSeconds(1);
+        for (int step = 0; step < LIFECYCLE.length; step++) {
+            solvedProducer.sendBookingEvent(command("IT-REPLAY-1", LIFECYCLE[step], step + 1));
+        }
+        await().atMost(COMPLETION_TIMEOUT).until(() -> {
+            BookingState state = solvedStateStore.get("IT-REPLAY-1");
+            return state != null && state.getState() == BookingEventType.CONFIRMED;
+        });
+        solvedStateStore.remove("IT-REPLAY-1");
+
+        ReplayRequest request = new ReplayRequest();
+        request.setFromTimestamp(from);
+        assertThat(replayer.start(request)).isNotNull();
+        await().atMost(COMPLETION_TIMEOUT).until(() -> replayer.status().getStatus() != ReplayReport.Status.RUNNING);
+
+        ReplayReport report = replayer.status();
+        log.info("REPLAY: {} records in {} ms ({} applied, {} duplicates)",
+                report.getRecordsReplayed(), report.getDurationMs(), report.getEventsApplied(), report.getDuplicates());
+        assertThat(report.getStatus()).isEqualTo(ReplayReport.Status.COMPLETED);
+        assertThat(report.getRecordsReplayed()).isEqualTo(report.getRecordsTotal());
+        assertThat(solvedStateStore.get("IT-REPLAY-1").getState()).isEqualTo(BookingEventType.CONFIRMED);
+
+        // Live processing picks up again after the replay
+        solvedProducer.sendBookingEvent(command("IT-REPLAY-2", BookingEventType.CREATED, 1));
+        await().atMost(COMPLETION_TIMEOUT).until(() -> solvedStateStore.get("IT-REPLAY-2") != null);
+    }
+
+    @Test
+    void shardedCarrierIsConsumedFromItsOwnTopic() {
+        String shardTopic = AirlineTopicRouter.shardTopicName(solvedTopic, SHARDED_CARRIER);
+        assertThat(listenerRegistry.getListenerContainer("booking-solved-listener-" + SHARDED_CARRIER))
+                .as("shard listener container").isNotNull();
+        double shardBefore = consumed(BookingMetrics.CONSUMER_SOLVED, shardTopic);
+        double outOfOrderBefore = anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order");
+
+        for (int step = 0; step < LIFECYCLE.length; step++) {
+            for (int b = 0; b < SHARDED_BOOKINGS; b++) {
+                BookingEvent event = command("IT-SHARD-" + b, LIFECYCLE[step], step + 1);
+                event.setFlightNumber(SHARDED_CARRIER + (100 + b % 5));
+                event.setSeatNumber((b / 6 + 1) + String.valueOf((char) ('A' + b % 6)));
+                assertThat(router.topicFor(event)).isEqualTo(shardTopic);
+                solvedProducer.sendBookingEvent(event);
+            }
+        }
+        awaitConsumed(BookingMetrics.CONSUMER_SOLVED, shardTopic, shardBefore + SHARDED_BOOKINGS * LIFECYCLE.length);
+
+        assertThat(anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order") - outOfOrderBefore)
+                .as("out-of-order events on the shard").isZero();
+        for (int b = 0; b < SHARDED_BOOKINGS; b++) {
+            assertThat(solvedStateStore.get("IT-SHARD-" + b).getState()).isEqualTo(BookingEventType.CONFIRMED);
+        }
+    }
+
+    @Test
+    void partitionsAreAddedWithoutReorderingBookingsInProgress() {
+        String topic = AirlineTopicRouter.shardTopicName(solvedTopic, EXPANDED_CARRIER);
+        double consumedBefore = consumed(BookingMetrics.CONSUMER_SOLVED, topic);
+        double outOfOrderBefore = anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order");
+
+        // Old bookings get half way through on 2 partitions
+        for (int step = 0; step < 2; step++) {
+            for (int b = 0; b < SHARDED_BOOKINGS; b++) {
+                solvedProducer.sendBookingEvent(expansionEvent("OLD", b, step));
+            }
+        }
+        PartitionLayout expanding = partitioner.expand(topic, 4);
+        assertThat(expanding.getStatus()).isEqualTo(PartitionLayout.Status.EXPANDING);
+        await().atMost(COMPLETION_TIMEOUT)
+                .until(() -> partitioner.layoutOf(topic).getStatus() == PartitionLayout.Status.MIGRATING);
+
+        // Old bookings finish while new ones start on 4 partitions
+        for (int step = 0; step < LIFECYCLE.length; step++) {
+            for (int b = 0; b < SHARDED_BOOKINGS; b++) {
+                if (step >= 2) {
+                    solvedProducer.sendBookingEvent(expansionEvent("OLD", b, step));
+                }
+                solvedProducer.sendBookingEvent(expansionEvent("NEW", b, step));
+            }
+        }
+        awaitConsumed(BookingMetrics.CONSUMER_SOLVED, topic, consumedBefore + 2 * SHARDED_BOOKINGS * LIFECYCLE.length);
+
+        assertThat(anomalies(BookingMetrics.CONSUMER_SOLVED, "out_of_order") - outOfOrderBefore)
+                .as("out-of-order events across the expansion").isZero();
+        assertThat(meterRegistry.find("booking.switchover.breaks").counters()).as("switchover breaks").isEmpty();
+        for (int b = 0; b < SHARDED_BOOKINGS; b++) {
+            assertThat(solvedStateStore.get("IT-EXPAND-OLD-" + b).getState()).isEqualTo(BookingEventType.CONFIRMED);
+            assertThat(solvedStateStore.get("IT-EXPAND-NEW-" + b).getState()).isEqualTo(BookingEventType.CONFIRMED);
+        }
+        assertThat(consumedFromPartition(topic, 2) + consumedFromPartition(topic, 3))
+                .as("events on the added partitions").isPositive();
+
+        // A new booking on an added partition fails validation - retried on the same partition
+        String retryTopic = BookingRetryCoordinator.retryTopicName(topic, 1000);
+        assertThat(kafkaTemplate.partitionsFor(retryTopic)).as("partitions of " + retryTopic).hasSize(4);
+        String invalid = bookingOnPartition("IT-EXPAND-INVALID-", 4, 2);
+        double retriedBefore = consumedFromPartition(retryTopic, 2);
+        BookingEvent failing = command(invalid, BookingEventType.PAYMENT_COMPLETED, 1);
+        failing.setFlightNumber(EXPANDED_CARRIER + "INV");
+        solvedProducer.sendBookingEvent(failing);
+        await().atMost(COMPLETION_TIMEOUT).until(() -> consumedFromPartition(retryTopic, 2) > retriedBefore);
+        assertThat(retryCoordinator.isParked(invalid)).as("booking %s parked", invalid).isTrue();
+    }
+
+    /**
+     * @return the first id with the prefix that hashes to the partition
+     */
+    private static String bookingOnPartition(String prefix, int partitions, int partition) {
+        for (int i = 0; ; i++) {
+            String bookingId = prefix + i;
+            if (Utils.toPositive(Utils.murmur2(bookingId.getBytes(StandardCharsets.UTF_8))) % partitions == partition) {
+                return bookingId;
+            }
+        }
+    }
+
+    private static BookingEvent expansionEvent(String generation, int b, int step) {
+        BookingEvent event = command("IT-EXPAND-" + generation + "-" + b, LIFECYCLE[step], step + 1);
+        event.setFlightNumber(EXPANDED_CARRIER + generation + b % 3);
+        event.setSeatNumber((b / 6 + 1) + String.valueOf((char) ('A' + b % 6)));
+        return event;
+    }
+
+    private static BookingEvent command(String bookingId, BookingEventType type, int sequence) {
+        return BookingEvent.builder()
+                .bookingId(bookingId)
+                .customerId("CUST-COMMAND")
+                .flightNumber("ITC1")
+                .eventType(type.name())
+                .seatNumber("1A")
+                .amount(299.0)
+                .timestamp(LocalDateTime.now())
+                .sequenceNumber(sequence)
+                .build();
+    }
+
+    /**
+     * BOOKINGS lifecycles, randomly interleaved with each other but in
+     * sequence within each booking - every booking gets its own seat.
+     */
+    private static List<BookingEvent> interleavedLifecycles(String bookingPrefix) {
+        Random random = new Random(42);
+        int[] nextStep = new int[BOOKINGS];
+        List<Integer> active = new ArrayList<>(BOOKINGS);
+        for (int b = 0; b < BOOKINGS; b++) {
+            active.add(b);
+        }
+
+        List<BookingEvent> events = new ArrayList<>(EVENTS);
+        while (!active.isEmpty()) {
+            int index = random.nextInt(active.size());
+            int b = active.get(index);
+            int step = nextStep[b]++;
+            int seat = b / FLIGHTS;
+            events.add(BookingEvent.builder()
+                    .bookingId(bookingPrefix + b)
+                    .customerId("CUST" + b)
+                    .flightNumber("IT" + (b % FLIGHTS))
+                    .eventType(LIFECYCLE[step].name())
+                    .seatNumber((seat / SEATS_PER_ROW + 1) + String.valueOf((char) ('A' + seat % SEATS_PER_ROW)))
+                    .amount(199.0 + b % 100)
+                    .timestamp(LocalDateTime.now())
+                    .sequenceNumber(step + 1)
+                    .build());
+            if (nextStep[b] == LIFECYCLE.length) {
+                // Swap-remove keeps the pick O(1)
+                active.set(index, active.get(active.size() - 1));
+                active.remove(active.size() - 1);
+            }
+        }
+        return events;
+    }
+
+    private void awaitConsumed(String consumer, String topic, double target) {
+        await().atMost(COMPLETION_TIMEOUT)
+                .pollInterval(10, TimeUnit.MILLISECONDS)
+                .until(() -> consumed(consumer, topic) >= target);
+    }
+
+    private double consumed(String consumer, String topic) {
+        return meterRegistry.find("booking.consumer.events")
+                .tag("consumer", consumer)
+                .tag("topic", topic)
+                .counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private double consumedFromPartition(String topic, int partition) {
+        Counter counter = meterRegistry.find("booking.consumer.events")
+                .tag("consumer", BookingMetrics.CONSUMER_SOLVED)
+                .tag("topic", topic)
+                .tag("partition", Integer.toString(partition))
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private double anomalies(String consumer, String type) {
+        Counter counter = meterRegistry.find("booking.sequence.anomalies")
+                .tag("consumer", consumer)
+                .tag("type", type)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private double validationFailures() {
+        return meterRegistry.find("booking.validation")
+                .tag("result", "failure")
+                .counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private Timer pipelineLatency(String consumer) {
+        return meterRegistry.get("booking.pipeline.latency").tag("consumer", consumer).timer();
+    }
+
+    /**
+     * p99 from the timer's cumulative histogram buckets - the upper bound of
+     * the first bucket holding 99% of the samples
+     */
+    private static double p99(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        double target = snapshot.count() * 0.99;
+        for (CountAtBucket bucket : snapshot.histogramCounts()) {
+            if (bucket.count() >= target) {
+                return bucket.bucket(TimeUnit.MILLISECONDS);
+            }
+        }
+        return snapshot.max(TimeUnit.MILLISECONDS);
+    }
+}